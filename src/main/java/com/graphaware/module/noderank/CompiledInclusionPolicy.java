@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+/**
+ * An inclusion policy evaluated by precompiled predicates rather than by interpreting an expression, which counts its
+ * evaluations, i.e. the expression evaluations it has saved.
+ *
+ * @see InclusionPolicyCompiler
+ */
+interface CompiledInclusionPolicy {
+
+    /**
+     * @return number of times the policy has been evaluated.
+     */
+    long getEvaluations();
+}
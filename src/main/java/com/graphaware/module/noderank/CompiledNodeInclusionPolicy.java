@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * {@link NodeInclusionPolicy} compiled from an expression by the {@link InclusionPolicyCompiler}, equivalent to the
+ * expression-based policy the expression would otherwise produce.
+ */
+public final class CompiledNodeInclusionPolicy implements NodeInclusionPolicy, CompiledInclusionPolicy {
+
+    private final String expression;
+    private final Predicate<Node> predicate;
+    private final LongAdder evaluations = new LongAdder();
+
+    CompiledNodeInclusionPolicy(String expression, Predicate<Node> predicate) {
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean include(Node node) {
+        evaluations.increment();
+        return predicate.test(node);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterable<Node> getAll(GraphDatabaseService database) {
+        return () -> database.getAllNodes().stream().filter(this::include).iterator();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o != null && getClass() == o.getClass() && expression.equals(((CompiledNodeInclusionPolicy) o).expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledNodeInclusionPolicy{" + expression + "}";
+    }
+}
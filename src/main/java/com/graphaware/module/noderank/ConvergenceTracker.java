@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks whether the ranking computed by {@link NodeRankAlgorithm#RANDOM_WALK} has converged, by comparing successive
+ * snapshots of the top ranked nodes, and decides how long the module should pause when it has.
+ * <p/>
+ * The similarity of two snapshots is the fraction of the top ranked nodes in the latter that were also top ranked in
+ * the former, regardless of their order, which keeps changing among nodes with nearly equal ranks. Once the similarity
+ * has reached the configured threshold for a few checks in a row, the module backs off for a period that doubles with
+ * every further stable check, up to the configured maximum. A dissimilar snapshot, or enough nodes and relationships
+ * created or deleted in the meantime, as counted by the {@link #changeCounter()}, make the module walk at full speed
+ * again.
+ */
+class ConvergenceTracker {
+
+    static final int STABLE_CHECKS = 3;
+    static final long INITIAL_BACKOFF = 1000;
+
+    private final double threshold;
+    private final long maxBackoff;
+    private final long resetChanges;
+    private final AtomicLong changes = new AtomicLong();
+
+    private long[] previous;
+    private volatile double similarity;
+    private int stableChecks;
+    private volatile long backoff;
+
+    /**
+     * Create a new tracker.
+     *
+     * @param threshold    similarity of successive snapshots, from which the ranking is considered stable.
+     * @param maxBackoff   maximum time in ms to pause for, 0 to never pause.
+     * @param resetChanges number of created or deleted nodes and relationships, from which the module stops pausing.
+     */
+    ConvergenceTracker(double threshold, long maxBackoff, long resetChanges) {
+        this.threshold = threshold;
+        this.maxBackoff = maxBackoff;
+        this.resetChanges = resetChanges;
+    }
+
+    /**
+     * Compare a newly published snapshot of the top ranked nodes with the previous one and update the backoff.
+     *
+     * @param snapshot just published.
+     * @return time in ms the module should pause for, 0 to keep walking.
+     */
+    long check(TopRankedSnapshot snapshot) {
+        long[] current = snapshot.nodeIds();
+
+        if (previous != null) {
+            similarity = similarity(previous, current);
+        }
+        previous = current;
+
+        if (changes.getAndSet(0) >= resetChanges || previous.length == 0 || similarity < threshold) {
+            stableChecks = 0;
+            backoff = 0;
+            return 0;
+        }
+
+        if (++stableChecks >= STABLE_CHECKS && maxBackoff > 0) {
+            backoff = backoff == 0 ? Math.min(INITIAL_BACKOFF, maxBackoff) : Math.min(backoff * 2, maxBackoff);
+        }
+
+        return backoff;
+    }
+
+    /**
+     * @return {@link TransactionEventHandler} counting created and deleted nodes and relationships, which must be
+     * registered with the database for the tracker to notice graph changes.
+     */
+    TransactionEventHandler<Void> changeCounter() {
+        return new TransactionEventHandler.Adapter<Void>() {
+            @Override
+            public void afterCommit(TransactionData data, Void state) {
+                changes.addAndGet(count(data.createdNodes()) + count(data.deletedNodes())
+                        + count(data.createdRelationships()) + count(data.deletedRelationships()));
+            }
+        };
+    }
+
+    /**
+     * @return similarity of the last two snapshots between 0 and 1, 0 before the second snapshot.
+     */
+    double getSimilarity() {
+        return similarity;
+    }
+
+    /**
+     * @return time in ms the module pauses for between invocations, 0 if it isn't pausing.
+     */
+    long getBackoff() {
+        return backoff;
+    }
+
+    /**
+     * @return <code>true</code> iff the ranking is considered stable.
+     */
+    boolean isConverged() {
+        return stableChecks >= STABLE_CHECKS;
+    }
+
+    /**
+     * @param former top ranked node IDs.
+     * @param latter top ranked node IDs.
+     * @return fraction of the latter contained in the former, 1 if both are empty.
+     */
+    static double similarity(long[] former, long[] latter) {
+        if (latter.length == 0) {
+            return former.length == 0 ? 1 : 0;
+        }
+
+        NodePositions positions = new NodePositions(former.length);
+        for (int i = 0; i < former.length; i++) {
+            positions.put(former[i], i);
+        }
+
+        int common = 0;
+        for (long nodeId : latter) {
+            if (positions.get(nodeId) >= 0) {
+                common++;
+            }
+        }
+
+        return (double) common / Math.max(former.length, latter.length);
+    }
+
+    private static long count(Iterable<?> entities) {
+        long result = 0;
+        for (Object ignored : entities) {
+            result++;
+        }
+        return result;
+    }
+}
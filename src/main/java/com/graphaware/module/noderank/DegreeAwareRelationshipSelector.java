@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import com.graphaware.runtime.walk.RelationshipSelector;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link RelationshipSelector} that treats nodes with at least a threshold number of relationships as supernodes.
+ * <p/>
+ * The degree of a node is read from the store's relationship counts, which doesn't iterate the relationships. Nodes
+ * below the threshold are handed over to a delegate selector. The relationships of supernodes the inclusion policy
+ * allows are loaded once into a {@link SupernodeCache} and selected from there in constant time from then on, using
+ * alias tables for weighted walks. Nodes with more relationships than the cache holds for a single node are sampled.
+ */
+class DegreeAwareRelationshipSelector implements RelationshipSelector {
+
+    private final RelationshipSelector delegate;
+    private final SupernodeCache cache;
+    private final int threshold;
+    private final RelationshipInclusionPolicy relationshipInclusionPolicy;
+    private final String weightPropertyKey;
+    private final Random random = new Random();
+
+    /**
+     * Create a new selector.
+     *
+     * @param delegate selector for nodes below the threshold.
+     * @param cache    of supernode relationships, shared by all walkers.
+     * @param config   module configuration with the threshold, inclusion policy, and weight property key.
+     */
+    DegreeAwareRelationshipSelector(RelationshipSelector delegate, SupernodeCache cache, NodeRankModuleConfiguration config) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.threshold = config.getEffectiveSupernodeThreshold();
+        this.relationshipInclusionPolicy = config.getRelationshipInclusionPolicy();
+        this.weightPropertyKey = config.getWeightPropertyKey();
+    }
+
+    /**
+     * Create a selector appropriate for the configuration.
+     *
+     * @param config module configuration.
+     * @param cache  of supernode relationships, <code>null</code> if supernodes aren't treated specially.
+     * @return selector.
+     */
+    static RelationshipSelector forConfiguration(NodeRankModuleConfiguration config, SupernodeCache cache) {
+        RelationshipSelector selector = WeightedRelationshipSelector.forConfiguration(config);
+
+        if (cache == null || config.getEffectiveSupernodeThreshold() <= 0) {
+            return selector;
+        }
+
+        return new DegreeAwareRelationshipSelector(selector, cache, config);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Relationship selectRelationship(Node node) {
+        if (node.getDegree() < threshold) {
+            cache.recordBypass();
+            return delegate.selectRelationship(node);
+        }
+
+        SupernodeCache.Neighbourhood neighbourhood = cache.get(node.getId(), nodeId -> load(node));
+
+        long relationshipId = neighbourhood.randomRelationshipId(random);
+        if (relationshipId < 0) {
+            return null;
+        }
+
+        try {
+            return node.getGraphDatabase().getRelationshipById(relationshipId);
+        } catch (NotFoundException e) {
+            //deleted by a transaction that hasn't invalidated the cache yet
+            cache.invalidate(node.getId());
+            return delegate.selectRelationship(node);
+        }
+    }
+
+    /**
+     * Load the relationships of a node the inclusion policy allows. If there are more than the cache holds for a single
+     * node, a random sample of them is loaded instead: a uniform one for unweighted walks, a weighted one (without
+     * replacement) for weighted walks, selected from uniformly. Walkers then only reach the sampled relationships of
+     * the node until its entry is evicted or invalidated, but a selection never iterates millions of relationships.
+     */
+    private SupernodeCache.Neighbourhood load(Node node) {
+        int capacity = cache.maxEntryRelationships();
+        long[] relationshipIds = new long[Math.min(capacity, Math.max(16, node.getDegree()))];
+        double[] weights = weightPropertyKey == null ? null : new double[relationshipIds.length];
+        double[] keys = weights == null ? null : new double[relationshipIds.length];
+        int count = 0;
+        long seen = 0;
+
+        for (Relationship relationship : node.getRelationships()) {
+            if (!relationshipInclusionPolicy.include(relationship, node)) {
+                continue;
+            }
+
+            double weight = 1;
+            if (weights != null) {
+                weight = WeightedRelationshipSelector.weight(relationship, weightPropertyKey);
+                if (weight <= 0) {
+                    continue;
+                }
+            }
+
+            seen++;
+
+            if (count < capacity) {
+                if (count == relationshipIds.length) {
+                    int length = (int) Math.min(capacity, (long) count << 1);
+                    relationshipIds = Arrays.copyOf(relationshipIds, length);
+                    if (weights != null) {
+                        weights = Arrays.copyOf(weights, length);
+                        keys = Arrays.copyOf(keys, length);
+                    }
+                }
+
+                relationshipIds[count] = relationship.getId();
+                if (weights != null) {
+                    weights[count] = weight;
+                    keys[count] = key(weight);
+                    siftUp(relationshipIds, weights, keys, count);
+                }
+                count++;
+                continue;
+            }
+
+            if (weights == null) {
+                //reservoir sampling
+                long position = (long) (random.nextDouble() * seen);
+                if (position < capacity) {
+                    relationshipIds[(int) position] = relationship.getId();
+                }
+                continue;
+            }
+
+            //weighted reservoir sampling, keeping the relationships with the largest keys in a min-heap
+            double key = key(weight);
+            if (key > keys[0]) {
+                relationshipIds[0] = relationship.getId();
+                weights[0] = weight;
+                keys[0] = key;
+                siftDown(relationshipIds, weights, keys, count);
+            }
+        }
+
+        relationshipIds = Arrays.copyOf(relationshipIds, count);
+
+        //a weighted sample already favours heavy relationships, so it is selected from uniformly
+        if (weights == null || seen > count) {
+            return new SupernodeCache.Neighbourhood(relationshipIds, null);
+        }
+
+        return new SupernodeCache.Neighbourhood(relationshipIds, Arrays.copyOf(weights, count));
+    }
+
+    /**
+     * Key of a relationship in weighted reservoir sampling (Efraimidis and Spirakis), the logarithm of u^(1/weight).
+     */
+    private double key(double weight) {
+        return Math.log(1 - random.nextDouble()) / weight;
+    }
+
+    private static void siftUp(long[] ids, double[] weights, double[] keys, int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (keys[parent] <= keys[slot]) {
+                break;
+            }
+            swap(ids, weights, keys, slot, parent);
+            slot = parent;
+        }
+    }
+
+    private static void siftDown(long[] ids, double[] weights, double[] keys, int size) {
+        int slot = 0;
+        int child;
+        while ((child = 2 * slot + 1) < size) {
+            if (child + 1 < size && keys[child + 1] < keys[child]) {
+                child++;
+            }
+            if (keys[child] >= keys[slot]) {
+                break;
+            }
+            swap(ids, weights, keys, slot, child);
+            slot = child;
+        }
+    }
+
+    private static void swap(long[] ids, double[] weights, double[] keys, int first, int second) {
+        long id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+
+        double weight = weights[first];
+        weights[first] = weights[second];
+        weights[second] = weight;
+
+        double key = keys[first];
+        keys[first] = keys[second];
+        keys[second] = key;
+    }
+}
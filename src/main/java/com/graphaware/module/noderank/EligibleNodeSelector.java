@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.runtime.walk.NodeSelector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+
+import java.util.Random;
+
+/**
+ * {@link NodeSelector} that selects a uniformly random node from {@link EligibleNodes}, delegating to another selector
+ * until they are loaded.
+ * <p/>
+ * Changes are applied to the eligible nodes with a delay, so a selected node may have been deleted or may no longer be
+ * included by the policy in the meantime. Such nodes are skipped, up to a few times before the delegate takes over.
+ */
+class EligibleNodeSelector implements NodeSelector {
+
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final EligibleNodes eligibleNodes;
+    private final NodeInclusionPolicy nodeInclusionPolicy;
+    private final NodeSelector delegate;
+    private final Random random = new Random();
+
+    /**
+     * Create a new selector.
+     *
+     * @param eligibleNodes       to select from.
+     * @param nodeInclusionPolicy the eligible nodes were loaded with.
+     * @param delegate            to use while the eligible nodes aren't loaded.
+     */
+    EligibleNodeSelector(EligibleNodes eligibleNodes, NodeInclusionPolicy nodeInclusionPolicy, NodeSelector delegate) {
+        this.eligibleNodes = eligibleNodes;
+        this.nodeInclusionPolicy = nodeInclusionPolicy;
+        this.delegate = delegate;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node selectNode(GraphDatabaseService database) {
+        if (!eligibleNodes.isLoaded()) {
+            return delegate.selectNode(database);
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long nodeId = eligibleNodes.randomNodeId(random);
+            if (nodeId < 0) {
+                return null;
+            }
+
+            try {
+                Node node = database.getNodeById(nodeId);
+                if (nodeInclusionPolicy.include(node)) {
+                    return node;
+                }
+            } catch (NotFoundException e) {
+                //deleted, the removal hasn't been applied yet
+            }
+        }
+
+        return delegate.selectNode(database);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A compact array of the IDs of all nodes included by a node inclusion policy, held off-heap in ascending order, so
+ * that a uniformly random included node can be selected by a single array lookup, no matter how few of the nodes in
+ * the database are included, and membership is a binary search. Used for hyperjumps when walking the database rather
+ * than a {@link GraphProjection}.
+ * <p/>
+ * The array is filled by {@link #load(GraphDatabaseService, NodeInclusionPolicy)} and then kept up to date by
+ * {@link #apply(ProjectionChanges)}. Changes are collected in small on-heap sets of added and removed IDs, and merged
+ * into a new sorted array once they exceed a sixteenth of the array, so that the on-heap part stays small and a random
+ * selection rarely has to be repeated because it hit a removed node.
+ * <p/>
+ * Concurrent reads are safe, changes must not be made while nodes are being selected and must be safely published to
+ * the selecting threads.
+ */
+final class EligibleNodes {
+
+    private static final int MERGE_SHIFT = 4;
+
+    //sorted
+    private OffHeapLongArray ids = new OffHeapLongArray(0);
+    private int size;
+
+    //added since the last merge, in no particular order, and their positions
+    private long[] added = new long[16];
+    private NodePositions addedPositions = new NodePositions(0);
+    private int addedCount;
+
+    //removed from ids since the last merge
+    private NodePositions removed = new NodePositions(0);
+
+    private volatile boolean loaded;
+
+    /**
+     * Replace the content with the IDs of all nodes included by a policy. Must be called within a transaction.
+     *
+     * @param database to load from.
+     * @param policy   deciding which nodes to include.
+     */
+    void load(GraphDatabaseService database, NodeInclusionPolicy policy) {
+        OffHeapLongArray loadedIds = new OffHeapLongArray(0);
+        int count = 0;
+        boolean sorted = true;
+
+        for (Node node : policy.getAll(database)) {
+            if (count == Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Too many eligible nodes, there are more than " + count);
+            }
+
+            loadedIds.ensureCapacity(count + 1);
+            loadedIds.set(count, node.getId());
+            sorted &= count == 0 || loadedIds.get(count - 1) < node.getId();
+            count++;
+        }
+
+        if (!sorted) {
+            sort(loadedIds, count);
+        }
+
+        ids.release();
+        ids = loadedIds;
+        size = count;
+        clearChanges();
+
+        this.loaded = true;
+    }
+
+    /**
+     * Apply node changes committed since the last load. Neighbour changes are ignored.
+     *
+     * @param changes to apply.
+     */
+    void apply(ProjectionChanges changes) {
+        changes.forEach((change, nodeId, otherNodeId, weight) -> {
+            if (change == ProjectionChanges.ADD_NODE) {
+                add(nodeId);
+            } else if (change == ProjectionChanges.REMOVE_NODE) {
+                remove(nodeId);
+            }
+        });
+    }
+
+    /**
+     * Add a node, unless already present.
+     *
+     * @param nodeId ID of the node.
+     */
+    void add(long nodeId) {
+        if (inArray(nodeId)) {
+            removed.remove(nodeId);
+            return;
+        }
+
+        if (addedPositions.get(nodeId) >= 0) {
+            return;
+        }
+
+        if ((long) size + addedCount >= Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many eligible nodes, there are more than " + (size + addedCount));
+        }
+
+        if (addedCount == added.length) {
+            added = Arrays.copyOf(added, addedCount << 1);
+        }
+        added[addedCount] = nodeId;
+        addedPositions.put(nodeId, addedCount++);
+
+        mergeIfNeeded();
+    }
+
+    /**
+     * Remove a node, if present.
+     *
+     * @param nodeId ID of the node.
+     */
+    void remove(long nodeId) {
+        int position = addedPositions.get(nodeId);
+        if (position >= 0) {
+            long last = added[--addedCount];
+            added[position] = last;
+            addedPositions.put(last, position);
+            addedPositions.remove(nodeId);
+            return;
+        }
+
+        if (inArray(nodeId) && removed.get(nodeId) < 0) {
+            removed.put(nodeId, 0);
+            mergeIfNeeded();
+        }
+    }
+
+    /**
+     * @param random source of randomness.
+     * @return ID of a uniformly random node, -1 if there are none.
+     */
+    long randomNodeId(Random random) {
+        int total = size + addedCount;
+        if (total == removed.size()) {
+            return -1;
+        }
+
+        //removed nodes are at most a sixteenth of the array, so this rarely takes more than one attempt
+        while (true) {
+            int position = random.nextInt(total);
+            if (position >= size) {
+                return added[position - size];
+            }
+
+            long nodeId = ids.get(position);
+            if (removed.get(nodeId) < 0) {
+                return nodeId;
+            }
+        }
+    }
+
+    /**
+     * @param nodeId ID of a node.
+     * @return <code>true</code> iff the node is present.
+     */
+    boolean contains(long nodeId) {
+        return addedPositions.get(nodeId) >= 0 || (inArray(nodeId) && removed.get(nodeId) < 0);
+    }
+
+    /**
+     * @return <code>true</code> iff {@link #load(GraphDatabaseService, NodeInclusionPolicy)} has been called.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return number of nodes.
+     */
+    int size() {
+        return size + addedCount - removed.size();
+    }
+
+    /**
+     * @return number of bytes allocated for the nodes, off-heap for the array and on the heap for the changes not yet
+     * merged into it.
+     */
+    long sizeInBytes() {
+        return ids.sizeInBytes() + (long) added.length * 8 + addedPositions.sizeInBytes() + removed.sizeInBytes();
+    }
+
+    /**
+     * Drop all nodes. The array must be loaded again before it is used.
+     */
+    void release() {
+        loaded = false;
+        ids.release();
+        size = 0;
+        clearChanges();
+    }
+
+    private boolean inArray(long nodeId) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = ids.get(middle);
+            if (value < nodeId) {
+                low = middle + 1;
+            } else if (value > nodeId) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merge the added and removed nodes into a new sorted array once there are more of them than a sixteenth of the
+     * array, which keeps the cost of merging constant per change on average.
+     */
+    private void mergeIfNeeded() {
+        if (addedCount + removed.size() <= size >>> MERGE_SHIFT) {
+            return;
+        }
+
+        long[] sortedAdded = Arrays.copyOf(added, addedCount);
+        Arrays.sort(sortedAdded);
+
+        int mergedSize = size + addedCount - removed.size();
+        OffHeapLongArray merged = new OffHeapLongArray(mergedSize);
+        int from = 0;
+        int fromAdded = 0;
+        int to = 0;
+        while (from < size || fromAdded < sortedAdded.length) {
+            long next;
+            if (fromAdded == sortedAdded.length || (from < size && ids.get(from) < sortedAdded[fromAdded])) {
+                next = ids.get(from++);
+                if (removed.get(next) >= 0) {
+                    continue;
+                }
+            } else {
+                next = sortedAdded[fromAdded++];
+            }
+            merged.set(to++, next);
+        }
+
+        ids.release();
+        ids = merged;
+        size = to;
+        clearChanges();
+    }
+
+    private void clearChanges() {
+        added = new long[16];
+        addedPositions = new NodePositions(0);
+        addedCount = 0;
+        removed = new NodePositions(0);
+    }
+
+    /**
+     * Heap-sort the first elements of an off-heap array in place, as the array may be too large to copy to the heap.
+     */
+    private static void sort(OffHeapLongArray array, int count) {
+        for (int i = count / 2 - 1; i >= 0; i--) {
+            siftDown(array, i, count);
+        }
+
+        for (int end = count - 1; end > 0; end--) {
+            long first = array.get(0);
+            array.set(0, array.get(end));
+            array.set(end, first);
+            siftDown(array, 0, end);
+        }
+    }
+
+    private static void siftDown(OffHeapLongArray array, int slot, int end) {
+        int child;
+        while ((child = 2 * slot + 1) < end) {
+            if (child + 1 < end && array.get(child + 1) > array.get(child)) {
+                child++;
+            }
+            if (array.get(child) <= array.get(slot)) {
+                break;
+            }
+            long value = array.get(slot);
+            array.set(slot, array.get(child));
+            array.set(child, value);
+            slot = child;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * {@link TransactionEventHandler} that translates committed changes of nodes into {@link ProjectionChanges} for
+ * {@link EligibleNodes}. Created nodes included by the policy are added, deleted nodes are removed, and nodes whose
+ * labels or properties changed are added or removed depending on whether the policy includes them now.
+ * <p/>
+ * Changes of the properties the module itself writes, i.e. ranks and their generations, are ignored. The module writes
+ * them to thousands of nodes per flush, and a policy deciding which nodes to rank shouldn't depend on their ranks.
+ */
+class EligibleNodesUpdater implements TransactionEventHandler<ProjectionChanges> {
+
+    private final NodeInclusionPolicy nodeInclusionPolicy;
+    private final Set<String> ignoredPropertyKeys;
+    private final Consumer<ProjectionChanges> consumer;
+
+    /**
+     * Create a new updater.
+     *
+     * @param nodeInclusionPolicy policy deciding which nodes are eligible.
+     * @param ignoredPropertyKeys keys of node properties whose changes don't make nodes (not) eligible.
+     * @param consumer            of committed changes. Called by the committing thread, so it should return quickly.
+     */
+    EligibleNodesUpdater(NodeInclusionPolicy nodeInclusionPolicy, Set<String> ignoredPropertyKeys, Consumer<ProjectionChanges> consumer) {
+        this.nodeInclusionPolicy = nodeInclusionPolicy;
+        this.ignoredPropertyKeys = ignoredPropertyKeys;
+        this.consumer = consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProjectionChanges beforeCommit(TransactionData data) throws Exception {
+        ProjectionChanges changes = new ProjectionChanges();
+        Set<Node> changed = new HashSet<>();
+
+        for (Node node : data.createdNodes()) {
+            changed.add(node);
+        }
+        for (LabelEntry entry : data.assignedLabels()) {
+            changed.add(entry.node());
+        }
+        for (LabelEntry entry : data.removedLabels()) {
+            changed.add(entry.node());
+        }
+        for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+            if (!ignoredPropertyKeys.contains(entry.key())) {
+                changed.add(entry.entity());
+            }
+        }
+        for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+            if (!ignoredPropertyKeys.contains(entry.key())) {
+                changed.add(entry.entity());
+            }
+        }
+
+        for (Node node : changed) {
+            if (data.isDeleted(node)) {
+                continue;
+            }
+
+            if (nodeInclusionPolicy.include(node)) {
+                changes.addNode(node.getId());
+            } else {
+                changes.removeNode(node.getId());
+            }
+        }
+
+        for (Node node : data.deletedNodes()) {
+            changes.removeNode(node.getId());
+        }
+
+        return changes.isEmpty() ? null : changes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterCommit(TransactionData data, ProjectionChanges changes) {
+        if (changes != null) {
+            consumer.accept(changes);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterRollback(TransactionData data, ProjectionChanges changes) {
+        //nothing was changed
+    }
+}
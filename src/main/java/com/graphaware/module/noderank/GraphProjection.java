@@ -0,0 +1,674 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A snapshot of the part of the graph included by node and relationship inclusion policies, held in compressed sparse
+ * row (CSR) form in off-heap arrays.
+ * <p/>
+ * Nodes are addressed by their index in the projection, which is the position of their ID in ascending order of IDs.
+ * The neighbours of a node are the other nodes of all its relationships the relationship inclusion policy includes
+ * from the node's point of view, i.e. exactly the nodes a walker standing on the node can move to. Selecting a random
+ * node or a random neighbour of a node takes constant time.
+ * <p/>
+ * When loaded with a weight property key, the projection also holds the weight of every neighbour, i.e. of the
+ * relationship leading to it, and a per-node alias table (Vose's alias method), so that a neighbour is selected with the
+ * probability proportional to its weight in constant time, too. Relationships without a positive weight are left out.
+ * <p/>
+ * The snapshot can be kept up to date by applying {@link ProjectionChanges}. Changed neighbourhoods and added nodes
+ * are held on heap on top of the off-heap arrays, removed nodes are only marked as removed; once there are too many
+ * changes, the projection should be reloaded.
+ * <p/>
+ * A projection is safe to read from many threads, as long as changes are applied when no thread reads it and are
+ * safely published to the readers.
+ */
+public class GraphProjection {
+
+    private static final int[] NO_NEIGHBOURS = new int[0];
+    private static final double[] NO_WEIGHTS = new double[0];
+    private static final int MAX_REMOVED_NODE_PROBES = 32;
+
+    private final int loadedNodeCount;
+    private final OffHeapLongArray nodeIds;
+    private final OffHeapLongArray offsets;
+    private final OffHeapIntArray targets;
+
+    //float bits of raw weights, float bits of alias table probabilities and alias table aliases; null when unweighted
+    private final OffHeapIntArray weights;
+    private final OffHeapIntArray aliasProbabilities;
+    private final OffHeapIntArray aliases;
+
+    private long[] addedNodeIds = new long[0];
+    private int addedNodeCount;
+    private final Map<Long, Integer> addedNodeIndices = new HashMap<>();
+    private final BitSet removedNodes = new BitSet();
+    private final BitSet changedNodes = new BitSet();
+    private final Map<Integer, int[]> changedNeighbours = new HashMap<>();
+    private final Map<Integer, double[]> changedWeights = new HashMap<>();
+    private int removedNodeCount;
+    private long appliedChanges;
+
+    private GraphProjection(int nodeCount, OffHeapLongArray nodeIds, OffHeapLongArray offsets, OffHeapIntArray targets, boolean weighted) {
+        this.loadedNodeCount = nodeCount;
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weighted ? new OffHeapIntArray(targets.capacity()) : null;
+        this.aliasProbabilities = weighted ? new OffHeapIntArray(targets.capacity()) : null;
+        this.aliases = weighted ? new OffHeapIntArray(targets.capacity()) : null;
+    }
+
+    /**
+     * Create a new projection from on-heap arrays.
+     *
+     * @param nodeIds node IDs in ascending order.
+     * @param offsets index into targets of the first neighbour of each node, with one extra element holding the
+     *                total number of neighbours.
+     * @param targets indices of neighbours.
+     */
+    GraphProjection(long[] nodeIds, int[] offsets, int[] targets) {
+        this(nodeIds, offsets, targets, null);
+    }
+
+    /**
+     * Create a new weighted projection from on-heap arrays.
+     *
+     * @param nodeIds node IDs in ascending order.
+     * @param offsets index into targets of the first neighbour of each node, with one extra element holding the
+     *                total number of neighbours.
+     * @param targets indices of neighbours.
+     * @param weights positive weights of neighbours, <code>null</code> for an unweighted projection.
+     */
+    GraphProjection(long[] nodeIds, int[] offsets, int[] targets, double[] weights) {
+        this(nodeIds.length, new OffHeapLongArray(nodeIds.length), new OffHeapLongArray(offsets.length), new OffHeapIntArray(targets.length), weights != null);
+
+        for (int i = 0; i < nodeIds.length; i++) {
+            this.nodeIds.set(i, nodeIds[i]);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            this.offsets.set(i, offsets[i]);
+        }
+        for (int i = 0; i < targets.length; i++) {
+            this.targets.set(i, targets[i]);
+        }
+
+        if (weights != null) {
+            AliasTableBuilder builder = new AliasTableBuilder();
+            for (int i = 0; i < weights.length; i++) {
+                this.weights.set(i, Float.floatToRawIntBits((float) weights[i]));
+            }
+            for (int i = 0; i < nodeIds.length; i++) {
+                builder.build(this, offsets[i], offsets[i + 1] - offsets[i]);
+            }
+        }
+    }
+
+    /**
+     * Load a projection from the database. Must be called within a transaction.
+     *
+     * @param database                    to load from.
+     * @param nodeInclusionPolicy         policy deciding which nodes to include.
+     * @param relationshipInclusionPolicy policy deciding which relationships to include.
+     * @return projection.
+     */
+    public static GraphProjection load(GraphDatabaseService database, NodeInclusionPolicy nodeInclusionPolicy, RelationshipInclusionPolicy relationshipInclusionPolicy) {
+        return load(database, nodeInclusionPolicy, relationshipInclusionPolicy, null);
+    }
+
+    /**
+     * Load a projection from the database. Must be called within a transaction.
+     *
+     * @param database                    to load from.
+     * @param nodeInclusionPolicy         policy deciding which nodes to include.
+     * @param relationshipInclusionPolicy policy deciding which relationships to include.
+     * @param weightPropertyKey           key of the relationship property holding weights, <code>null</code> for an
+     *                                    unweighted projection.
+     * @return projection.
+     */
+    public static GraphProjection load(GraphDatabaseService database, NodeInclusionPolicy nodeInclusionPolicy, RelationshipInclusionPolicy relationshipInclusionPolicy, String weightPropertyKey) {
+        long[] ids = new long[1024];
+        int nodeCount = 0;
+
+        for (Node node : nodeInclusionPolicy.getAll(database)) {
+            if (nodeCount == ids.length) {
+                if (nodeCount == Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Graph is too large to be projected, it has more than " + nodeCount + " nodes");
+                }
+                ids = Arrays.copyOf(ids, (int) Math.min(Integer.MAX_VALUE - 8, (long) nodeCount << 1));
+            }
+            ids[nodeCount++] = node.getId();
+        }
+
+        Arrays.sort(ids, 0, nodeCount);
+
+        OffHeapLongArray nodeIds = new OffHeapLongArray(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodeIds.set(i, ids[i]);
+        }
+        ids = null;
+
+        OffHeapLongArray offsets = new OffHeapLongArray(nodeCount + 1);
+        OffHeapIntArray targets = new OffHeapIntArray(nodeCount);
+        GraphProjection projection = new GraphProjection(nodeCount, nodeIds, offsets, targets, weightPropertyKey != null);
+        AliasTableBuilder aliasTableBuilder = weightPropertyKey != null ? new AliasTableBuilder() : null;
+        long edgeCount = 0;
+
+        for (int i = 0; i < nodeCount; i++) {
+            long start = edgeCount;
+            offsets.set(i, start);
+            Node node = database.getNodeById(nodeIds.get(i));
+
+            for (Relationship relationship : node.getRelationships()) {
+                if (!relationshipInclusionPolicy.include(relationship, node)) {
+                    continue;
+                }
+
+                int target = projection.indexOf(relationship.getOtherNode(node).getId());
+                if (target < 0) {
+                    continue;
+                }
+
+                if (weightPropertyKey == null) {
+                    targets.ensureCapacity(edgeCount + 1);
+                    targets.set(edgeCount++, target);
+                    continue;
+                }
+
+                double weight = WeightedRelationshipSelector.weight(relationship, weightPropertyKey);
+                if (weight <= 0) {
+                    continue;
+                }
+
+                projection.ensureEdgeCapacity(edgeCount + 1);
+                targets.set(edgeCount, target);
+                projection.weights.set(edgeCount++, Float.floatToRawIntBits((float) weight));
+            }
+
+            if (aliasTableBuilder != null) {
+                aliasTableBuilder.build(projection, start, (int) (edgeCount - start));
+            }
+        }
+
+        offsets.set(nodeCount, edgeCount);
+
+        return projection;
+    }
+
+    /**
+     * @return number of node indices in the projection, including indices of removed nodes.
+     */
+    public int nodeCount() {
+        return loadedNodeCount + addedNodeCount;
+    }
+
+    /**
+     * @return number of neighbours of all nodes in the projection when it was loaded.
+     */
+    public long edgeCount() {
+        return offsets.get(loadedNodeCount);
+    }
+
+    /**
+     * @param index of a node.
+     * @return ID of the node.
+     */
+    public long nodeId(int index) {
+        return index < loadedNodeCount ? nodeIds.get(index) : addedNodeIds[index - loadedNodeCount];
+    }
+
+    /**
+     * @param nodeId ID of a node.
+     * @return index of the node, negative if the node is not in the projection or has been removed from it.
+     */
+    public int indexOf(long nodeId) {
+        int index = loadedIndexOf(nodeId);
+
+        if (index < 0 && addedNodeCount > 0) {
+            Integer added = addedNodeIndices.get(nodeId);
+            index = added == null ? -1 : added;
+        }
+
+        return index >= 0 && removedNodes.get(index) ? -1 : index;
+    }
+
+    private int loadedIndexOf(long nodeId) {
+        int low = 0;
+        int high = loadedNodeCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = nodeIds.get(middle);
+
+            if (middleId < nodeId) {
+                low = middle + 1;
+            } else if (middleId > nodeId) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @param index of a node.
+     * @return number of neighbours of the node.
+     */
+    public int degree(int index) {
+        if (changedNodes.get(index)) {
+            return changedNeighbours.get(index).length;
+        }
+
+        return (int) (offsets.get(index + 1) - offsets.get(index));
+    }
+
+    /**
+     * @param index of a node.
+     * @param n     number of the neighbour, from 0 (inclusive) to the node's degree (exclusive).
+     * @return index of the n-th neighbour of the node.
+     */
+    public int neighbour(int index, int n) {
+        if (changedNodes.get(index)) {
+            return changedNeighbours.get(index)[n];
+        }
+
+        return targets.get(offsets.get(index) + n);
+    }
+
+    /**
+     * @param random source of randomness.
+     * @return index of a node selected uniformly at random, -1 if the projection is empty.
+     */
+    public int randomNode(Random random) {
+        int nodeCount = nodeCount();
+        if (nodeCount == removedNodeCount) {
+            return -1;
+        }
+
+        int index = random.nextInt(nodeCount);
+        if (removedNodeCount == 0) {
+            return index;
+        }
+
+        for (int probe = 0; probe < MAX_REMOVED_NODE_PROBES && removedNodes.get(index); probe++) {
+            index = random.nextInt(nodeCount);
+        }
+
+        if (removedNodes.get(index)) {
+            index = removedNodes.nextClearBit(index);
+            if (index >= nodeCount) {
+                index = removedNodes.nextClearBit(0);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * @param index of a node.
+     * @param n     number of the neighbour, from 0 (inclusive) to the node's degree (exclusive).
+     * @return weight of the relationship leading to the n-th neighbour of the node, 1 if the projection is unweighted.
+     */
+    public double weight(int index, int n) {
+        if (weights == null) {
+            return 1.0;
+        }
+
+        if (changedNodes.get(index)) {
+            return changedWeights.get(index)[n];
+        }
+
+        return Float.intBitsToFloat(weights.get(offsets.get(index) + n));
+    }
+
+    /**
+     * @return <code>true</code> iff the projection holds weights of neighbours.
+     */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    /**
+     * @param index  of a node.
+     * @param random source of randomness.
+     * @return index of a neighbour of the node selected at random, uniformly or with the probability proportional to
+     * its weight if the projection is weighted, -1 if the node has no neighbours.
+     */
+    public int randomNeighbour(int index, Random random) {
+        int degree = degree(index);
+        if (degree == 0) {
+            return -1;
+        }
+
+        int n = random.nextInt(degree);
+        if (weights == null) {
+            return neighbour(index, n);
+        }
+
+        if (changedNodes.get(index)) {
+            return randomWeightedNeighbour(changedNeighbours.get(index), changedWeights.get(index), random);
+        }
+
+        long edge = offsets.get(index) + n;
+        if (random.nextFloat() < Float.intBitsToFloat(aliasProbabilities.get(edge))) {
+            return targets.get(edge);
+        }
+
+        return targets.get(offsets.get(index) + aliases.get(edge));
+    }
+
+    /**
+     * Neighbourhoods changed since load are few and small, so they are sampled by a linear scan of cumulative weights.
+     */
+    private static int randomWeightedNeighbour(int[] neighbours, double[] weights, Random random) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        double point = random.nextDouble() * total;
+        for (int i = 0; i < neighbours.length; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return neighbours[i];
+            }
+        }
+
+        return neighbours[neighbours.length - 1];
+    }
+
+    /**
+     * Apply changes made to the graph since the projection was loaded. Must not be called while other threads read the
+     * projection.
+     *
+     * @param changes to apply.
+     */
+    public void apply(ProjectionChanges changes) {
+        changes.forEach((change, nodeId, otherNodeId, weight) -> {
+            switch (change) {
+                case ProjectionChanges.ADD_NODE:
+                    addNode(nodeId);
+                    break;
+                case ProjectionChanges.REMOVE_NODE:
+                    removeNode(nodeId);
+                    break;
+                case ProjectionChanges.ADD_NEIGHBOUR:
+                    addNeighbour(nodeId, otherNodeId, weight);
+                    break;
+                case ProjectionChanges.REMOVE_NEIGHBOUR:
+                    removeNeighbour(nodeId, otherNodeId);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown change " + change);
+            }
+        });
+
+        appliedChanges += changes.size();
+    }
+
+    /**
+     * @return number of changes applied since the projection was loaded.
+     */
+    public long appliedChanges() {
+        return appliedChanges;
+    }
+
+    private void addNode(long nodeId) {
+        int index = loadedIndexOf(nodeId);
+        if (index < 0) {
+            Integer added = addedNodeIndices.get(nodeId);
+            index = added == null ? -1 : added;
+        }
+
+        //IDs of deleted nodes get reused
+        if (index >= 0) {
+            if (removedNodes.get(index)) {
+                removedNodes.clear(index);
+                removedNodeCount--;
+            }
+            setNeighbours(index, NO_NEIGHBOURS, NO_WEIGHTS);
+            return;
+        }
+
+        if (addedNodeCount == addedNodeIds.length) {
+            addedNodeIds = Arrays.copyOf(addedNodeIds, Math.max(16, addedNodeCount << 1));
+        }
+
+        index = loadedNodeCount + addedNodeCount;
+        addedNodeIds[addedNodeCount++] = nodeId;
+        addedNodeIndices.put(nodeId, index);
+        setNeighbours(index, NO_NEIGHBOURS, NO_WEIGHTS);
+    }
+
+    private void removeNode(long nodeId) {
+        int index = indexOf(nodeId);
+        if (index < 0) {
+            return;
+        }
+
+        removedNodes.set(index);
+        removedNodeCount++;
+        setNeighbours(index, NO_NEIGHBOURS, NO_WEIGHTS);
+    }
+
+    private void addNeighbour(long nodeId, long neighbourId, double weight) {
+        int index = indexOf(nodeId);
+        int neighbour = indexOf(neighbourId);
+        if (index < 0 || neighbour < 0) {
+            return;
+        }
+
+        int[] neighbours = neighbours(index);
+        int[] result = Arrays.copyOf(neighbours, neighbours.length + 1);
+        result[neighbours.length] = neighbour;
+
+        double[] resultWeights = null;
+        if (weights != null) {
+            resultWeights = Arrays.copyOf(weights(index), neighbours.length + 1);
+            resultWeights[neighbours.length] = weight;
+        }
+
+        setNeighbours(index, result, resultWeights);
+    }
+
+    private void removeNeighbour(long nodeId, long neighbourId) {
+        int index = indexOf(nodeId);
+        int neighbour = indexOf(neighbourId);
+        if (index < 0 || neighbour < 0) {
+            return;
+        }
+
+        int[] neighbours = neighbours(index);
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == neighbour) {
+                int[] result = Arrays.copyOf(neighbours, neighbours.length - 1);
+                if (i < result.length) {
+                    result[i] = neighbours[neighbours.length - 1];
+                }
+
+                double[] resultWeights = null;
+                if (weights != null) {
+                    double[] currentWeights = weights(index);
+                    resultWeights = Arrays.copyOf(currentWeights, currentWeights.length - 1);
+                    if (i < resultWeights.length) {
+                        resultWeights[i] = currentWeights[currentWeights.length - 1];
+                    }
+                }
+
+                setNeighbours(index, result, resultWeights);
+                return;
+            }
+        }
+    }
+
+    private int[] neighbours(int index) {
+        if (changedNodes.get(index)) {
+            return changedNeighbours.get(index);
+        }
+
+        int[] result = new int[degree(index)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = neighbour(index, i);
+        }
+        return result;
+    }
+
+    private double[] weights(int index) {
+        if (changedNodes.get(index)) {
+            return changedWeights.get(index);
+        }
+
+        double[] result = new double[degree(index)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = weight(index, i);
+        }
+        return result;
+    }
+
+    private void setNeighbours(int index, int[] neighbours, double[] neighbourWeights) {
+        changedNodes.set(index);
+        changedNeighbours.put(index, neighbours);
+        if (weights != null) {
+            changedWeights.put(index, neighbourWeights);
+        }
+    }
+
+    private void ensureEdgeCapacity(long capacity) {
+        targets.ensureCapacity(capacity);
+        weights.ensureCapacity(capacity);
+        aliasProbabilities.ensureCapacity(capacity);
+        aliases.ensureCapacity(capacity);
+    }
+
+    /**
+     * @return number of nodes whose neighbourhood has been changed since the projection was loaded, including added
+     * and removed nodes.
+     */
+    public int changedNodeCount() {
+        return changedNeighbours.size();
+    }
+
+    /**
+     * @return number of bytes the projection occupies outside of the heap.
+     */
+    public long sizeInBytes() {
+        long size = nodeIds.sizeInBytes() + offsets.sizeInBytes() + targets.sizeInBytes();
+        if (weights != null) {
+            size += weights.sizeInBytes() + aliasProbabilities.sizeInBytes() + aliases.sizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Drop the projection's data. The memory is freed once the buffers are garbage collected.
+     */
+    public void release() {
+        nodeIds.release();
+        offsets.release();
+        targets.release();
+        if (weights != null) {
+            weights.release();
+            aliasProbabilities.release();
+            aliases.release();
+        }
+    }
+
+    /**
+     * Builds alias tables of nodes from the weights of their neighbours, reusing its work arrays across nodes.
+     */
+    private static final class AliasTableBuilder {
+
+        private double[] scaled = new double[16];
+        private int[] small = new int[16];
+        private int[] large = new int[16];
+
+        /**
+         * Build the alias table of a node.
+         *
+         * @param projection to build the table in.
+         * @param start      index of the node's first neighbour.
+         * @param degree     number of the node's neighbours.
+         */
+        private void build(GraphProjection projection, long start, int degree) {
+            if (degree == 0) {
+                return;
+            }
+
+            if (scaled.length < degree) {
+                scaled = new double[degree];
+                small = new int[degree];
+                large = new int[degree];
+            }
+
+            double total = 0;
+            for (int n = 0; n < degree; n++) {
+                total += Float.intBitsToFloat(projection.weights.get(start + n));
+            }
+
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int n = 0; n < degree; n++) {
+                scaled[n] = Float.intBitsToFloat(projection.weights.get(start + n)) * degree / total;
+                if (scaled[n] < 1.0) {
+                    small[smallCount++] = n;
+                } else {
+                    large[largeCount++] = n;
+                }
+            }
+
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+
+                projection.aliasProbabilities.set(start + less, Float.floatToRawIntBits((float) scaled[less]));
+                projection.aliases.set(start + less, more);
+
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+
+            //what remains has the probability of 1, up to rounding errors
+            while (largeCount > 0) {
+                int n = large[--largeCount];
+                projection.aliasProbabilities.set(start + n, Float.floatToRawIntBits(1.0f));
+                projection.aliases.set(start + n, n);
+            }
+            while (smallCount > 0) {
+                int n = small[--smallCount];
+                projection.aliasProbabilities.set(start + n, Float.floatToRawIntBits(1.0f));
+                projection.aliases.set(start + n, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * Compiles common shapes of inclusion policy expressions into predicates, so that including a node or a relationship
+ * doesn't involve interpreting the expression on every hop. Labels and relationship types are resolved once, at
+ * compile time.
+ * <p/>
+ * Expressions made of the following, combined with <code>&&</code>, <code>||</code>, <code>!</code> and parentheses,
+ * are compiled:
+ * <ul>
+ * <li><code>hasLabel('Label')</code> for nodes</li>
+ * <li><code>isType('TYPE')</code>, <code>isOutgoing()</code> and <code>isIncoming()</code> for relationships</li>
+ * <li><code>hasProperty('key')</code></li>
+ * <li><code>getProperty('key') == value</code>, <code>getProperty('key', default) != value</code>, where the values are
+ * strings, numbers, booleans or <code>null</code></li>
+ * </ul>
+ * Anything else is left to the expression-based policies.
+ */
+final class InclusionPolicyCompiler {
+
+    private InclusionPolicyCompiler() {
+    }
+
+    /**
+     * Compile a node inclusion policy expression.
+     *
+     * @param expression to compile.
+     * @return compiled policy, <code>null</code> if the expression can't be compiled.
+     */
+    static NodeInclusionPolicy compileNodePolicy(String expression) {
+        LabelNodeInclusionPolicy labels = LabelNodeInclusionPolicy.fromExpression(expression);
+        if (labels != null) {
+            return labels;
+        }
+
+        BiPredicate<Node, Node> predicate = new Parser<Node>(expression, InclusionPolicyCompiler::nodeFunction).parse();
+        if (predicate == null) {
+            return null;
+        }
+
+        return new CompiledNodeInclusionPolicy(expression, node -> predicate.test(node, null));
+    }
+
+    /**
+     * Compile a relationship inclusion policy expression.
+     *
+     * @param expression to compile.
+     * @return compiled policy, <code>null</code> if the expression can't be compiled.
+     */
+    static RelationshipInclusionPolicy compileRelationshipPolicy(String expression) {
+        BiPredicate<Relationship, Node> predicate = new Parser<Relationship>(expression, InclusionPolicyCompiler::relationshipFunction).parse();
+        if (predicate == null) {
+            return null;
+        }
+
+        return new CompiledRelationshipInclusionPolicy(expression, predicate);
+    }
+
+    private static BiPredicate<Node, Node> nodeFunction(String name, List<Object> arguments) {
+        if ("hasLabel".equals(name) && arguments.size() == 1 && arguments.get(0) instanceof String) {
+            Label label = Label.label((String) arguments.get(0));
+            return (node, pointOfView) -> node.hasLabel(label);
+        }
+
+        return null;
+    }
+
+    private static BiPredicate<Relationship, Node> relationshipFunction(String name, List<Object> arguments) {
+        if ("isType".equals(name) && arguments.size() == 1 && arguments.get(0) instanceof String) {
+            RelationshipType type = RelationshipType.withName((String) arguments.get(0));
+            return (relationship, pointOfView) -> relationship.isType(type);
+        }
+
+        if ("isOutgoing".equals(name) && arguments.isEmpty()) {
+            return (relationship, pointOfView) -> pointOfView != null && relationship.getStartNode().getId() == pointOfView.getId();
+        }
+
+        if ("isIncoming".equals(name) && arguments.isEmpty()) {
+            return (relationship, pointOfView) -> pointOfView != null && relationship.getEndNode().getId() == pointOfView.getId();
+        }
+
+        return null;
+    }
+
+    /**
+     * Compare a property value with a literal the way expressions do, i.e. numbers by value regardless of their type.
+     */
+    static boolean valueEquals(Object value, Object literal) {
+        if (value instanceof Number && literal instanceof Number) {
+            if (isIntegral(value) && isIntegral(literal)) {
+                return ((Number) value).longValue() == ((Number) literal).longValue();
+            }
+            return ((Number) value).doubleValue() == ((Number) literal).doubleValue();
+        }
+
+        return Objects.equals(value, literal);
+    }
+
+    private static boolean isIntegral(Object number) {
+        return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * Factory of predicates for functions specific to nodes or relationships.
+     */
+    private interface Functions<T extends PropertyContainer> {
+
+        /**
+         * @return predicate, <code>null</code> if the function isn't supported.
+         */
+        BiPredicate<T, Node> function(String name, List<Object> arguments);
+    }
+
+    /**
+     * Thrown when an expression can't be compiled.
+     */
+    private static final class UnsupportedExpression extends RuntimeException {
+
+        private UnsupportedExpression() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Recursive descent parser of the supported expressions.
+     */
+    private static final class Parser<T extends PropertyContainer> {
+
+        private static final Object END = new Object();
+
+        private final String expression;
+        private final Functions<T> functions;
+        private int position;
+
+        private Parser(String expression, Functions<T> functions) {
+            this.expression = expression;
+            this.functions = functions;
+        }
+
+        /**
+         * @return predicate, <code>null</code> if the expression isn't supported.
+         */
+        private BiPredicate<T, Node> parse() {
+            try {
+                BiPredicate<T, Node> result = or();
+                if (peek() != END) {
+                    throw new UnsupportedExpression();
+                }
+                return result;
+            } catch (UnsupportedExpression e) {
+                return null;
+            }
+        }
+
+        private BiPredicate<T, Node> or() {
+            BiPredicate<T, Node> result = and();
+            while (consume("||")) {
+                result = result.or(and());
+            }
+            return result;
+        }
+
+        private BiPredicate<T, Node> and() {
+            BiPredicate<T, Node> result = unary();
+            while (consume("&&")) {
+                result = result.and(unary());
+            }
+            return result;
+        }
+
+        private BiPredicate<T, Node> unary() {
+            if (consume("!")) {
+                return unary().negate();
+            }
+
+            if (consume("(")) {
+                BiPredicate<T, Node> result = or();
+                expect(")");
+                return result;
+            }
+
+            return function();
+        }
+
+        private BiPredicate<T, Node> function() {
+            Object name = next();
+            if (!(name instanceof Identifier)) {
+                throw new UnsupportedExpression();
+            }
+
+            expect("(");
+            List<Object> arguments = new ArrayList<>();
+            if (!consume(")")) {
+                do {
+                    arguments.add(literal());
+                } while (consume(","));
+                expect(")");
+            }
+
+            String function = ((Identifier) name).name;
+
+            if ("getProperty".equals(function) && !arguments.isEmpty() && arguments.size() <= 2 && arguments.get(0) instanceof String) {
+                boolean negated;
+                if (consume("==")) {
+                    negated = false;
+                } else if (consume("!=")) {
+                    negated = true;
+                } else {
+                    throw new UnsupportedExpression();
+                }
+
+                String key = (String) arguments.get(0);
+                Object defaultValue = arguments.size() == 2 ? arguments.get(1) : null;
+                Object value = literal();
+
+                return (entity, pointOfView) -> negated != valueEquals(entity.getProperty(key, defaultValue), value);
+            }
+
+            if ("hasProperty".equals(function) && arguments.size() == 1 && arguments.get(0) instanceof String) {
+                String key = (String) arguments.get(0);
+                return (entity, pointOfView) -> entity.hasProperty(key);
+            }
+
+            BiPredicate<T, Node> result = functions.function(function, arguments);
+            if (result == null) {
+                throw new UnsupportedExpression();
+            }
+            return result;
+        }
+
+        private Object literal() {
+            Object token = next();
+
+            if (token instanceof Identifier) {
+                switch (((Identifier) token).name) {
+                    case "true":
+                        return Boolean.TRUE;
+                    case "false":
+                        return Boolean.FALSE;
+                    case "null":
+                        return null;
+                    default:
+                        throw new UnsupportedExpression();
+                }
+            }
+
+            if (token instanceof String || token instanceof Number) {
+                return token;
+            }
+
+            throw new UnsupportedExpression();
+        }
+
+        private boolean consume(String symbol) {
+            Object token = peek();
+            if (token instanceof Symbol && ((Symbol) token).text.equals(symbol)) {
+                next();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String symbol) {
+            if (!consume(symbol)) {
+                throw new UnsupportedExpression();
+            }
+        }
+
+        private Object peek() {
+            int start = position;
+            Object result = next();
+            position = start;
+            return result;
+        }
+
+        /**
+         * @return next token: an {@link Identifier}, a {@link Symbol}, a {@link String} or {@link Number} literal, or
+         * {@link #END}.
+         */
+        private Object next() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+
+            if (position == expression.length()) {
+                return END;
+            }
+
+            char c = expression.charAt(position);
+
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = position;
+                while (position < expression.length() && Character.isJavaIdentifierPart(expression.charAt(position))) {
+                    position++;
+                }
+                return new Identifier(expression.substring(start, position));
+            }
+
+            if (c == '\'') {
+                StringBuilder result = new StringBuilder();
+                position++;
+                while (true) {
+                    if (position == expression.length()) {
+                        throw new UnsupportedExpression();
+                    }
+                    char current = expression.charAt(position++);
+                    if (current == '\'') {
+                        if (position < expression.length() && expression.charAt(position) == '\'') {
+                            position++;
+                        } else {
+                            return result.toString();
+                        }
+                    }
+                    result.append(current);
+                }
+            }
+
+            if (Character.isDigit(c) || c == '-') {
+                int start = position++;
+                while (position < expression.length() && (Character.isDigit(expression.charAt(position)) || expression.charAt(position) == '.')) {
+                    position++;
+                }
+                String number = expression.substring(start, position);
+                try {
+                    return number.contains(".") ? (Object) Double.valueOf(number) : (Object) Long.valueOf(number);
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedExpression();
+                }
+            }
+
+            for (String symbol : new String[]{"&&", "||", "==", "!=", "!", "(", ")", ","}) {
+                if (expression.startsWith(symbol, position)) {
+                    position += symbol.length();
+                    return new Symbol(symbol);
+                }
+            }
+
+            throw new UnsupportedExpression();
+        }
+    }
+
+    private static final class Identifier {
+
+        private final String name;
+
+        private Identifier(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Symbol {
+
+        private final String text;
+
+        private Symbol(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link NodeInclusionPolicy} that includes nodes with any of the given labels. Unlike an equivalent expression-based
+ * policy, it finds the included nodes through the label scan store rather than by evaluating an expression on every
+ * node in the database, and the {@link NodeRankModule} selects random nodes from an index of their IDs rather than by
+ * probing the whole database.
+ * <p/>
+ * {@link #fromExpression(String)} recognises expressions that only test for labels, such as
+ * <code>hasLabel('Person')</code> or <code>hasLabel('Person') || hasLabel('Company')</code>.
+ */
+public final class LabelNodeInclusionPolicy implements NodeInclusionPolicy, CompiledInclusionPolicy {
+
+    private static final Pattern HAS_LABEL = Pattern.compile("\\s*hasLabel\\(\\s*'([^']+)'\\s*\\)\\s*");
+
+    private final String[] names;
+    private final Label[] labels;
+    private final LongAdder evaluations = new LongAdder();
+
+    /**
+     * Create a new policy.
+     *
+     * @param labels names of the labels to include nodes with. Must not be empty.
+     */
+    public LabelNodeInclusionPolicy(String... labels) {
+        if (labels.length == 0) {
+            throw new IllegalArgumentException("At least one label must be given");
+        }
+
+        this.names = labels.clone();
+        this.labels = new Label[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            this.labels[i] = Label.label(labels[i]);
+        }
+    }
+
+    /**
+     * Create a policy equivalent to an expression, if the expression only tests for labels.
+     *
+     * @param expression node inclusion policy expression.
+     * @return equivalent policy, <code>null</code> if the expression does anything other than testing for labels.
+     */
+    public static LabelNodeInclusionPolicy fromExpression(String expression) {
+        List<String> labels = new ArrayList<>();
+
+        for (String disjunct : expression.split("\\|\\|", -1)) {
+            Matcher matcher = HAS_LABEL.matcher(disjunct);
+            if (!matcher.matches()) {
+                return null;
+            }
+            labels.add(matcher.group(1));
+        }
+
+        return new LabelNodeInclusionPolicy(labels.toArray(new String[labels.size()]));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean include(Node node) {
+        evaluations.increment();
+        for (Label label : labels) {
+            if (node.hasLabel(label)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Nodes are found through the label scan store, one label after another. A node with more than one of the labels
+     * is only returned for the first of them.
+     */
+    @Override
+    public Iterable<Node> getAll(GraphDatabaseService database) {
+        return () -> new Iterator<Node>() {
+
+            private int current = -1;
+            private Iterator<Node> nodes = Collections.emptyIterator();
+            private Node next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (nodes.hasNext()) {
+                        Node candidate = nodes.next();
+                        if (isFirstLabelOf(candidate)) {
+                            next = candidate;
+                        }
+                    } else if (++current < labels.length) {
+                        nodes = database.findNodes(labels[current]);
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Node next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Node result = next;
+                next = null;
+                return result;
+            }
+
+            private boolean isFirstLabelOf(Node node) {
+                for (int i = 0; i < current; i++) {
+                    if (node.hasLabel(labels[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    /**
+     * @return names of the included labels.
+     */
+    public String[] getLabels() {
+        return names.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(names, ((LabelNodeInclusionPolicy) o).names);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(names);
+    }
+
+    @Override
+    public String toString() {
+        return "LabelNodeInclusionPolicy" + Arrays.toString(names);
+    }
+}
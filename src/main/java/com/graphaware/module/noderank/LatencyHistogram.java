@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with power-of-two buckets, which records without allocation or contention and can be shared
+ * by any number of threads. Percentiles are estimated by the upper bound of the bucket they fall in, so they are
+ * accurate to within a factor of two.
+ */
+final class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    //bucket i holds values between 2^(i-1) and 2^i - 1, bucket 0 holds 0
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param value duration to record, negative durations are recorded as 0.
+     */
+    void record(long value) {
+        long recorded = Math.max(0, value);
+        buckets[BUCKETS - Long.numberOfLeadingZeros(recorded)].increment();
+        count.increment();
+        total.add(recorded);
+    }
+
+    /**
+     * @return number of recorded durations.
+     */
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return mean of recorded durations, 0 if there are none.
+     */
+    double mean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) total.sum() / recorded;
+    }
+
+    /**
+     * @param percentile between 0 and 1.
+     * @return estimate of the duration, below which the given fraction of durations falls, 0 if there are none.
+     */
+    long percentile(double percentile) {
+        long recorded = count.sum();
+        if (recorded == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile * recorded));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += buckets[i].sum();
+            if (cumulative >= target) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * {@link RankStore} that stores ranks in a memory-mapped file indexed by node ID, rather than in node properties, so
+ * that writing a rank is a single memory store that never touches the transaction log. The flip side is that ranks
+ * are only visible through the {@link NodeRankApi} and procedures of the instance running the module, not to Cypher
+ * and not to other cluster members.
+ * <p/>
+ * Every node takes {@link #ENTRY_BYTES} bytes: the rank as a double and the generation as a long. The file is mapped
+ * in segments of {@link #SEGMENT_ENTRIES} nodes, which are created as nodes with higher IDs get ranked, so the file
+ * only grows to cover the highest ranked node ID. Ranks survive restarts; the operating system writes them to disk
+ * and the store forces them to disk when closed.
+ * <p/>
+ * Deleted nodes must be collected using the {@link #cleaner()}, so that nodes that reuse their IDs don't inherit their
+ * ranks. The cleaner runs on the threads committing the deletions, so it only queues the deleted IDs; their ranks are
+ * cleared by the thread writing ranks when it calls {@link #clearDeleted()}, which means a clear can never be
+ * overwritten by a concurrent {@link #addVisits(Node, long)} that read the rank before it. Until then, ranks of deleted
+ * nodes can still be read. Nodes deleted while the store wasn't open are never seen by the cleaner, so their ranks
+ * must be cleared by {@link #clearMissing(GraphDatabaseService)} when the store is opened again. Nodes are only used
+ * for their IDs, so ranks can be read and written outside of transactions too. Ranks are written by a single thread; readers on other threads may briefly see stale ranks.
+ */
+public final class MappedFileRankStore implements RankStore {
+
+    private static final Log LOG = LoggerFactory.getLogger(MappedFileRankStore.class);
+
+    static final int ENTRY_BYTES = 16;
+    private static final int SEGMENT_SHIFT = 20;
+    static final int SEGMENT_ENTRIES = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_ENTRIES - 1;
+    private static final long SEGMENT_BYTES = (long) SEGMENT_ENTRIES * ENTRY_BYTES;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private final Queue<long[]> deletions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Open a store, creating the file if it doesn't exist.
+     *
+     * @param file to store ranks in.
+     * @throws UncheckedIOException if the file can't be opened.
+     */
+    public MappedFileRankStore(File file) {
+        this.file = file;
+        try {
+            if (file.getParentFile() != null) {
+                file.getParentFile().mkdirs();
+            }
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open rank file " + file, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getRank(Node node) {
+        return getRank(node.getId());
+    }
+
+    /**
+     * Get the rank of a node by its ID. Needs no transaction.
+     *
+     * @param nodeId ID of the node.
+     * @return rank of the node, 0 if it has none.
+     */
+    public double getRank(long nodeId) {
+        MappedByteBuffer segment = segment(nodeId, false);
+        return segment == null ? 0 : segment.getDouble(offset(nodeId));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getGeneration(Node node, long defaultGeneration) {
+        MappedByteBuffer segment = segment(node.getId(), false);
+        if (segment == null || segment.getDouble(offset(node.getId())) == 0) {
+            return defaultGeneration;
+        }
+        return segment.getLong(offset(node.getId()) + 8);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRank(Node node, double rank) {
+        segment(node.getId(), true).putDouble(offset(node.getId()), rank);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRank(Node node, double rank, long generation) {
+        MappedByteBuffer segment = segment(node.getId(), true);
+        int offset = offset(node.getId());
+        segment.putDouble(offset, rank);
+        segment.putLong(offset + 8, generation);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double addVisits(Node node, long visits) {
+        MappedByteBuffer segment = segment(node.getId(), true);
+        int offset = offset(node.getId());
+        double rank = segment.getDouble(offset) + visits;
+        segment.putDouble(offset, rank);
+        return rank;
+    }
+
+    /**
+     * Clear the rank of a node.
+     *
+     * @param nodeId ID of the node.
+     */
+    void clear(long nodeId) {
+        MappedByteBuffer segment = segment(nodeId, false);
+        if (segment != null) {
+            segment.putDouble(offset(nodeId), 0);
+            segment.putLong(offset(nodeId) + 8, 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Clears the ranks of nodes whose deletion has been committed since the last call, as collected by the
+     * {@link #cleaner()}.
+     */
+    @Override
+    public long[] clearDeleted() {
+        long[] result = new long[0];
+
+        long[] deleted;
+        while ((deleted = deletions.poll()) != null) {
+            int from = result.length;
+            result = Arrays.copyOf(result, from + deleted.length);
+            System.arraycopy(deleted, 0, result, from, deleted.length);
+        }
+
+        for (long nodeId : result) {
+            clear(nodeId);
+        }
+
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Clear the ranks of nodes that no longer exist, i.e. nodes deleted while the store wasn't open, whose deletions
+     * the {@link #cleaner()} never saw. Must be called when the store is opened, before any rank is written and before
+     * the IDs of the deleted nodes can be reused, which Neo4j only does after they have been freed by a restart.
+     * Reads every slot of the file.
+     *
+     * @param database the ranked nodes belong to.
+     * @return number of cleared ranks.
+     */
+    public long clearMissing(GraphDatabaseService database) {
+        long segmentCount = sizeInBytes() / SEGMENT_BYTES;
+        long cleared = 0;
+
+        try (Transaction tx = database.beginTx()) {
+            for (long index = 0; index < segmentCount; index++) {
+                MappedByteBuffer segment = segment(index << SEGMENT_SHIFT, false);
+                for (int i = 0; i < SEGMENT_ENTRIES; i++) {
+                    long nodeId = (index << SEGMENT_SHIFT) + i;
+                    if (segment.getDouble(i * ENTRY_BYTES) != 0 && !exists(database, nodeId)) {
+                        clear(nodeId);
+                        cleared++;
+                    }
+                }
+            }
+            tx.success();
+        }
+
+        return cleared;
+    }
+
+    private static boolean exists(GraphDatabaseService database, long nodeId) {
+        try {
+            database.getNodeById(nodeId);
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return handler that collects IDs of committed deleted nodes, whose ranks are cleared by {@link #clearDeleted()}.
+     * Must be registered for as long as the store is used.
+     */
+    public TransactionEventHandler<Void> cleaner() {
+        return new TransactionEventHandler.Adapter<Void>() {
+            @Override
+            public void afterCommit(TransactionData data, Void state) {
+                long[] deleted = new long[16];
+                int size = 0;
+                for (Node node : data.deletedNodes()) {
+                    if (size == deleted.length) {
+                        deleted = Arrays.copyOf(deleted, size << 1);
+                    }
+                    deleted[size++] = node.getId();
+                }
+
+                if (size > 0) {
+                    deletions.add(Arrays.copyOf(deleted, size));
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        segments = new MappedByteBuffer[0];
+
+        try {
+            raf.close();
+        } catch (IOException e) {
+            LOG.warn("Could not close rank file " + file, e);
+        }
+    }
+
+    /**
+     * @return size of the rank file in bytes.
+     */
+    public long sizeInBytes() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int offset(long nodeId) {
+        return (int) (nodeId & SEGMENT_MASK) * ENTRY_BYTES;
+    }
+
+    /**
+     * Get the segment holding the rank of a node, mapping it if it isn't mapped yet.
+     *
+     * @param nodeId ID of the node.
+     * @param create <code>true</code> to extend the file if it doesn't cover the node yet.
+     * @return segment, <code>null</code> if the file doesn't cover the node and create is <code>false</code>.
+     */
+    private MappedByteBuffer segment(long nodeId, boolean create) {
+        int index = (int) (nodeId >>> SEGMENT_SHIFT);
+
+        MappedByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+
+        synchronized (this) {
+            current = segments;
+            if (index < current.length && current[index] != null) {
+                return current[index];
+            }
+
+            long position = index * SEGMENT_BYTES;
+            try {
+                if (!create && channel.size() < position + SEGMENT_BYTES) {
+                    return null;
+                }
+
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_BYTES);
+                MappedByteBuffer[] grown = Arrays.copyOf(current, Math.max(current.length, index + 1));
+                grown[index] = segment;
+                segments = grown;
+                return segment;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map rank file " + file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import java.util.Arrays;
+
+/**
+ * A map of node IDs to positions in some array, backed by primitive arrays with open addressing. Removal shifts back
+ * the entries that follow the removed one in the same probe sequence, so no tombstones are needed and the map never
+ * degrades. Node IDs must not be negative.
+ * <p/>
+ * This class is not thread-safe.
+ */
+final class NodePositions {
+
+    private static final long FREE = -1L;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private int[] positions;
+    private int mask;
+    private int size;
+
+    /**
+     * Create a new map.
+     *
+     * @param expectedSize number of node IDs the map is expected to hold before it has to grow.
+     * @throws IllegalArgumentException if the map can't hold that many node IDs.
+     */
+    NodePositions(int expectedSize) {
+        if (expectedSize < 0 || expectedSize >= MAX_CAPACITY * LOAD_FACTOR) {
+            throw new IllegalArgumentException("Can't hold " + expectedSize + " node positions, at most " + (int) (MAX_CAPACITY * LOAD_FACTOR - 1));
+        }
+
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @param nodeId ID of a node.
+     * @return position of the node, -1 if the node isn't in the map.
+     */
+    int get(long nodeId) {
+        int slot = slot(nodeId);
+        return keys[slot] == nodeId ? positions[slot] : -1;
+    }
+
+    /**
+     * @param nodeId   ID of a node.
+     * @param position of the node.
+     * @throws IllegalStateException if the map is full and can't grow any more.
+     */
+    void put(long nodeId, int position) {
+        int slot = slot(nodeId);
+        if (keys[slot] != nodeId) {
+            if (size + 1 > keys.length * LOAD_FACTOR && keys.length >= MAX_CAPACITY) {
+                throw new IllegalStateException("Can't hold more than " + size + " node positions");
+            }
+            keys[slot] = nodeId;
+            if (++size > keys.length * LOAD_FACTOR) {
+                positions[slot] = position;
+                rehash(keys.length << 1);
+                return;
+            }
+        }
+        positions[slot] = position;
+    }
+
+    /**
+     * @param nodeId ID of the node to remove.
+     */
+    void remove(long nodeId) {
+        int free = slot(nodeId);
+        if (keys[free] != nodeId) {
+            return;
+        }
+
+        int current = free;
+        while (true) {
+            current = (current + 1) & mask;
+            if (keys[current] == FREE) {
+                break;
+            }
+
+            int home = mix(keys[current]) & mask;
+            //move the entry back unless its home lies cyclically in (free, current]
+            if (free <= current ? (home <= free || home > current) : (home <= free && home > current)) {
+                keys[free] = keys[current];
+                positions[free] = positions[current];
+                free = current;
+            }
+        }
+
+        keys[free] = FREE;
+        size--;
+    }
+
+    /**
+     * @return number of node IDs in the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return number of bytes allocated by the map on the heap, not counting object headers.
+     */
+    long sizeInBytes() {
+        return (long) keys.length * 8 + (long) positions.length * 4;
+    }
+
+    private int slot(long nodeId) {
+        int slot = mix(nodeId) & mask;
+        while (keys[slot] != FREE && keys[slot] != nodeId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldPositions = positions;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                positions[slot] = oldPositions[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        positions = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
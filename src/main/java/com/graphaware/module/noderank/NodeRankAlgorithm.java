@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+/**
+ * Algorithm used by the {@link NodeRankModule} to compute node ranks.
+ */
+public enum NodeRankAlgorithm {
+
+    /**
+     * Perpetually walk the graph and count visits of nodes. Ranks are integers, which converge to (not normalised)
+     * PageRank over time.
+     */
+    RANDOM_WALK,
+
+    /**
+     * Periodically compute PageRank of a {@link GraphProjection} by power iteration and write the scores, which sum up
+     * to 1, to the ranked nodes.
+     */
+    POWER_ITERATION
+}
@@ -21,31 +21,62 @@ import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.ErrorState;
+import org.neo4j.graphdb.event.KernelEventHandler;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Read access to the results of {@link NodeRankModule}s.
+ * <p/>
+ * Modules are looked up in the {@link RuntimeRegistry} once and then cached until they shut down. A cached module that
+ * is no longer running is looked up again, and all modules of a database are evicted when the database shuts down, so
+ * the cache keeps neither shut down modules nor databases reachable. Top ranked nodes are read from the
+ * {@link TopRankedSnapshot} last published by the module, so reads never wait for the module.
+ */
 public class NodeRankApi {
 
+    private static final ConcurrentMap<GraphDatabaseService, ConcurrentMap<String, NodeRankModule>> MODULES = new ConcurrentHashMap<>();
+
     private final GraphDatabaseService database;
 
     public NodeRankApi(GraphDatabaseService database) {
         this.database = database;
     }
 
+    /**
+     * Get the top ranked nodes of a module. Needs no transaction.
+     *
+     * @param moduleId ID of the module.
+     * @return snapshot of the top ranked node IDs and their ranks.
+     */
+    public TopRankedSnapshot getTopRanked(String moduleId) {
+        return module(moduleId).getTopNodes().getSnapshot();
+    }
+
+    /**
+     * Get the top ranked nodes of a ranking computed by a module. Needs no transaction.
+     *
+     * @param moduleId ID of the module.
+     * @param ranking  name of an additional ranking of the module, <code>null</code> or empty for the module's own.
+     * @return snapshot of the top ranked node IDs and their ranks.
+     * @see NodeRankModuleConfiguration#withRanking(String, NodeRankModuleConfiguration)
+     */
+    public TopRankedSnapshot getTopRanked(String moduleId, String ranking) {
+        return module(moduleId).getTopNodes(ranking).getSnapshot();
+    }
+
     public List<Node> getTopRankedNodes(String moduleId, int limit) {
         List<Node> result = new LinkedList<>();
-        NodeRankModule module = RuntimeRegistry.getStartedRuntime(database).getModule(moduleId, NodeRankModule.class);
+        TopRankedSnapshot snapshot = getTopRanked(moduleId);
 
         try (Transaction tx = database.beginTx()) {
-            for (Node node : module.getTopNodes().getTopNodes()) {
+            for (int i = 0; i < snapshot.size() && result.size() < limit; i++) {
                 try {
-                    result.add(node);
-
-                    if (result.size() >= limit) {
-                        break;
-                    }
-
+                    result.add(database.getNodeById(snapshot.nodeId(i)));
                 } catch (NotFoundException e) {
                     //oh well, deleted in the meantime
                 }
@@ -57,4 +88,140 @@ public class NodeRankApi {
         return result;
     }
 
+    /**
+     * Compute personalized node rank with respect to a set of seed nodes. Must be called within a transaction.
+     *
+     * @param moduleId ID of the module, whose configuration and projection to use.
+     * @param seedIds  IDs of the seed nodes.
+     * @param walks    number of random walks to perform.
+     * @param limit    maximum number of top ranked nodes to return.
+     * @return top ranked nodes.
+     */
+    public TopRankedSnapshot getPersonalized(String moduleId, long[] seedIds, int walks, int limit) {
+        return module(moduleId).personalizedRank(database, seedIds, walks, limit);
+    }
+
+    /**
+     * Get the rank of a node, wherever the module stores ranks, from a single computation if ranks are double
+     * buffered. Must be called within a transaction.
+     *
+     * @param moduleId ID of the module.
+     * @param ranking  name of an additional ranking of the module, <code>null</code> or empty for the module's own.
+     * @param node     to get the rank of.
+     * @return rank of the node, 0 if it has none.
+     */
+    public double getRank(String moduleId, String ranking, Node node) {
+        return module(moduleId).getRank(ranking, node);
+    }
+
+    /**
+     * Get the ranks of a batch of nodes in one call, wherever the module stores ranks, from a single computation if
+     * ranks are double buffered. Ranks stored in node properties are read node by node as a fallback, see
+     * {@link NodeRankModule#getRanks(String, GraphDatabaseService, long[])}. Must be called within a transaction.
+     *
+     * @param moduleId ID of the module.
+     * @param ranking  name of an additional ranking of the module, <code>null</code> or empty for the module's own.
+     * @param nodeIds  IDs of the nodes to get the ranks of.
+     * @return ranks of the nodes in the order of their IDs, 0 for nodes without a rank, {@link Double#NaN} for nodes
+     * that don't exist.
+     */
+    public double[] getRanks(String moduleId, String ranking, long[] nodeIds) {
+        return module(moduleId).getRanks(ranking, database, nodeIds);
+    }
+
+    /**
+     * Get the statistics of a module. Needs no transaction.
+     *
+     * @param moduleId ID of the module.
+     * @return statistics of the module.
+     */
+    public NodeRankStatistics getStatistics(String moduleId) {
+        return module(moduleId).getStatistics();
+    }
+
+    /**
+     * Stop caching a module, called when the module shuts down.
+     *
+     * @param database the module runs on.
+     * @param moduleId ID of the module.
+     */
+    static void forget(GraphDatabaseService database, String moduleId) {
+        ConcurrentMap<String, NodeRankModule> modules = MODULES.get(database);
+        if (modules != null) {
+            modules.remove(moduleId);
+        }
+    }
+
+    /**
+     * @param database to check.
+     * @return <code>true</code> iff modules of the database are cached, even if none of them is at the moment.
+     */
+    static boolean isCached(GraphDatabaseService database) {
+        return MODULES.containsKey(database);
+    }
+
+    /**
+     * @param database the module runs on.
+     * @param moduleId ID of the module.
+     * @return <code>true</code> iff the module is cached.
+     */
+    static boolean isCached(GraphDatabaseService database, String moduleId) {
+        ConcurrentMap<String, NodeRankModule> modules = MODULES.get(database);
+        return modules != null && modules.containsKey(moduleId);
+    }
+
+    private NodeRankModule module(String moduleId) {
+        ConcurrentMap<String, NodeRankModule> modules = MODULES.get(database);
+        if (modules == null) {
+            modules = MODULES.computeIfAbsent(database, NodeRankApi::register);
+        }
+
+        NodeRankModule module = modules.get(moduleId);
+        if (module != null && module.isRunning()) {
+            return module;
+        }
+
+        if (module != null) {
+            modules.remove(moduleId, module);
+        }
+
+        module = RuntimeRegistry.getStartedRuntime(database).getModule(moduleId, NodeRankModule.class);
+        modules.put(moduleId, module);
+
+        //a module shutting down meanwhile may have been forgotten before it was cached
+        if (!module.isRunning()) {
+            modules.remove(moduleId, module);
+        }
+
+        return module;
+    }
+
+    /**
+     * Create the cache of modules of a database, evicted when the database shuts down.
+     */
+    private static ConcurrentMap<String, NodeRankModule> register(GraphDatabaseService database) {
+        database.registerKernelEventHandler(new KernelEventHandler() {
+            @Override
+            public void beforeShutdown() {
+                MODULES.remove(database);
+            }
+
+            @Override
+            public void kernelPanic(ErrorState error) {
+                //the cache is evicted on shutdown
+            }
+
+            @Override
+            public Object getResource() {
+                return null;
+            }
+
+            @Override
+            public ExecutionOrder orderComparedTo(KernelEventHandler other) {
+                return ExecutionOrder.DOESNT_MATTER;
+            }
+        });
+
+        return new ConcurrentHashMap<>();
+    }
 }
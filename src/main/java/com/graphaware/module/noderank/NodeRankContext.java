@@ -19,35 +19,88 @@ package com.graphaware.module.noderank;
 import com.graphaware.runtime.metadata.NodeBasedContext;
 import org.neo4j.graphdb.Node;
 
+import java.util.Map;
+
 /**
  * Context for the {@link NodeRankModule} that extends {@link NodeBasedContext} and also remembers a
- * number of nodes with highest node ranks.
+ * number of nodes with highest node ranks and, optionally, the nodes additional walkers stand on and the contexts of
+ * additional rankings, keyed by ranking name.
+ * <p/>
+ * The context is persisted by the runtime after every invocation of the module, so the remembered node IDs are held
+ * in the compact form produced by {@link NodeRankContextCodec} rather than as an array of objects.
  */
 public class NodeRankContext extends NodeBasedContext {
 
-    private Long[] topNodes;
+    private byte[] state;
 
-    public NodeRankContext(long nodeId, Long[] topNodes) {
+    public NodeRankContext(long nodeId, long[] topNodes) {
         super(nodeId);
-        this.topNodes = topNodes;
+        this.state = NodeRankContextCodec.encode(topNodes, null);
     }
 
-    public NodeRankContext(Node node, Long[] topNodes) {
+    public NodeRankContext(Node node, long[] topNodes) {
         super(node);
-        this.topNodes = topNodes;
+        this.state = NodeRankContextCodec.encode(topNodes, null);
     }
 
-    public NodeRankContext(long nodeId, long earliestNextCall, Long[] topNodes) {
+    public NodeRankContext(long nodeId, long earliestNextCall, long[] topNodes) {
         super(nodeId, earliestNextCall);
-        this.topNodes = topNodes;
+        this.state = NodeRankContextCodec.encode(topNodes, null);
     }
 
-    public NodeRankContext(Node node, long earliestNextCall, Long[] topNodes) {
+    public NodeRankContext(Node node, long earliestNextCall, long[] topNodes) {
         super(node, earliestNextCall);
-        this.topNodes = topNodes;
+        this.state = NodeRankContextCodec.encode(topNodes, null);
+    }
+
+    public NodeRankContext(long nodeId, long[] topNodes, long[] walkerNodeIds) {
+        super(nodeId);
+        this.state = NodeRankContextCodec.encode(topNodes, walkerNodeIds);
+    }
+
+    public NodeRankContext(long nodeId, long earliestNextCall, long[] topNodes, long[] walkerNodeIds) {
+        super(nodeId, earliestNextCall);
+        this.state = NodeRankContextCodec.encode(topNodes, walkerNodeIds);
+    }
+
+    public NodeRankContext(long nodeId, long[] topNodes, long[] walkerNodeIds, Map<String, NodeRankContext> rankings) {
+        super(nodeId);
+        this.state = NodeRankContextCodec.encode(topNodes, walkerNodeIds, rankings);
+    }
+
+    public NodeRankContext(long nodeId, long earliestNextCall, long[] topNodes, long[] walkerNodeIds, Map<String, NodeRankContext> rankings) {
+        super(nodeId, earliestNextCall);
+        this.state = NodeRankContextCodec.encode(topNodes, walkerNodeIds, rankings);
+    }
+
+    NodeRankContext(long nodeId, byte[] state) {
+        super(nodeId);
+        this.state = state;
+    }
+
+    /**
+     * @return IDs of the top ranked nodes in ascending order of ID, not of rank.
+     */
+    public long[] getTopNodes() {
+        return NodeRankContextCodec.decodeTopNodes(state);
+    }
+
+    /**
+     * @return IDs of the nodes the additional walkers stood on, empty if not remembered.
+     */
+    public long[] getWalkerNodeIds() {
+        return NodeRankContextCodec.decodeWalkerNodeIds(state);
+    }
+
+    /**
+     * @return contexts of the additional rankings keyed by ranking name, empty if not remembered. The node of each
+     * context is the one the ranking's walker stood on.
+     */
+    public Map<String, NodeRankContext> getRankings() {
+        return NodeRankContextCodec.decodeRankings(state);
     }
 
-    public Long[] getTopNodes() {
-        return topNodes;
+    byte[] getState() {
+        return state;
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes the state held by a {@link NodeRankContext} into a compact, versioned byte array.
+ * <p/>
+ * Version 1 of the format is a version byte followed by two sections, the IDs of the top ranked nodes and the IDs of
+ * the nodes the additional walkers stand on. Each section is a varint count followed by the IDs, every one of them
+ * stored as the zig-zag varint difference from the previous one.
+ * <p/>
+ * The IDs of the top ranked nodes are sorted before they are encoded, as their ranks are read again when they are
+ * decoded, so their order needn't be kept. The differences are then as small as the IDs are dense: k IDs spread
+ * evenly over the IDs up to n take about log128(2n / k) bytes each, e.g. 1 to 2 bytes for close IDs and 3 to 4 bytes
+ * for 10,000 IDs spread over 2^34 IDs, rather than the 5 or more bytes of randomly ordered IDs.
+ * <p/>
+ * Version 2 adds a third section, the state of the additional rankings. It is a varint count followed by, for every
+ * ranking, the varint length and UTF-8 bytes of its name, the zig-zag varint ID of the node its walker stands on and
+ * the varint length and bytes of its own state, encoded in the same format. Version 1 state is still decoded, as state
+ * without additional rankings.
+ */
+final class NodeRankContextCodec {
+
+    private static final Log LOG = LoggerFactory.getLogger(NodeRankContextCodec.class);
+
+    static final byte VERSION = 2;
+
+    private static final byte VERSION_WITHOUT_RANKINGS = 1;
+
+    private static final long[] NONE = new long[0];
+
+    private NodeRankContextCodec() {
+    }
+
+    /**
+     * Encode context state.
+     *
+     * @param topNodes      IDs of top ranked nodes, in any order.
+     * @param walkerNodeIds IDs of the nodes walkers stand on.
+     * @return encoded state.
+     */
+    static byte[] encode(long[] topNodes, long[] walkerNodeIds) {
+        return encode(topNodes, walkerNodeIds, null);
+    }
+
+    /**
+     * Encode context state, including the state of additional rankings.
+     *
+     * @param topNodes      IDs of top ranked nodes, in any order.
+     * @param walkerNodeIds IDs of the nodes walkers stand on.
+     * @param rankings      contexts of additional rankings keyed by ranking name, <code>null</code> if there are none.
+     * @return encoded state.
+     */
+    static byte[] encode(long[] topNodes, long[] walkerNodeIds, Map<String, NodeRankContext> rankings) {
+        if (rankings == null) {
+            rankings = Collections.emptyMap();
+        }
+
+        int rankingsLength = 5;
+        for (Map.Entry<String, NodeRankContext> ranking : rankings.entrySet()) {
+            rankingsLength += 5 + ranking.getKey().length() * 3 + 10 + 5 + ranking.getValue().getState().length;
+        }
+
+        byte[] buffer = new byte[1 + maxLength(topNodes) + maxLength(walkerNodeIds) + rankingsLength];
+        buffer[0] = VERSION;
+
+        long[] sortedTopNodes = topNodes == null ? NONE : topNodes.clone();
+        Arrays.sort(sortedTopNodes);
+
+        int position = write(sortedTopNodes, buffer, 1);
+        position = write(walkerNodeIds, buffer, position);
+
+        position = writeVarLong(rankings.size(), buffer, position);
+        for (Map.Entry<String, NodeRankContext> ranking : rankings.entrySet()) {
+            position = write(ranking.getKey().getBytes(StandardCharsets.UTF_8), buffer, position);
+            long nodeId = ranking.getValue().getNodeId();
+            position = writeVarLong((nodeId << 1) ^ (nodeId >> 63), buffer, position);
+            position = write(ranking.getValue().getState(), buffer, position);
+        }
+
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * @param state encoded by {@link #encode(long[], long[])}.
+     * @return IDs of top ranked nodes in ascending order, empty if the state is missing or of an unknown version.
+     */
+    static long[] decodeTopNodes(byte[] state) {
+        return decode(state, 0);
+    }
+
+    /**
+     * @param state encoded by {@link #encode(long[], long[])}.
+     * @return IDs of the nodes walkers stand on, empty if the state is missing or of an unknown version.
+     */
+    static long[] decodeWalkerNodeIds(byte[] state) {
+        return decode(state, 1);
+    }
+
+    /**
+     * @param state encoded by {@link #encode(long[], long[], Map)}.
+     * @return contexts of additional rankings keyed by ranking name, in the order they were encoded. Empty if the state
+     * is missing, of an unknown version or of a version without additional rankings.
+     */
+    static Map<String, NodeRankContext> decodeRankings(byte[] state) {
+        if (!isKnown(state) || state[0] == VERSION_WITHOUT_RANKINGS) {
+            return Collections.emptyMap();
+        }
+
+        int[] position = {1};
+        skipSections(state, position, 2);
+
+        int count = (int) readVarLong(state, position);
+        Map<String, NodeRankContext> result = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = new String(readBytes(state, position), StandardCharsets.UTF_8);
+            long zigZag = readVarLong(state, position);
+            result.put(name, new NodeRankContext((zigZag >>> 1) ^ -(zigZag & 1), readBytes(state, position)));
+        }
+
+        return result;
+    }
+
+    private static long[] decode(byte[] state, int section) {
+        if (!isKnown(state)) {
+            return NONE;
+        }
+
+        int[] position = {1};
+        skipSections(state, position, section);
+
+        long[] result = new long[(int) readVarLong(state, position)];
+        long previous = 0;
+        for (int i = 0; i < result.length; i++) {
+            long zigZag = readVarLong(state, position);
+            previous += (zigZag >>> 1) ^ -(zigZag & 1);
+            result[i] = previous;
+        }
+
+        return result;
+    }
+
+    private static boolean isKnown(byte[] state) {
+        if (state == null || state.length == 0) {
+            return false;
+        }
+
+        if (state[0] != VERSION && state[0] != VERSION_WITHOUT_RANKINGS) {
+            LOG.warn("Unknown NodeRank context version %s, the context will be ignored", state[0]);
+            return false;
+        }
+
+        return true;
+    }
+
+    private static void skipSections(byte[] state, int[] position, int sections) {
+        for (int i = 0; i < sections; i++) {
+            long count = readVarLong(state, position);
+            for (long j = 0; j < count; j++) {
+                readVarLong(state, position);
+            }
+        }
+    }
+
+    private static byte[] readBytes(byte[] state, int[] position) {
+        int length = (int) readVarLong(state, position);
+        byte[] result = Arrays.copyOfRange(state, position[0], position[0] + length);
+        position[0] += length;
+        return result;
+    }
+
+    private static int write(byte[] bytes, byte[] buffer, int position) {
+        position = writeVarLong(bytes.length, buffer, position);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    private static int maxLength(long[] ids) {
+        return 5 + (ids == null ? 0 : ids.length * 10);
+    }
+
+    private static int write(long[] ids, byte[] buffer, int position) {
+        if (ids == null) {
+            ids = NONE;
+        }
+
+        position = writeVarLong(ids.length, buffer, position);
+
+        long previous = 0;
+        for (long id : ids) {
+            long delta = id - previous;
+            position = writeVarLong((delta << 1) ^ (delta >> 63), buffer, position);
+            previous = id;
+        }
+
+        return position;
+    }
+
+    private static int writeVarLong(long value, byte[] buffer, int position) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] buffer, int[] position) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+}
@@ -22,14 +22,27 @@ import com.graphaware.runtime.config.util.InstanceRoleUtils;
 import com.graphaware.runtime.metadata.NodeBasedContext;
 import com.graphaware.runtime.module.BaseTimerDrivenModule;
 import com.graphaware.runtime.module.TimerDrivenModule;
-import com.graphaware.runtime.walk.NodeSelector;
-import com.graphaware.runtime.walk.RandomNodeSelector;
-import com.graphaware.runtime.walk.RandomRelationshipSelector;
-import com.graphaware.runtime.walk.RelationshipSelector;
 import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 import org.neo4j.logging.Log;
 
-import java.util.Random;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * A {@link TimerDrivenModule} that perpetually walks the graph by randomly following relationships and increments
@@ -37,16 +50,46 @@ import java.util.Random;
  * <p/>
  * Sooner or later, depending on the size and shape of the network, it will converge to values that would be computed
  * by PageRank algorithm (not normalised).
+ * <p/>
+ * Alternatively, when configured with {@link NodeRankAlgorithm#POWER_ITERATION}, it periodically computes PageRank
+ * exactly over a {@link GraphProjection} and writes the scores to the nodes in batches.
  */
 public class NodeRankModule extends BaseTimerDrivenModule<NodeRankContext> implements TimerDrivenModule<NodeRankContext> {
 
     private static final Log LOG = LoggerFactory.getLogger(NodeRankModule.class);
 
+    private static final int MAX_QUEUED_PROJECTION_CHANGES = 1_000_000;
+    private static final double MAX_CHANGED_PROJECTION_FRACTION = 0.1;
+
     private final NodeRankModuleConfiguration config;
-    private final NodeSelector nodeSelector;
-    private final RelationshipSelector relationshipSelector;
+    private final SupernodeCache supernodes;
+    private final List<TransactionEventHandler<long[]>> supernodeInvalidators = new ArrayList<>();
+    private final EligibleNodes eligibleNodes;
+    private EligibleNodesUpdater eligibleNodesUpdater;
+    private final Queue<ProjectionChanges> eligibleNodeChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedEligibleNodeChanges = new AtomicInteger();
+    private final ConvergenceTracker convergence;
+    private final NodeRankStatistics statistics;
+    private final RankStore rankStore;
+    private final RankDecay decay;
+    private final List<TransactionEventHandler<Void>> rankStoreCleaners = new ArrayList<>();
+    private final Map<String, Ranking> rankings = new LinkedHashMap<>();
+    private ObjectName statisticsName;
+    private TransactionEventHandler<Void> convergenceChangeCounter;
+    private final RandomWalker walker;
     private final TopRankedNodes topNodes = new TopRankedNodes();
-    private final Random random = new Random();
+    private final VisitCounter pendingVisits = new VisitCounter();
+    private WalkerPool walkerPool;
+    private boolean rankingsRestored;
+    private volatile PowerIterationEngine powerIteration;
+    private volatile boolean running;
+    private volatile GraphProjection projection;
+    private final ReadWriteLock projectionLock = new ReentrantReadWriteLock();
+    private ProjectionUpdater projectionUpdater;
+    private final Queue<ProjectionChanges> projectionChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedProjectionChanges = new AtomicInteger();
+    private int invocationsSinceFlush;
+    private GraphDatabaseService database;
 
     /**
      * Constructs a new {@link NodeRankModule} with the given ID using the default module configuration.
@@ -66,8 +109,25 @@ public class NodeRankModule extends BaseTimerDrivenModule<NodeRankContext> imple
     public NodeRankModule(String moduleId, NodeRankModuleConfiguration config) {
         super(moduleId);
         this.config = config;
-        this.nodeSelector = new RandomNodeSelector(config.getNodeInclusionPolicy());
-        this.relationshipSelector = new RandomRelationshipSelector(config.getRelationshipInclusionPolicy());
+        this.supernodes = config.getEffectiveSupernodeThreshold() > 0 ? new SupernodeCache(config.getSupernodeCacheSize()) : null;
+        this.eligibleNodes = usesEligibleNodes(config) ? new EligibleNodes() : null;
+        this.convergence = new ConvergenceTracker(config.getConvergenceThreshold(), config.getMaxConvergenceBackoff(), config.getConvergenceResetChanges());
+        this.statistics = new NodeRankStatistics(supernodes, convergence, this::getCompiledPolicyEvaluations);
+        this.walker = new RandomWalker(config, supernodes, eligibleNodes, statistics);
+        this.rankStore = rankStore(config);
+        this.decay = RankDecay.forConfiguration(config, rankStore);
+
+        Set<String> rankPropertyKeys = new HashSet<>();
+        rankPropertyKeys.add(config.getRankPropertyKey());
+        for (Map.Entry<String, NodeRankModuleConfiguration> ranking : config.getRankings().entrySet()) {
+            if (config.getAlgorithm() != NodeRankAlgorithm.RANDOM_WALK) {
+                throw new IllegalArgumentException("Additional rankings can only be computed by " + NodeRankAlgorithm.RANDOM_WALK);
+            }
+            if (!rankPropertyKeys.add(ranking.getValue().getRankPropertyKey())) {
+                throw new IllegalArgumentException("Ranking " + ranking.getKey() + " must have its own rank property key, " + ranking.getValue().getRankPropertyKey() + " is already used");
+            }
+            rankings.put(ranking.getKey(), new Ranking(ranking.getValue(), config, supernodes, rankStore(ranking.getValue()), statistics));
+        }
     }
 
     /**
@@ -86,7 +146,7 @@ public class NodeRankModule extends BaseTimerDrivenModule<NodeRankContext> imple
         Node node;
 
         try (Transaction tx = database.beginTx()) {
-            node = nodeSelector.selectNode(database);
+            node = walker.randomNode(database);
             tx.success();
         }
 
@@ -96,29 +156,392 @@ public class NodeRankModule extends BaseTimerDrivenModule<NodeRankContext> imple
         }
 
         LOG.info("Starting node rank graph walker from random start node...");
-        return new NodeRankContext(node.getId(), new Long[0]);
+        return new NodeRankContext(node.getId(), new long[0]);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public NodeRankContext doSomeWork(NodeRankContext lastContext, GraphDatabaseService database) {
-        topNodes.initializeIfNeeded(lastContext, database, config);
+    public void start(GraphDatabaseService database) {
+        super.start(database);
+        this.database = database;
+        this.running = true;
+
+        if (config.isProjectionEnabled() && config.getAlgorithm() == NodeRankAlgorithm.RANDOM_WALK) {
+            projectionUpdater = new ProjectionUpdater(config, this::enqueue);
+            database.registerTransactionEventHandler(projectionUpdater);
+        }
+
+        registerSupernodeInvalidator(supernodes, config);
+        for (Ranking ranking : rankings.values()) {
+            registerSupernodeInvalidator(ranking.getOwnSupernodeCache(), ranking.getConfiguration());
+        }
+
+        if (eligibleNodes != null) {
+            eligibleNodesUpdater = new EligibleNodesUpdater(config.getNodeInclusionPolicy(), writtenPropertyKeys(), this::enqueueEligibleNodeChanges);
+            database.registerTransactionEventHandler(eligibleNodesUpdater);
+        }
+
+        if (config.getMaxConvergenceBackoff() > 0 && config.getAlgorithm() == NodeRankAlgorithm.RANDOM_WALK) {
+            convergenceChangeCounter = convergence.changeCounter();
+            database.registerTransactionEventHandler(convergenceChangeCounter);
+        }
+
+        registerRankStoreCleaner(rankStore);
+        for (Ranking ranking : rankings.values()) {
+            registerRankStoreCleaner(ranking.getRankStore());
+        }
+
+        registerStatistics();
+    }
 
-        Node lastNode = determineLastNode(lastContext, database);
-        Node nextNode = determineNextNode(lastNode, database);
+    private void registerSupernodeInvalidator(SupernodeCache cache, NodeRankModuleConfiguration config) {
+        if (cache != null) {
+            TransactionEventHandler<long[]> invalidator = cache.invalidator(config.getWeightPropertyKey());
+            database.registerTransactionEventHandler(invalidator);
+            supernodeInvalidators.add(invalidator);
+        }
+    }
+
+    private void registerRankStoreCleaner(RankStore store) {
+        if (store instanceof MappedFileRankStore) {
+            TransactionEventHandler<Void> cleaner = ((MappedFileRankStore) store).cleaner();
+            database.registerTransactionEventHandler(cleaner);
+            rankStoreCleaners.add(cleaner);
+
+            //deletions committed while the module wasn't running were never collected by the cleaner
+            long cleared = ((MappedFileRankStore) store).clearMissing(database);
+            if (cleared > 0) {
+                LOG.info("Cleared ranks of %s nodes deleted while module %s was not running", cleared, getId());
+            }
+        }
+    }
+
+    /**
+     * Expose the statistics through JMX, replacing statistics of a previous module with the same ID.
+     */
+    private void registerStatistics() {
+        try {
+            ObjectName name = new ObjectName("com.graphaware.module.noderank:type=NodeRankStatistics,name=" + ObjectName.quote(getId()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(statistics, name);
+            statisticsName = name;
+        } catch (JMException e) {
+            LOG.warn("Could not register NodeRank statistics with JMX", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Writes all visits that have been counted in memory but not yet written to the ranked nodes.
+     */
+    @Override
+    public synchronized void shutdown() {
+        running = false;
+
+        if (database != null) {
+            NodeRankApi.forget(database, getId());
+        }
+
+        if (projectionUpdater != null) {
+            database.unregisterTransactionEventHandler(projectionUpdater);
+            projectionUpdater = null;
+        }
+
+        for (TransactionEventHandler<long[]> invalidator : supernodeInvalidators) {
+            database.unregisterTransactionEventHandler(invalidator);
+        }
+        supernodeInvalidators.clear();
+
+        if (eligibleNodesUpdater != null) {
+            database.unregisterTransactionEventHandler(eligibleNodesUpdater);
+            eligibleNodesUpdater = null;
+        }
+
+        if (convergenceChangeCounter != null) {
+            database.unregisterTransactionEventHandler(convergenceChangeCounter);
+            convergenceChangeCounter = null;
+        }
+
+        for (TransactionEventHandler<Void> cleaner : rankStoreCleaners) {
+            database.unregisterTransactionEventHandler(cleaner);
+        }
+        rankStoreCleaners.clear();
+
+        if (statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                LOG.debug("Could not unregister NodeRank statistics from JMX", e);
+            }
+            statisticsName = null;
+        }
+
+        LOG.info("NodeRank statistics: %s", statistics.toMap());
+
+        if (walkerPool != null) {
+            walkerPool.shutdown();
+            walkerPool = null;
+        }
+
+        if (powerIteration != null) {
+            powerIteration.shutdown();
+            powerIteration = null;
+        }
+
+        projectionLock.writeLock().lock();
+        try {
+            if (projection != null) {
+                projection.release();
+                projection = null;
+            }
+        } finally {
+            projectionLock.writeLock().unlock();
+        }
+
+        if (eligibleNodes != null) {
+            eligibleNodes.release();
+        }
+
+        if (database != null && pendingNodes() > 0) {
+            try (Transaction tx = database.beginTx()) {
+                flushPendingVisits(database);
+                tx.success();
+            } catch (RuntimeException e) {
+                LOG.warn("Could not write " + pendingNodes() + " pending node ranks on shutdown", e);
+            }
+        }
+
+        rankStore.close();
+        for (Ranking ranking : rankings.values()) {
+            ranking.close();
+        }
 
-        if (nextNode == null) {
+        super.shutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized NodeRankContext doSomeWork(NodeRankContext lastContext, GraphDatabaseService database) {
+        long start = System.nanoTime();
+        try {
+            topNodes.initializeIfNeeded(lastContext, database, config, rankStore);
+
+            if (config.getAlgorithm() == NodeRankAlgorithm.POWER_ITERATION) {
+                return doSomePowerIteration(lastContext, database);
+            }
+
+            return doSomeWalking(lastContext, database);
+        } finally {
+            statistics.recordInvocation(System.nanoTime() - start);
+        }
+    }
+
+    private NodeRankContext doSomeWalking(NodeRankContext lastContext, GraphDatabaseService database) {
+        if (config.isProjectionEnabled()) {
+            projectionLock.writeLock().lock();
+            try {
+                updateProjection(database);
+            } finally {
+                projectionLock.writeLock().unlock();
+            }
+        }
+
+        if (eligibleNodes != null) {
+            updateEligibleNodes(database);
+        }
+
+        WalkerPool pool = walkerPool(lastContext);
+        if (pool != null) {
+            pool.startWalking(config.getStepsPerInvocation(), database);
+        }
+
+        walker.moveTo(determineLastNode(lastContext, database));
+        int steps = walker.walk(config.getStepsPerInvocation(), database, pendingVisits);
+
+        if (pool != null) {
+            pool.awaitAndMerge(pendingVisits);
+        }
+
+        Map<String, NodeRankContext> lastRankings = rankingsRestored || lastContext == null ? Collections.emptyMap() : lastContext.getRankings();
+        rankingsRestored = true;
+        for (Map.Entry<String, Ranking> ranking : rankings.entrySet()) {
+            ranking.getValue().walk(config.getStepsPerInvocation(), database, lastRankings.get(ranking.getKey()));
+        }
+
+        if (steps == 0) {
             LOG.debug("NodeRank did not find a node to continue with. There are no nodes matching the configuration.");
             return lastContext;
         }
 
-        int rankValue = (int) nextNode.getProperty(config.getRankPropertyKey(), 0) + 1;
-        nextNode.setProperty(config.getRankPropertyKey(), rankValue);
-        topNodes.addNode(nextNode, rankValue);
+        long backoff = convergence.getBackoff();
+        if (++invocationsSinceFlush >= config.getFlushInterval() || pendingNodes() >= config.getMaxPendingNodes()) {
+            flushPendingVisits(database);
+            backoff = checkConvergence();
+        }
+
+        long[] walkerNodeIds = pool == null ? null : pool.getCurrentNodeIds();
+        if (backoff > 0) {
+            return new NodeRankContext(walker.getCurrentNodeId(), System.currentTimeMillis() + backoff, topNodes.getTopNodeIds(), walkerNodeIds, rankingContexts());
+        }
+
+        return new NodeRankContext(walker.getCurrentNodeId(), topNodes.getTopNodeIds(), walkerNodeIds, rankingContexts());
+    }
+
+    private Map<String, NodeRankContext> rankingContexts() {
+        Map<String, NodeRankContext> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Ranking> ranking : rankings.entrySet()) {
+            result.put(ranking.getKey(), ranking.getValue().getContext());
+        }
+        return result;
+    }
+
+    private long checkConvergence() {
+        long previous = convergence.getBackoff();
+        long backoff = convergence.check(topNodes.getSnapshot());
+
+        if (backoff > 0 && previous == 0) {
+            LOG.info("Node ranks have converged with similarity %s, pausing for up to %s ms between invocations", convergence.getSimilarity(), config.getMaxConvergenceBackoff());
+        } else if (backoff == 0 && previous > 0) {
+            LOG.info("Node ranks or the graph have changed, walking at full speed again");
+        }
+
+        return backoff;
+    }
+
+    private void enqueue(ProjectionChanges changes) {
+        if (queuedProjectionChanges.addAndGet(changes.size()) <= MAX_QUEUED_PROJECTION_CHANGES) {
+            projectionChanges.add(changes);
+        }
+    }
+
+    private void enqueueEligibleNodeChanges(ProjectionChanges changes) {
+        if (queuedEligibleNodeChanges.addAndGet(changes.size()) <= MAX_QUEUED_PROJECTION_CHANGES) {
+            eligibleNodeChanges.add(changes);
+        }
+    }
+
+    /**
+     * Apply changes committed since the last invocation to the eligible nodes, or load them if they aren't loaded or
+     * too many changes have been dropped. Called when no walker is walking.
+     */
+    private void updateEligibleNodes(GraphDatabaseService database) {
+        if (!eligibleNodes.isLoaded() || queuedEligibleNodeChanges.get() > MAX_QUEUED_PROJECTION_CHANGES) {
+            eligibleNodeChanges.clear();
+            queuedEligibleNodeChanges.set(0);
+
+            long start = System.currentTimeMillis();
+            eligibleNodes.load(database, config.getNodeInclusionPolicy());
+            LOG.info("Loaded %s eligible node IDs into %s bytes, sorted off-heap, in %s ms", eligibleNodes.size(), eligibleNodes.sizeInBytes(), System.currentTimeMillis() - start);
+            return;
+        }
+
+        ProjectionChanges changes;
+        while ((changes = eligibleNodeChanges.poll()) != null) {
+            queuedEligibleNodeChanges.addAndGet(-changes.size());
+            eligibleNodes.apply(changes);
+        }
+    }
 
-        return new NodeRankContext(nextNode, topNodes.getTopNodeIds());
+    /**
+     * Apply changes committed since the last invocation to the projection, or reload it if it doesn't exist or has
+     * diverged too much from the state it was loaded in. Called when no walker is walking.
+     */
+    private void updateProjection(GraphDatabaseService database) {
+        if (projection == null || queuedProjectionChanges.get() > MAX_QUEUED_PROJECTION_CHANGES
+                || projection.changedNodeCount() > Math.max(10_000, projection.nodeCount() * MAX_CHANGED_PROJECTION_FRACTION)) {
+            loadProjection(database);
+            return;
+        }
+
+        ProjectionChanges changes;
+        while ((changes = projectionChanges.poll()) != null) {
+            queuedProjectionChanges.addAndGet(-changes.size());
+            projection.apply(changes);
+        }
+    }
+
+    private void loadProjection(GraphDatabaseService database) {
+        projectionChanges.clear();
+        queuedProjectionChanges.set(0);
+
+        long start = System.currentTimeMillis();
+        GraphProjection previous = projection;
+        projection = GraphProjection.load(database, config.getNodeInclusionPolicy(), config.getRelationshipInclusionPolicy(), config.getWeightPropertyKey());
+        LOG.info("Projected %s nodes with %s neighbours into %s bytes off-heap in %s ms", projection.nodeCount(), projection.edgeCount(), projection.sizeInBytes(), System.currentTimeMillis() - start);
+
+        walker.useProjection(projection);
+        if (walkerPool != null) {
+            walkerPool.useProjection(projection);
+        }
+        for (Ranking ranking : rankings.values()) {
+            ranking.useProjection(projection);
+        }
+
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    private NodeRankContext doSomePowerIteration(NodeRankContext lastContext, GraphDatabaseService database) {
+        if (powerIteration == null) {
+            powerIteration = new PowerIterationEngine(getId(), config, topNodes, rankStore, statistics);
+        }
+
+        powerIteration.doSomeWork(database);
+
+        Node node = determineLastNode(lastContext, database);
+        if (node == null) {
+            node = walker.randomNode(database);
+        }
+
+        if (node == null) {
+            return lastContext;
+        }
+
+        if (powerIteration.isIdle()) {
+            return new NodeRankContext(node, powerIteration.getNextComputationTime(), topNodes.getTopNodeIds());
+        }
+
+        return new NodeRankContext(node, topNodes.getTopNodeIds());
+    }
+
+    /**
+     * Add the visits counted in memory since the last flush to the ranks stored on the nodes, for the module's ranking
+     * as well as all additional rankings. Must be called within a transaction.
+     *
+     * @param database to write to.
+     * @see Ranking#writeVisits(GraphDatabaseService, VisitCounter, RankStore, RankDecay, TopRankedNodes)
+     */
+    private void flushPendingVisits(GraphDatabaseService database) {
+        statistics.recordFlush(pendingVisits.size());
+
+        Ranking.writeVisits(database, pendingVisits, rankStore, decay, topNodes);
+        pendingVisits.clear();
+
+        for (Ranking ranking : rankings.values()) {
+            ranking.flush(database);
+        }
+
+        invocationsSinceFlush = 0;
+    }
+
+    /**
+     * @return number of distinct nodes visited since the last flush, summed over all rankings.
+     */
+    private int pendingNodes() {
+        int result = pendingVisits.size();
+        for (Ranking ranking : rankings.values()) {
+            result += ranking.pendingNodes();
+        }
+        return result;
     }
 
     private Node determineLastNode(NodeBasedContext lastContext, GraphDatabaseService database) {
@@ -135,34 +558,248 @@ public class NodeRankModule extends BaseTimerDrivenModule<NodeRankContext> imple
         }
     }
 
-    private Node determineNextNode(Node currentNode, GraphDatabaseService database) {
-        if (currentNode == null) {
-            return nodeSelector.selectNode(database);
+    private WalkerPool walkerPool(NodeRankContext lastContext) {
+        if (walkerPool == null && config.getWalkers() > 1) {
+            walkerPool = new WalkerPool(getId(), config.getWalkers() - 1, config, supernodes, eligibleNodes, statistics);
+            walkerPool.useProjection(projection);
+            if (lastContext != null) {
+                walkerPool.moveTo(lastContext.getWalkerNodeIds());
+            }
         }
 
-        //hyperjump
-        if (random.nextDouble() > config.getDampingFactor()) {
-            LOG.debug("Performing hyperjump");
-            return nodeSelector.selectNode(database);
-        }
+        return walkerPool;
+    }
 
-        Relationship randomRelationship = relationshipSelector.selectRelationship(currentNode);
-        if (randomRelationship == null) {
-            LOG.debug("Dead end at %s, selecting a new random node", currentNode);
-            return nodeSelector.selectNode(database);
+    /**
+     * Ranks are stored in node properties, unless a rank directory is configured, in which case they are stored in
+     * a memory-mapped file named after the rank property key.
+     */
+    private static RankStore rankStore(NodeRankModuleConfiguration config) {
+        if (config.getRankDirectory() == null) {
+            return new PropertyRankStore(config.getRankPropertyKey());
         }
 
-        Node result = randomRelationship.getOtherNode(currentNode);
+        return new MappedFileRankStore(new File(config.getRankDirectory(), config.getRankPropertyKey() + ".ranks"));
+    }
+
+    /**
+     * Random nodes are selected from the IDs of eligible nodes when walking the database, if configured so or if nodes
+     * are included by label. The latter are loaded from the label scan store, whilst probing the database would mostly
+     * hit nodes without the label.
+     */
+    private static boolean usesEligibleNodes(NodeRankModuleConfiguration config) {
+        return config.getAlgorithm() == NodeRankAlgorithm.RANDOM_WALK && !config.isProjectionEnabled()
+                && (config.isEligibleNodeIndexEnabled() || config.getNodeInclusionPolicy() instanceof LabelNodeInclusionPolicy);
+    }
+
+    /**
+     * Compute personalized node rank, i.e. rank with respect to a set of seed nodes, rather than globally. Walks the
+     * projection if there is one and it isn't just being updated, otherwise the database. Must be called within a
+     * transaction.
+     *
+     * @param database to rank.
+     * @param seedIds  IDs of the seed nodes.
+     * @param walks    number of random walks to perform; the more, the more precise and the slower.
+     * @param limit    maximum number of top ranked nodes to return.
+     * @return top ranked nodes.
+     * @see PersonalizedNodeRank
+     */
+    public TopRankedSnapshot personalizedRank(GraphDatabaseService database, long[] seedIds, int walks, int limit) {
+        PersonalizedNodeRank personalized = new PersonalizedNodeRank(config, supernodes);
 
-        if (!config.getNodeInclusionPolicy().include(result)) {
-            LOG.debug("Relationship Inclusion Policy allows for a relationship, which leads to a node that " +
-                    "is not included by the Node Inclusion Policy. This is likely a mis-configuration");
+        //don't wait while the projection is being updated or reloaded, walk the database instead
+        if (projectionLock.readLock().tryLock()) {
+            try {
+                if (projection != null) {
+                    return personalized.compute(projection, seedIds, walks, limit);
+                }
+            } finally {
+                projectionLock.readLock().unlock();
+            }
         }
 
+        return personalized.compute(database, seedIds, walks, limit);
+    }
+
+    /**
+     * @return cache of supernode relationships with its hit statistics, <code>null</code> if supernodes aren't treated
+     * specially.
+     */
+    SupernodeCache getSupernodeCache() {
+        return supernodes;
+    }
+
+    /**
+     * @return statistics of the module.
+     */
+    public NodeRankStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return number of evaluations of the configured inclusion policies that were compiled rather than interpreted.
+     * @see InclusionPolicyCompiler
+     */
+    long getCompiledPolicyEvaluations() {
+        long result = 0;
+        if (config.getNodeInclusionPolicy() instanceof CompiledInclusionPolicy) {
+            result += ((CompiledInclusionPolicy) config.getNodeInclusionPolicy()).getEvaluations();
+        }
+        if (config.getRelationshipInclusionPolicy() instanceof CompiledInclusionPolicy) {
+            result += ((CompiledInclusionPolicy) config.getRelationshipInclusionPolicy()).getEvaluations();
+        }
         return result;
     }
 
+    /**
+     * @return tracker of the convergence of node ranks.
+     */
+    ConvergenceTracker getConvergenceTracker() {
+        return convergence;
+    }
+
+    /**
+     * @return IDs of nodes eligible for hyperjumps, <code>null</code> if they aren't kept.
+     */
+    EligibleNodes getEligibleNodes() {
+        return eligibleNodes;
+    }
+
     public TopRankedNodes getTopNodes() {
         return topNodes;
     }
+
+    /**
+     * @return <code>true</code> iff the module has been started and hasn't been shut down.
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get the rank of a node. With double buffering, ranks of nodes ranked by the last complete computation come from
+     * its published buffer, so that all of them are from the same computation. When ranks decay, the rank is expressed
+     * in the current generation of the {@link RankDecay}, like the ranks of the top ranked nodes, so that ranks written
+     * in different generations are comparable. Must be called within a transaction.
+     *
+     * @param ranking name of an additional ranking, <code>null</code> or empty for the module's own ranking.
+     * @param node    to get the rank of.
+     * @return rank of the node, 0 if it has none.
+     * @throws IllegalArgumentException if there is no ranking with the given name.
+     */
+    public double getRank(String ranking, Node node) {
+        RankBuffer buffer = published(ranking);
+        if (buffer != null && buffer.contains(node.getId())) {
+            return buffer.rank(node.getId());
+        }
+
+        RankDecay decay = getDecay(ranking);
+        if (decay != null) {
+            return decay.rank(node, decay.generation(System.currentTimeMillis()));
+        }
+
+        return getRankStore(ranking).getRank(node);
+    }
+
+    /**
+     * Get the ranks of a batch of nodes. With double buffering, the published buffer is only looked up once, so that
+     * ranks of all nodes in the batch ranked by the last complete computation come from that computation. When ranks
+     * decay, they are all expressed in the current generation, see {@link #getRank(String, Node)}. Must be called
+     * within a transaction.
+     * <p/>
+     * Only the published buffer and a {@link MappedFileRankStore} hold ranks in memory. Ranks of other nodes are read
+     * from the {@link RankStore} node by node, which for the default {@link PropertyRankStore} is a fallback that costs
+     * a node and a property lookup per ID.
+     *
+     * @param ranking  name of an additional ranking, <code>null</code> or empty for the module's own ranking.
+     * @param database the nodes are in.
+     * @param nodeIds  IDs of the nodes to get the ranks of.
+     * @return ranks of the nodes in the order of their IDs, 0 for nodes without a rank, {@link Double#NaN} for nodes
+     * that don't exist.
+     * @throws IllegalArgumentException if there is no ranking with the given name.
+     */
+    public double[] getRanks(String ranking, GraphDatabaseService database, long[] nodeIds) {
+        RankBuffer buffer = published(ranking);
+        RankStore store = getRankStore(ranking);
+        RankDecay decay = getDecay(ranking);
+        long generation = decay == null ? 0 : decay.generation(System.currentTimeMillis());
+
+        double[] result = new double[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; i++) {
+            if (buffer != null && buffer.contains(nodeIds[i])) {
+                result[i] = buffer.rank(nodeIds[i]);
+                continue;
+            }
+
+            try {
+                Node node = database.getNodeById(nodeIds[i]);
+                result[i] = decay == null ? store.getRank(node) : decay.rank(node, generation);
+            } catch (NotFoundException e) {
+                result[i] = Double.NaN;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return keys of all node properties the module writes, i.e. ranks of all rankings and their generations.
+     */
+    private Set<String> writtenPropertyKeys() {
+        Set<String> result = new HashSet<>();
+        result.add(config.getRankPropertyKey());
+        result.add(RankDecay.generationPropertyKey(config.getRankPropertyKey()));
+        for (NodeRankModuleConfiguration ranking : config.getRankings().values()) {
+            result.add(ranking.getRankPropertyKey());
+            result.add(RankDecay.generationPropertyKey(ranking.getRankPropertyKey()));
+        }
+        return result;
+    }
+
+    private RankDecay getDecay(String ranking) {
+        return ranking == null || ranking.isEmpty() ? decay : ranking(ranking).getDecay();
+    }
+
+    private RankBuffer published(String ranking) {
+        PowerIterationEngine engine = powerIteration;
+        return engine == null || (ranking != null && !ranking.isEmpty()) ? null : engine.getPublished();
+    }
+
+    /**
+     * Get the store of the ranks of a ranking computed by the module.
+     *
+     * @param ranking name of an additional ranking, <code>null</code> or empty for the module's own ranking.
+     * @return rank store of the ranking.
+     * @throws IllegalArgumentException if there is no ranking with the given name.
+     */
+    public RankStore getRankStore(String ranking) {
+        return ranking == null || ranking.isEmpty() ? rankStore : ranking(ranking).getRankStore();
+    }
+
+    /**
+     * Get the top ranked nodes of a ranking computed by the module.
+     *
+     * @param ranking name of an additional ranking, <code>null</code> or empty for the module's own ranking.
+     * @return top ranked nodes of the ranking.
+     * @throws IllegalArgumentException if there is no ranking with the given name.
+     */
+    public TopRankedNodes getTopNodes(String ranking) {
+        return ranking == null || ranking.isEmpty() ? topNodes : ranking(ranking).getTopNodes();
+    }
+
+    private Ranking ranking(String name) {
+        Ranking result = rankings.get(name);
+        if (result == null) {
+            throw new IllegalArgumentException("Module " + getId() + " has no ranking named " + name);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return projection walked by the module, <code>null</code> if projection is not enabled or not loaded yet.
+     */
+    public GraphProjection getProjection() {
+        return projection;
+    }
 }
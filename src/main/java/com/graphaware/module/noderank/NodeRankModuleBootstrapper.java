@@ -16,7 +16,9 @@
 
 package com.graphaware.module.noderank;
 
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
@@ -40,6 +42,28 @@ public class NodeRankModuleBootstrapper implements RuntimeModuleBootstrapper {
     private static final String PROPERTY_KEY = "propertyKey";
     private static final String NODE = "node";
     private static final String RELATIONSHIP = "relationship";
+    private static final String STEPS_PER_INVOCATION = "stepsPerInvocation";
+    private static final String FLUSH_INTERVAL = "flushInterval";
+    private static final String MAX_PENDING_NODES = "maxPendingNodes";
+    private static final String WALKERS = "walkers";
+    private static final String ALGORITHM = "algorithm";
+    private static final String TOLERANCE = "tolerance";
+    private static final String MAX_ITERATIONS = "maxIterations";
+    private static final String WRITE_BATCH_SIZE = "writeBatchSize";
+    private static final String RECOMPUTE_INTERVAL = "recomputeInterval";
+    private static final String PROJECTION = "projection";
+    private static final String WEIGHT_PROPERTY = "weightProperty";
+    private static final String SUPERNODE_THRESHOLD = "supernodeThreshold";
+    private static final String SUPERNODE_CACHE_SIZE = "supernodeCacheSize";
+    private static final String ELIGIBLE_NODE_INDEX = "eligibleNodeIndex";
+    private static final String CONVERGENCE_THRESHOLD = "convergenceThreshold";
+    private static final String MAX_CONVERGENCE_BACKOFF = "maxConvergenceBackoff";
+    private static final String CONVERGENCE_RESET_CHANGES = "convergenceResetChanges";
+    private static final String RANK_HALF_LIFE = "rankHalfLife";
+    private static final String RANKING = "ranking.";
+    private static final String RANK_DIRECTORY = "rankDirectory";
+    private static final String DOUBLE_BUFFERING = "doubleBuffering";
+    private static final String MAX_PERSONALIZED_WALKS = "maxPersonalizedWalks";
 
     /**
      * {@inheritDoc}
@@ -66,19 +90,190 @@ public class NodeRankModuleBootstrapper implements RuntimeModuleBootstrapper {
             configuration = configuration.withDampingFactor(Double.valueOf(config.get(DAMPING)));
         }
 
+        if (config.get(STEPS_PER_INVOCATION) != null) {
+            LOG.info("Steps per invocation set to %s", config.get(STEPS_PER_INVOCATION));
+            configuration = configuration.withStepsPerInvocation(Integer.valueOf(config.get(STEPS_PER_INVOCATION)));
+        }
+
+        if (config.get(FLUSH_INTERVAL) != null) {
+            LOG.info("Flush interval set to %s", config.get(FLUSH_INTERVAL));
+            configuration = configuration.withFlushInterval(Integer.valueOf(config.get(FLUSH_INTERVAL)));
+        }
+
+        if (config.get(MAX_PENDING_NODES) != null) {
+            LOG.info("Max pending nodes set to %s", config.get(MAX_PENDING_NODES));
+            configuration = configuration.withMaxPendingNodes(Integer.valueOf(config.get(MAX_PENDING_NODES)));
+        }
+
+        if (config.get(WALKERS) != null) {
+            LOG.info("Number of walkers set to %s", config.get(WALKERS));
+            configuration = configuration.withWalkers(Integer.valueOf(config.get(WALKERS)));
+        }
+
+        if (config.get(ALGORITHM) != null) {
+            LOG.info("Algorithm set to %s", config.get(ALGORITHM));
+            configuration = configuration.withAlgorithm(NodeRankAlgorithm.valueOf(config.get(ALGORITHM).trim().toUpperCase()));
+        }
+
+        if (config.get(TOLERANCE) != null) {
+            LOG.info("Tolerance set to %s", config.get(TOLERANCE));
+            configuration = configuration.withTolerance(Double.valueOf(config.get(TOLERANCE)));
+        }
+
+        if (config.get(MAX_ITERATIONS) != null) {
+            LOG.info("Max iterations set to %s", config.get(MAX_ITERATIONS));
+            configuration = configuration.withMaxIterations(Integer.valueOf(config.get(MAX_ITERATIONS)));
+        }
+
+        if (config.get(WRITE_BATCH_SIZE) != null) {
+            LOG.info("Write batch size set to %s", config.get(WRITE_BATCH_SIZE));
+            configuration = configuration.withWriteBatchSize(Integer.valueOf(config.get(WRITE_BATCH_SIZE)));
+        }
+
+        if (config.get(RECOMPUTE_INTERVAL) != null) {
+            LOG.info("Recompute interval set to %s ms", config.get(RECOMPUTE_INTERVAL));
+            configuration = configuration.withRecomputeInterval(Long.valueOf(config.get(RECOMPUTE_INTERVAL)));
+        }
+
+        if (config.get(PROJECTION) != null) {
+            LOG.info("Projection set to %s", config.get(PROJECTION));
+            configuration = configuration.withProjection(Boolean.valueOf(config.get(PROJECTION)));
+        }
+
+        if (config.get(WEIGHT_PROPERTY) != null) {
+            LOG.info("Weight property set to %s", config.get(WEIGHT_PROPERTY));
+            configuration = configuration.withWeightPropertyKey(config.get(WEIGHT_PROPERTY));
+        }
+
+        if (config.get(SUPERNODE_THRESHOLD) != null) {
+            LOG.info("Supernode threshold set to %s", config.get(SUPERNODE_THRESHOLD));
+            configuration = configuration.withSupernodeThreshold(Integer.valueOf(config.get(SUPERNODE_THRESHOLD)));
+        }
+
+        if (config.get(SUPERNODE_CACHE_SIZE) != null) {
+            LOG.info("Supernode cache size set to %s", config.get(SUPERNODE_CACHE_SIZE));
+            configuration = configuration.withSupernodeCacheSize(Integer.valueOf(config.get(SUPERNODE_CACHE_SIZE)));
+        }
+
+        if (config.get(ELIGIBLE_NODE_INDEX) != null) {
+            LOG.info("Eligible node index set to %s", config.get(ELIGIBLE_NODE_INDEX));
+            configuration = configuration.withEligibleNodeIndex(Boolean.valueOf(config.get(ELIGIBLE_NODE_INDEX)));
+        }
+
+        if (config.get(CONVERGENCE_THRESHOLD) != null) {
+            LOG.info("Convergence threshold set to %s", config.get(CONVERGENCE_THRESHOLD));
+            configuration = configuration.withConvergenceThreshold(Double.valueOf(config.get(CONVERGENCE_THRESHOLD)));
+        }
+
+        if (config.get(MAX_CONVERGENCE_BACKOFF) != null) {
+            LOG.info("Max convergence backoff set to %s", config.get(MAX_CONVERGENCE_BACKOFF));
+            configuration = configuration.withMaxConvergenceBackoff(Long.valueOf(config.get(MAX_CONVERGENCE_BACKOFF)));
+        }
+
+        if (config.get(CONVERGENCE_RESET_CHANGES) != null) {
+            LOG.info("Convergence reset changes set to %s", config.get(CONVERGENCE_RESET_CHANGES));
+            configuration = configuration.withConvergenceResetChanges(Integer.valueOf(config.get(CONVERGENCE_RESET_CHANGES)));
+        }
+
+        if (config.get(RANK_HALF_LIFE) != null) {
+            LOG.info("Rank half-life set to %s", config.get(RANK_HALF_LIFE));
+            configuration = configuration.withRankHalfLife(Long.valueOf(config.get(RANK_HALF_LIFE)));
+        }
+
+        if (config.get(RANK_DIRECTORY) != null) {
+            LOG.info("Rank directory set to %s", config.get(RANK_DIRECTORY));
+            configuration = configuration.withRankDirectory(config.get(RANK_DIRECTORY));
+        }
+
+        if (config.get(DOUBLE_BUFFERING) != null) {
+            LOG.info("Double buffering set to %s", config.get(DOUBLE_BUFFERING));
+            configuration = configuration.withDoubleBuffering(Boolean.valueOf(config.get(DOUBLE_BUFFERING)));
+        }
+
+        if (config.get(MAX_PERSONALIZED_WALKS) != null) {
+            LOG.info("Max personalized walks set to %s", config.get(MAX_PERSONALIZED_WALKS));
+            configuration = configuration.withMaxPersonalizedWalks(Integer.valueOf(config.get(MAX_PERSONALIZED_WALKS)));
+        }
+
         if (config.get(NODE) != null) {
-            NodeInclusionPolicy policy = StringToNodeInclusionPolicy.getInstance().apply(config.get(NODE));
+            NodeInclusionPolicy policy = nodeInclusionPolicy(config.get(NODE));
             LOG.info("Node Inclusion Policy set to %s", policy);
             configuration = configuration.with(policy);
         }
 
         if (config.get(RELATIONSHIP) != null) {
-            RelationshipInclusionPolicy policy = StringToRelationshipInclusionPolicy.getInstance().apply(config.get(RELATIONSHIP));
+            RelationshipInclusionPolicy policy = relationshipInclusionPolicy(config.get(RELATIONSHIP));
             LOG.info("Relationship Inclusion Policy set to %s", policy);
             configuration = configuration.with(policy);
         }
 
+        NodeRankModuleConfiguration module = configuration;
+        for (String name : rankingNames(config)) {
+            configuration = configuration.withRanking(name, ranking(name, config, module));
+        }
+
         return new NodeRankModule(moduleId, configuration);
     }
 
+    /**
+     * Names of additional rankings, configured by keys such as <code>ranking.people.dampingFactor</code>.
+     */
+    private Set<String> rankingNames(Map<String, String> config) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String key : config.keySet()) {
+            if (key.startsWith(RANKING) && key.indexOf('.', RANKING.length()) > RANKING.length()) {
+                result.add(key.substring(RANKING.length(), key.indexOf('.', RANKING.length())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Configuration of an additional ranking, derived from the module's configuration. The rank property key defaults
+     * to the name of the ranking followed by "Rank".
+     */
+    private NodeRankModuleConfiguration ranking(String name, Map<String, String> config, NodeRankModuleConfiguration module) {
+        String prefix = RANKING + name + ".";
+        NodeRankModuleConfiguration ranking = module.withRankPropertyKey(name + "Rank");
+
+        if (config.get(prefix + PROPERTY_KEY) != null) {
+            ranking = ranking.withRankPropertyKey(config.get(prefix + PROPERTY_KEY));
+        }
+
+        if (config.get(prefix + MAX_TOP_RANK_NODES) != null) {
+            ranking = ranking.withMaxTopRankNodes(Integer.valueOf(config.get(prefix + MAX_TOP_RANK_NODES)));
+        }
+
+        if (config.get(prefix + DAMPING) != null) {
+            ranking = ranking.withDampingFactor(Double.valueOf(config.get(prefix + DAMPING)));
+        }
+
+        if (config.get(prefix + RANK_HALF_LIFE) != null) {
+            ranking = ranking.withRankHalfLife(Long.valueOf(config.get(prefix + RANK_HALF_LIFE)));
+        }
+
+        if (config.get(prefix + NODE) != null) {
+            ranking = ranking.with(nodeInclusionPolicy(config.get(prefix + NODE)));
+        }
+
+        if (config.get(prefix + RELATIONSHIP) != null) {
+            ranking = ranking.with(relationshipInclusionPolicy(config.get(prefix + RELATIONSHIP)));
+        }
+
+        LOG.info("Ranking %s writes %s with damping factor %s, node inclusion policy %s and relationship inclusion policy %s",
+                name, ranking.getRankPropertyKey(), ranking.getDampingFactor(), ranking.getNodeInclusionPolicy(), ranking.getRelationshipInclusionPolicy());
+
+        return ranking;
+    }
+
+    private NodeInclusionPolicy nodeInclusionPolicy(String expression) {
+        NodeInclusionPolicy policy = InclusionPolicyCompiler.compileNodePolicy(expression);
+        return policy != null ? policy : StringToNodeInclusionPolicy.getInstance().apply(expression);
+    }
+
+    private RelationshipInclusionPolicy relationshipInclusionPolicy(String expression) {
+        RelationshipInclusionPolicy policy = InclusionPolicyCompiler.compileRelationshipPolicy(expression);
+        return policy != null ? policy : StringToRelationshipInclusionPolicy.getInstance().apply(expression);
+    }
+
 }
@@ -18,23 +18,54 @@ package com.graphaware.module.noderank;
 
 import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
 import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
-import com.graphaware.common.policy.role.AnyRole;
 import com.graphaware.common.policy.role.InstanceRolePolicy;
 import com.graphaware.common.policy.role.WritableRole;
 import com.graphaware.runtime.config.BaseTimerDrivenModuleConfiguration;
 import com.graphaware.runtime.policy.all.IncludeAllBusinessNodes;
 import com.graphaware.runtime.policy.all.IncludeAllBusinessRelationships;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Configuration settings for the {@link NodeRankModule} with fluent interface.
  */
 public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfiguration<NodeRankModuleConfiguration> {
 
-    private final String rankPropertyKey;
-    private final NodeInclusionPolicy nodeInclusionPolicy;
-    private final RelationshipInclusionPolicy relationshipInclusionPolicy;
-    private final int maxTopRankNodes;
-    private final double dampingFactor;
+    private String rankPropertyKey;
+    private NodeInclusionPolicy nodeInclusionPolicy;
+    private RelationshipInclusionPolicy relationshipInclusionPolicy;
+    private int maxTopRankNodes;
+    private double dampingFactor;
+    private int stepsPerInvocation;
+    private int flushInterval;
+    private int maxPendingNodes;
+    private int walkers;
+    private NodeRankAlgorithm algorithm;
+    private double tolerance;
+    private int maxIterations;
+    private int writeBatchSize;
+    private long recomputeInterval;
+    private boolean projectionEnabled;
+    /**
+     * Degree from which nodes are treated as supernodes in weighted walks of the database, unless configured otherwise
+     * by {@link #withSupernodeThreshold(int)}.
+     */
+    public static final int WEIGHTED_SUPERNODE_THRESHOLD = 64;
+
+    private String weightPropertyKey;
+    private int supernodeThreshold;
+    private int supernodeCacheSize;
+    private boolean eligibleNodeIndexEnabled;
+    private double convergenceThreshold;
+    private long maxConvergenceBackoff;
+    private int convergenceResetChanges;
+    private long rankHalfLife;
+    private Map<String, NodeRankModuleConfiguration> rankings;
+    private String rankDirectory;
+    private boolean doubleBuffered;
+    private int maxPersonalizedWalks;
 
     /**
      * Retrieves the default {@link NodeRankModuleConfiguration}, which includes all (non-internal) nodes and relationships.
@@ -42,7 +73,35 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return The default {@link NodeRankModuleConfiguration}
      */
     public static NodeRankModuleConfiguration defaultConfiguration() {
-        return new NodeRankModuleConfiguration(WritableRole.getInstance(), "nodeRank", IncludeAllBusinessNodes.getInstance(), IncludeAllBusinessRelationships.getInstance(), 10, 0.85);
+        NodeRankModuleConfiguration configuration = new NodeRankModuleConfiguration(WritableRole.getInstance());
+        configuration.rankPropertyKey = "nodeRank";
+        configuration.nodeInclusionPolicy = IncludeAllBusinessNodes.getInstance();
+        configuration.relationshipInclusionPolicy = IncludeAllBusinessRelationships.getInstance();
+        configuration.maxTopRankNodes = 10;
+        configuration.dampingFactor = 0.85;
+        configuration.stepsPerInvocation = 1;
+        configuration.flushInterval = 1;
+        configuration.maxPendingNodes = 100_000;
+        configuration.walkers = 1;
+        configuration.algorithm = NodeRankAlgorithm.RANDOM_WALK;
+        configuration.tolerance = 1e-6;
+        configuration.maxIterations = 100;
+        configuration.writeBatchSize = 10_000;
+        configuration.recomputeInterval = 3_600_000;
+        configuration.projectionEnabled = false;
+        configuration.weightPropertyKey = null;
+        configuration.supernodeThreshold = 0;
+        configuration.supernodeCacheSize = 1_000_000;
+        configuration.eligibleNodeIndexEnabled = false;
+        configuration.convergenceThreshold = 0.99;
+        configuration.maxConvergenceBackoff = 0;
+        configuration.convergenceResetChanges = 1000;
+        configuration.rankHalfLife = 0;
+        configuration.rankings = Collections.emptyMap();
+        configuration.rankDirectory = null;
+        configuration.doubleBuffered = false;
+        configuration.maxPersonalizedWalks = 1_000_000;
+        return configuration;
     }
 
     /**
@@ -52,7 +111,9 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return new config.
      */
     public NodeRankModuleConfiguration withRankPropertyKey(String rankPropertyKey) {
-        return new NodeRankModuleConfiguration(getInstanceRolePolicy(), rankPropertyKey, getNodeInclusionPolicy(), getRelationshipInclusionPolicy(), getMaxTopRankNodes(), getDampingFactor());
+        NodeRankModuleConfiguration result = copy();
+        result.rankPropertyKey = rankPropertyKey;
+        return result;
     }
 
     /**
@@ -62,7 +123,9 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return new config.
      */
     public NodeRankModuleConfiguration with(NodeInclusionPolicy nodeInclusionPolicy) {
-        return new NodeRankModuleConfiguration(getInstanceRolePolicy(), getRankPropertyKey(), nodeInclusionPolicy, getRelationshipInclusionPolicy(), getMaxTopRankNodes(), getDampingFactor());
+        NodeRankModuleConfiguration result = copy();
+        result.nodeInclusionPolicy = nodeInclusionPolicy;
+        return result;
     }
 
     /**
@@ -72,7 +135,9 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return new config.
      */
     public NodeRankModuleConfiguration with(RelationshipInclusionPolicy relationshipInclusionPolicy) {
-        return new NodeRankModuleConfiguration(getInstanceRolePolicy(), getRankPropertyKey(), getNodeInclusionPolicy(), relationshipInclusionPolicy, getMaxTopRankNodes(), getDampingFactor());
+        NodeRankModuleConfiguration result = copy();
+        result.relationshipInclusionPolicy = relationshipInclusionPolicy;
+        return result;
     }
 
     /**
@@ -82,7 +147,13 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return new config.
      */
     public NodeRankModuleConfiguration withMaxTopRankNodes(int maxTopRankNodes) {
-        return new NodeRankModuleConfiguration(getInstanceRolePolicy(), getRankPropertyKey(), getNodeInclusionPolicy(), getRelationshipInclusionPolicy(), maxTopRankNodes, getDampingFactor());
+        if (maxTopRankNodes < 0) {
+            throw new IllegalArgumentException("Max top ranked nodes must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.maxTopRankNodes = maxTopRankNodes;
+        return result;
     }
 
     /**
@@ -92,34 +163,404 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      * @return new config.
      */
     public NodeRankModuleConfiguration withDampingFactor(double dampingFactor) {
-        return new NodeRankModuleConfiguration(getInstanceRolePolicy(), getRankPropertyKey(), getNodeInclusionPolicy(), getRelationshipInclusionPolicy(), getMaxTopRankNodes(), dampingFactor);
+        if (dampingFactor < 0 || dampingFactor > 1.0) {
+            throw new IllegalArgumentException("Damping factor must be between 0.0 and 1.0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.dampingFactor = dampingFactor;
+        return result;
     }
 
     /**
-     * Constructs a new {@link NodeRankModuleConfiguration} based on the given configuration details.
+     * Construct a new configuration with the given number of steps the walker takes every time the module is invoked.
+     * All steps taken during one invocation are performed in a single transaction and node ranks are written once
+     * at the end of the invocation.
      *
-     * @param instanceRolePolicy          specifies which role a machine must have in order to run the module with this configuration. Must not be <code>null</code>.
-     * @param rankPropertyKey             name of the property written to the ranked nodes.
-     * @param nodeInclusionPolicy         The {@link NodeInclusionPolicy} to use for selecting nodes to include in the rank algorithm.
-     * @param relationshipInclusionPolicy The {@link RelationshipInclusionPolicy} for selecting which relationships to follow when crawling the graph.
-     * @param maxTopRankNodes             maximum number of top ranked nodes to remember.
+     * @param stepsPerInvocation number of steps per invocation, must be > 0.
+     * @return new config.
      */
-    private NodeRankModuleConfiguration(InstanceRolePolicy instanceRolePolicy, String rankPropertyKey, NodeInclusionPolicy nodeInclusionPolicy, RelationshipInclusionPolicy relationshipInclusionPolicy, int maxTopRankNodes, double dampingFactor) {
-        super(instanceRolePolicy);
+    public NodeRankModuleConfiguration withStepsPerInvocation(int stepsPerInvocation) {
+        if (stepsPerInvocation < 1) {
+            throw new IllegalArgumentException("Steps per invocation must be > 0");
+        }
 
-        if (maxTopRankNodes < 0) {
-            throw new IllegalArgumentException("Max top ranked nodes must be > 0");
+        NodeRankModuleConfiguration result = copy();
+        result.stepsPerInvocation = stepsPerInvocation;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given number of invocations after which visits counted in memory are
+     * written to the ranked nodes.
+     *
+     * @param flushInterval number of invocations between writes, must be > 0. 1 means ranks are written at the end of
+     *                      every invocation.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withFlushInterval(int flushInterval) {
+        if (flushInterval < 1) {
+            throw new IllegalArgumentException("Flush interval must be > 0");
         }
 
-        if (dampingFactor < 0 || dampingFactor > 1.0) {
-            throw new IllegalArgumentException("Damping factor must be between 0.0 and 1.0");
+        NodeRankModuleConfiguration result = copy();
+        result.flushInterval = flushInterval;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum number of distinct nodes whose visits can be counted in
+     * memory before they are written to the ranked nodes, regardless of the flush interval.
+     *
+     * @param maxPendingNodes maximum number of nodes with unwritten visits, must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withMaxPendingNodes(int maxPendingNodes) {
+        if (maxPendingNodes < 1) {
+            throw new IllegalArgumentException("Max pending nodes must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.maxPendingNodes = maxPendingNodes;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given number of independent walkers. The first walker walks in the
+     * thread that invokes the module, each additional walker in a thread of its own, in its own transaction.
+     *
+     * @param walkers number of walkers, must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withWalkers(int walkers) {
+        if (walkers < 1) {
+            throw new IllegalArgumentException("Number of walkers must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.walkers = walkers;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given algorithm.
+     *
+     * @param algorithm used to compute node ranks.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withAlgorithm(NodeRankAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Algorithm must not be null");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.algorithm = algorithm;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given convergence tolerance of {@link NodeRankAlgorithm#POWER_ITERATION}.
+     *
+     * @param tolerance sum of absolute score differences between two iterations, below which the scores are considered
+     *                  converged. Must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withTolerance(double tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.tolerance = tolerance;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum number of iterations of {@link NodeRankAlgorithm#POWER_ITERATION}.
+     *
+     * @param maxIterations maximum number of iterations, must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("Max iterations must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.maxIterations = maxIterations;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum number of computed scores written to nodes in a single
+     * transaction. See {@link RankWriter}.
+     *
+     * @param writeBatchSize maximum number of scores written per transaction, must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withWriteBatchSize(int writeBatchSize) {
+        if (writeBatchSize < 1) {
+            throw new IllegalArgumentException("Write batch size must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.writeBatchSize = writeBatchSize;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given interval between two computations of {@link NodeRankAlgorithm#POWER_ITERATION}.
+     *
+     * @param recomputeInterval time in ms between the moment all scores have been written and the start of the next
+     *                          computation. Must not be negative.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withRecomputeInterval(long recomputeInterval) {
+        if (recomputeInterval < 0) {
+            throw new IllegalArgumentException("Recompute interval must not be negative");
         }
 
-        this.rankPropertyKey = rankPropertyKey;
-        this.nodeInclusionPolicy = nodeInclusionPolicy;
-        this.relationshipInclusionPolicy = relationshipInclusionPolicy;
-        this.maxTopRankNodes = maxTopRankNodes;
-        this.dampingFactor = dampingFactor;
+        NodeRankModuleConfiguration result = copy();
+        result.recomputeInterval = recomputeInterval;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration that decides whether {@link NodeRankAlgorithm#RANDOM_WALK} walks an off-heap
+     * {@link GraphProjection} of the included nodes and relationships rather than the database.
+     *
+     * @param projectionEnabled <code>true</code> to walk a projection.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withProjection(boolean projectionEnabled) {
+        NodeRankModuleConfiguration result = copy();
+        result.projectionEnabled = projectionEnabled;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given key of the relationship property holding the weight of the
+     * relationship. Walkers then follow relationships with the probability proportional to their weight, rather than
+     * uniformly at random. Relationships without the property have the weight of 1, relationships with a weight that
+     * isn't positive are never followed.
+     * <p/>
+     * Walking the projection (see {@link #withProjection(boolean)}), a weighted step takes constant time thanks to
+     * alias tables. Walking the database, nodes with at least the supernode threshold of relationships, by default
+     * {@link #WEIGHTED_SUPERNODE_THRESHOLD}, get alias tables too, cached in the supernode cache, so that no step reads
+     * more relationships than the threshold, apart from the one loading a node into the cache.
+     *
+     * @param weightPropertyKey key of the weight property, <code>null</code> for unweighted walks.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withWeightPropertyKey(String weightPropertyKey) {
+        NodeRankModuleConfiguration result = copy();
+        result.weightPropertyKey = weightPropertyKey;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given degree, from which nodes are treated as supernodes when walking the
+     * database. Relationships of supernodes are cached, so that selecting one doesn't take time linear in the degree.
+     *
+     * @param supernodeThreshold minimum number of relationships of a supernode, 0 to disable special treatment, or for
+     *                           weighted walks, to use {@link #WEIGHTED_SUPERNODE_THRESHOLD}.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withSupernodeThreshold(int supernodeThreshold) {
+        if (supernodeThreshold < 0) {
+            throw new IllegalArgumentException("Supernode threshold must not be negative");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.supernodeThreshold = supernodeThreshold;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum total number of supernode relationships to cache.
+     *
+     * @param supernodeCacheSize maximum number of relationships, 8 bytes each (16 for weighted walks).
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withSupernodeCacheSize(int supernodeCacheSize) {
+        if (supernodeCacheSize <= 0) {
+            throw new IllegalArgumentException("Supernode cache size must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.supernodeCacheSize = supernodeCacheSize;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration that decides whether walkers of the database keep the IDs of all included nodes
+     * in an off-heap array, so that a hyperjump takes a single lookup rather than probing the database for a node
+     * included by the node inclusion policy. Worth it when the policy includes a small fraction of the nodes.
+     *
+     * @param eligibleNodeIndexEnabled <code>true</code> to keep the IDs of included nodes.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withEligibleNodeIndex(boolean eligibleNodeIndexEnabled) {
+        NodeRankModuleConfiguration result = copy();
+        result.eligibleNodeIndexEnabled = eligibleNodeIndexEnabled;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given similarity of successive snapshots of the top ranked nodes, from
+     * which {@link NodeRankAlgorithm#RANDOM_WALK} is considered converged.
+     *
+     * @param convergenceThreshold fraction of top ranked nodes that remain top ranked between two flushes, between 0
+     *                             and 1.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withConvergenceThreshold(double convergenceThreshold) {
+        if (convergenceThreshold < 0 || convergenceThreshold > 1) {
+            throw new IllegalArgumentException("Convergence threshold must be between 0 and 1");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.convergenceThreshold = convergenceThreshold;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum time the module pauses for between invocations once
+     * {@link NodeRankAlgorithm#RANDOM_WALK} has converged. The pause starts at a second and doubles while the ranking
+     * remains stable. It is also the longest time it takes the module to notice graph changes.
+     *
+     * @param maxConvergenceBackoff maximum pause in ms, 0 to never pause. Must not be negative.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withMaxConvergenceBackoff(long maxConvergenceBackoff) {
+        if (maxConvergenceBackoff < 0) {
+            throw new IllegalArgumentException("Max convergence backoff must not be negative");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.maxConvergenceBackoff = maxConvergenceBackoff;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given number of created or deleted nodes and relationships, after which
+     * a converged module stops pausing and walks at full speed again.
+     *
+     * @param convergenceResetChanges number of changes. Must be > 0.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withConvergenceResetChanges(int convergenceResetChanges) {
+        if (convergenceResetChanges <= 0) {
+            throw new IllegalArgumentException("Convergence reset changes must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.convergenceResetChanges = convergenceResetChanges;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given half-life of visits counted by {@link NodeRankAlgorithm#RANDOM_WALK}.
+     * With a half-life, ranks are exponentially decayed scores rather than visit counts, so that recent visits count
+     * more than old ones. See {@link RankDecay}.
+     *
+     * @param rankHalfLife half-life in ms, 0 to count visits without decay. Must not be negative.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withRankHalfLife(long rankHalfLife) {
+        if (rankHalfLife < 0) {
+            throw new IllegalArgumentException("Rank half-life must not be negative");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.rankHalfLife = rankHalfLife;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with an additional named ranking, computed by the same module alongside the
+     * module's own ranking. All rankings of a module are walked in the same invocation and transaction, and ones with
+     * the same inclusion policies and weight property as the module walk the module's projection, if enabled.
+     * <p/>
+     * The ranking is typically derived from this configuration, e.g. with a different damping factor, inclusion
+     * policies, rank property key or half-life. It must use {@link NodeRankAlgorithm#RANDOM_WALK} and its own rank
+     * property key. Its steps per invocation, flush interval, walkers, projection, convergence and ranking settings
+     * are ignored in favour of the module's.
+     *
+     * @param name    of the ranking, unique within the module.
+     * @param ranking configuration of the ranking.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withRanking(String name, NodeRankModuleConfiguration ranking) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Ranking name must not be empty");
+        }
+
+        if (ranking.getAlgorithm() != NodeRankAlgorithm.RANDOM_WALK) {
+            throw new IllegalArgumentException("Only " + NodeRankAlgorithm.RANDOM_WALK + " rankings can be computed alongside a module");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.rankings = new LinkedHashMap<>(rankings);
+        result.rankings.put(name, ranking);
+        return result;
+    }
+
+    /**
+     * Construct a new configuration that stores ranks in memory-mapped files in the given directory rather than in
+     * node properties, one file per rank property key. Writing a rank then never touches the transaction log, but
+     * ranks are only readable through the {@link NodeRankApi} and procedures of the instance running the module.
+     * See {@link MappedFileRankStore}.
+     *
+     * @param rankDirectory directory to store rank files in, <code>null</code> to store ranks in node properties.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withRankDirectory(String rankDirectory) {
+        NodeRankModuleConfiguration result = copy();
+        result.rankDirectory = rankDirectory;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with double buffering of ranks computed by {@link NodeRankAlgorithm#POWER_ITERATION}
+     * switched on or off. When on, all ranks of a computation are published at once as soon as they are computed, so
+     * that ranks read through the {@link NodeRankApi} and procedures are always from a single computation, even while
+     * they are being written to the ranked nodes.
+     *
+     * @param doubleBuffered <code>true</code> to double buffer ranks.
+     * @return new config.
+     */
+    public NodeRankModuleConfiguration withDoubleBuffering(boolean doubleBuffered) {
+        NodeRankModuleConfiguration result = copy();
+        result.doubleBuffered = doubleBuffered;
+        return result;
+    }
+
+    /**
+     * Construct a new configuration with the given maximum number of walks a single personalized node rank computation
+     * may perform, so that a single request can't keep the server busy for long.
+     *
+     * @param maxPersonalizedWalks maximum number of walks, must be positive.
+     * @return new config.
+     * @see PersonalizedNodeRank
+     */
+    public NodeRankModuleConfiguration withMaxPersonalizedWalks(int maxPersonalizedWalks) {
+        if (maxPersonalizedWalks <= 0) {
+            throw new IllegalArgumentException("Maximum number of personalized walks must be > 0");
+        }
+
+        NodeRankModuleConfiguration result = copy();
+        result.maxPersonalizedWalks = maxPersonalizedWalks;
+        return result;
+    }
+
+    /**
+     * Constructs a new {@link NodeRankModuleConfiguration}. All other settings must be populated by the caller.
+     *
+     * @param instanceRolePolicy specifies which role a machine must have in order to run the module with this configuration. Must not be <code>null</code>.
+     */
+    private NodeRankModuleConfiguration(InstanceRolePolicy instanceRolePolicy) {
+        super(instanceRolePolicy);
     }
 
     /**
@@ -127,7 +568,39 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
      */
     @Override
     protected NodeRankModuleConfiguration newInstance(InstanceRolePolicy instanceRolePolicy) {
-        return new NodeRankModuleConfiguration(instanceRolePolicy, getRankPropertyKey(), getNodeInclusionPolicy(), getRelationshipInclusionPolicy(), getMaxTopRankNodes(), getDampingFactor());
+        NodeRankModuleConfiguration result = new NodeRankModuleConfiguration(instanceRolePolicy);
+        result.rankPropertyKey = rankPropertyKey;
+        result.nodeInclusionPolicy = nodeInclusionPolicy;
+        result.relationshipInclusionPolicy = relationshipInclusionPolicy;
+        result.maxTopRankNodes = maxTopRankNodes;
+        result.dampingFactor = dampingFactor;
+        result.stepsPerInvocation = stepsPerInvocation;
+        result.flushInterval = flushInterval;
+        result.maxPendingNodes = maxPendingNodes;
+        result.walkers = walkers;
+        result.algorithm = algorithm;
+        result.tolerance = tolerance;
+        result.maxIterations = maxIterations;
+        result.writeBatchSize = writeBatchSize;
+        result.recomputeInterval = recomputeInterval;
+        result.projectionEnabled = projectionEnabled;
+        result.weightPropertyKey = weightPropertyKey;
+        result.supernodeThreshold = supernodeThreshold;
+        result.supernodeCacheSize = supernodeCacheSize;
+        result.eligibleNodeIndexEnabled = eligibleNodeIndexEnabled;
+        result.convergenceThreshold = convergenceThreshold;
+        result.maxConvergenceBackoff = maxConvergenceBackoff;
+        result.convergenceResetChanges = convergenceResetChanges;
+        result.rankHalfLife = rankHalfLife;
+        result.rankings = rankings;
+        result.rankDirectory = rankDirectory;
+        result.doubleBuffered = doubleBuffered;
+        result.maxPersonalizedWalks = maxPersonalizedWalks;
+        return result;
+    }
+
+    private NodeRankModuleConfiguration copy() {
+        return newInstance(getInstanceRolePolicy());
     }
 
     public String getRankPropertyKey() {
@@ -149,4 +622,105 @@ public class NodeRankModuleConfiguration extends BaseTimerDrivenModuleConfigurat
     public double getDampingFactor() {
         return dampingFactor;
     }
+
+    public int getStepsPerInvocation() {
+        return stepsPerInvocation;
+    }
+
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getMaxPendingNodes() {
+        return maxPendingNodes;
+    }
+
+    public int getWalkers() {
+        return walkers;
+    }
+
+    public NodeRankAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public long getRecomputeInterval() {
+        return recomputeInterval;
+    }
+
+    public boolean isProjectionEnabled() {
+        return projectionEnabled;
+    }
+
+    public String getWeightPropertyKey() {
+        return weightPropertyKey;
+    }
+
+    public int getSupernodeThreshold() {
+        return supernodeThreshold;
+    }
+
+    /**
+     * @return degree from which nodes are treated as supernodes when walking the database, 0 if they aren't.
+     */
+    int getEffectiveSupernodeThreshold() {
+        if (supernodeThreshold == 0 && weightPropertyKey != null) {
+            return WEIGHTED_SUPERNODE_THRESHOLD;
+        }
+        return supernodeThreshold;
+    }
+
+    public int getSupernodeCacheSize() {
+        return supernodeCacheSize;
+    }
+
+    public boolean isEligibleNodeIndexEnabled() {
+        return eligibleNodeIndexEnabled;
+    }
+
+    public double getConvergenceThreshold() {
+        return convergenceThreshold;
+    }
+
+    public long getMaxConvergenceBackoff() {
+        return maxConvergenceBackoff;
+    }
+
+    public int getConvergenceResetChanges() {
+        return convergenceResetChanges;
+    }
+
+    public long getRankHalfLife() {
+        return rankHalfLife;
+    }
+
+    /**
+     * @return additional rankings computed by the module, by name.
+     */
+    public Map<String, NodeRankModuleConfiguration> getRankings() {
+        return Collections.unmodifiableMap(rankings);
+    }
+
+    public String getRankDirectory() {
+        return rankDirectory;
+    }
+
+    public boolean isDoubleBuffered() {
+        return doubleBuffered;
+    }
+
+    public int getMaxPersonalizedWalks() {
+        return maxPersonalizedWalks;
+    }
 }
@@ -2,12 +2,15 @@ package com.graphaware.module.noderank;
 
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.procedure.Context;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class NodeRankProcedure {
@@ -15,22 +18,223 @@ public class NodeRankProcedure {
     @Context
     public GraphDatabaseService database;
 
+    /**
+     * Stream the top ranked nodes of a module, highest ranked first, straight from the module's last published
+     * {@link TopRankedSnapshot}. Nodes are only looked up as the stream is consumed; nodes deleted in the meantime are
+     * left out before skipping and limiting, so they neither count towards skip nor leave the result short of limit.
+     *
+     * @param moduleId ID of the module.
+     * @param limit    maximum number of nodes to return.
+     * @param skip     number of top ranked existing nodes to skip.
+     * @param ranking  name of an additional ranking computed by the module, empty for the module's own ranking.
+     * @return stream of results.
+     */
     @Procedure("ga.noderank.getTopRanked")
-    public Stream<NodeResult> getTopRankedNodes(@Name("moduleId") String moduleId, @Name("limit") Number limit) {
-        List<NodeResult> result = new LinkedList<>();
-        new NodeRankApi(database).getTopRankedNodes(moduleId, limit.intValue()).stream().forEach((node) -> {
-            result.add(new NodeResult(node));
-        });
+    public Stream<NodeResult> getTopRankedNodes(@Name("moduleId") String moduleId, @Name("limit") Number limit, @Name(value = "skip", defaultValue = "0") Number skip, @Name(value = "ranking", defaultValue = "") String ranking) {
+        checkNotNegative(skip.longValue(), limit.longValue());
 
-        return result.stream();
+        return results(new NodeRankApi(database).getTopRanked(moduleId, ranking))
+                .skip(skip.longValue())
+                .limit(limit.longValue());
+    }
+
+    /**
+     * Stream nodes ranked by personalized node rank with respect to the given seed nodes, highest ranked first.
+     *
+     * @param moduleId ID of the module, whose configuration and projection to use.
+     * @param seeds    seed nodes, to which the walks teleport.
+     * @param limit    maximum number of nodes to return.
+     * @param walks    number of random walks to perform.
+     * @return stream of results, the score being the estimated probability of visiting the node.
+     */
+    @Procedure("ga.noderank.personalized")
+    public Stream<NodeResult> personalized(@Name("moduleId") String moduleId, @Name("seeds") List<Node> seeds, @Name(value = "limit", defaultValue = "10") Number limit, @Name(value = "walks", defaultValue = "10000") Number walks) {
+        long[] seedIds = new long[seeds.size()];
+        for (int i = 0; i < seedIds.length; i++) {
+            seedIds[i] = seeds.get(i).getId();
+        }
+
+        return results(new NodeRankApi(database).getPersonalized(moduleId, seedIds, saturatedInt(walks), saturatedInt(limit)));
+    }
+
+    /**
+     * Stream the ranks of a batch of nodes, e.g. candidates of a recommendation query to re-rank, resolved in one call
+     * rather than by reading the rank of every node in Cypher. Results come in the order of the given IDs; IDs of nodes
+     * that don't exist are left out.
+     * <p/>
+     * Ranks are served from memory only when the module keeps all of them there, i.e. from the published buffer of
+     * {@link NodeRankAlgorithm#POWER_ITERATION} with double buffering, or from the memory-mapped files of a rank
+     * directory. Otherwise, reading the rank property of every node is the fallback, which saves the round trips of
+     * Cypher, but not the per-node work.
+     * <p/>
+     * Percentiles are relative to the batch, not to all ranked nodes: a node in the 90th percentile ranks higher than
+     * 90 % of the given nodes, however it ranks in the whole graph.
+     *
+     * @param moduleId ID of the module.
+     * @param nodeIds  IDs of the nodes to get the ranks of.
+     * @param ranking  name of an additional ranking computed by the module, empty for the module's own ranking.
+     * @return stream of results, the score being normalized by the score of the top ranked node, and the percentile
+     * being the percentile rank of the score among the scores of the given nodes only, between 0 and 100.
+     */
+    @Procedure("ga.noderank.ranks")
+    public Stream<RankResult> ranks(@Name("moduleId") String moduleId, @Name("nodeIds") List<Number> nodeIds, @Name(value = "ranking", defaultValue = "") String ranking) {
+        long[] ids = nodeIds.stream().filter(Objects::nonNull).mapToLong(Number::longValue).toArray();
+
+        NodeRankApi api = new NodeRankApi(database);
+        double[] scores = api.getRanks(moduleId, ranking, ids);
+        double[] percentiles = percentiles(scores);
+        TopRankedSnapshot snapshot = api.getTopRanked(moduleId, ranking);
+        double topRank = snapshot.isEmpty() ? 0 : snapshot.rank(0);
+
+        return IntStream.range(0, ids.length)
+                .filter(i -> !Double.isNaN(scores[i]))
+                .mapToObj(i -> new RankResult(ids[i], scores[i], topRank > 0 ? scores[i] / topRank : 0, percentiles[i]));
+    }
+
+    /**
+     * Stream the statistics of a module, the same ones exposed through JMX.
+     *
+     * @param moduleId ID of the module.
+     * @return stream of statistic names and values.
+     */
+    @Procedure("ga.noderank.stats")
+    public Stream<StatResult> stats(@Name("moduleId") String moduleId) {
+        return new NodeRankApi(database).getStatistics(moduleId).toMap().entrySet().stream()
+                .map(entry -> new StatResult(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * @param number to convert.
+     * @return the number as an int, {@link Integer#MAX_VALUE} or {@link Integer#MIN_VALUE} if it doesn't fit, rather
+     * than its truncated low bits.
+     */
+    static int saturatedInt(Number number) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, number.longValue()));
+    }
+
+    /**
+     * @throws IllegalArgumentException if skip or limit is negative.
+     */
+    static void checkNotNegative(long skip, long limit) {
+        if (limit < 0 || skip < 0) {
+            throw new IllegalArgumentException("Limit and skip must not be negative");
+        }
+    }
+
+    /**
+     * Percentile rank of every score among the given ones, i.e. the percentage of scores lower than it, counting equal
+     * scores as half lower. Scores that are {@link Double#NaN} are ignored and get {@link Double#NaN}.
+     */
+    static double[] percentiles(double[] scores) {
+        double[] sorted = Arrays.stream(scores).filter(score -> !Double.isNaN(score)).sorted().toArray();
+
+        double[] result = new double[scores.length];
+        for (int i = 0; i < scores.length; i++) {
+            if (Double.isNaN(scores[i])) {
+                result[i] = Double.NaN;
+                continue;
+            }
+
+            int lower = firstNotBelow(sorted, scores[i]);
+            int equal = firstAbove(sorted, scores[i]) - lower;
+            result[i] = 100 * (lower + equal / 2.0) / sorted.length;
+        }
+
+        return result;
+    }
+
+    private static int firstNotBelow(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int firstAbove(double[] sorted, double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Stream the nodes of a snapshot, highest ranked first, looking them up lazily and leaving out deleted ones.
+     *
+     * @param snapshot to stream.
+     * @return stream of results of the nodes that still exist.
+     */
+    Stream<NodeResult> results(TopRankedSnapshot snapshot) {
+        double topRank = snapshot.isEmpty() ? 0 : snapshot.rank(0);
+
+        return IntStream.range(0, snapshot.size())
+                .mapToObj(position -> result(snapshot, position, topRank))
+                .filter(Objects::nonNull);
+    }
+
+    private NodeResult result(TopRankedSnapshot snapshot, int position, double topRank) {
+        Node node;
+        try {
+            node = database.getNodeById(snapshot.nodeId(position));
+        } catch (NotFoundException e) {
+            return null;
+        }
+
+        double score = snapshot.rank(position);
+        return new NodeResult(node, score, topRank > 0 ? score / topRank : 0);
     }
 
     public class NodeResult {
 
         public final Node node;
+        public final long nodeId;
+        public final double score;
+        public final double normalized;
 
-        public NodeResult(Node node) {
+        public NodeResult(Node node, double score, double normalized) {
             this.node = node;
+            this.nodeId = node.getId();
+            this.score = score;
+            this.normalized = normalized;
+        }
+    }
+
+    public class RankResult {
+
+        public final long nodeId;
+        public final double score;
+        public final double normalized;
+        public final double percentile;
+
+        public RankResult(long nodeId, double score, double normalized, double percentile) {
+            this.nodeId = nodeId;
+            this.score = score;
+            this.normalized = normalized;
+            this.percentile = percentile;
+        }
+    }
+
+    public class StatResult {
+
+        public final String name;
+        public final Number value;
+
+        public StatResult(String name, Number value) {
+            this.name = name;
+            this.value = value;
         }
     }
 
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Statistics of a {@link NodeRankModule}: how fast and how it walks, how long its invocations take, how often it
+ * writes ranks and how much the top ranked nodes change. Also gathers the statistics of the {@link SupernodeCache},
+ * the {@link ConvergenceTracker} and compiled inclusion policies, so that they're all available in one place, through
+ * JMX and the <code>ga.noderank.stats</code> procedure.
+ * <p/>
+ * Counters are striped, so walkers record without contending with each other. Walkers record steps once per walk
+ * rather than once per step.
+ */
+public class NodeRankStatistics implements NodeRankStatisticsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final SupernodeCache supernodes;
+    private final ConvergenceTracker convergence;
+    private final LongSupplier compiledPolicyEvaluations;
+    private final long createdAt = System.nanoTime();
+
+    private final LatencyHistogram invocations = new LatencyHistogram();
+    private final LatencyHistogram selections = new LatencyHistogram();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder hyperjumps = new LongAdder();
+    private final LongAdder deadEnds = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder ranksWritten = new LongAdder();
+    private final LongAdder ranksUnchanged = new LongAdder();
+    private final LongAdder writeBatches = new LongAdder();
+    private final LongAdder failedWriteBatches = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+
+    private long stepsBeforeLastInvocation;
+    private volatile double stepsPerSecond;
+
+    /**
+     * Create new statistics.
+     *
+     * @param supernodes                cache of supernode relationships, <code>null</code> if there is none.
+     * @param convergence               tracker of the convergence of node ranks.
+     * @param compiledPolicyEvaluations number of evaluations of compiled inclusion policies.
+     */
+    NodeRankStatistics(SupernodeCache supernodes, ConvergenceTracker convergence, LongSupplier compiledPolicyEvaluations) {
+        this.supernodes = supernodes;
+        this.convergence = convergence;
+        this.compiledPolicyEvaluations = compiledPolicyEvaluations;
+    }
+
+    /**
+     * Record a walk. Called by the walking thread at the end of every walk.
+     *
+     * @param steps      taken.
+     * @param hyperjumps among them, i.e. jumps to a random node.
+     * @param deadEnds   among them, i.e. jumps to a random node from a node without relationships to follow.
+     */
+    void recordWalk(long steps, long hyperjumps, long deadEnds) {
+        this.steps.add(steps);
+        this.hyperjumps.add(hyperjumps);
+        this.deadEnds.add(deadEnds);
+    }
+
+    /**
+     * Record a selection of a random node from the database.
+     *
+     * @param nanos duration of the selection.
+     */
+    void recordSelection(long nanos) {
+        selections.record(nanos);
+    }
+
+    /**
+     * Record an invocation of the module. Must only be called by the thread invoking the module, after all walkers
+     * have recorded their walks.
+     *
+     * @param nanos duration of the invocation.
+     */
+    void recordInvocation(long nanos) {
+        invocations.record(nanos);
+
+        long total = steps.sum();
+        stepsPerSecond = nanos > 0 ? (total - stepsBeforeLastInvocation) * 1e9 / nanos : 0;
+        stepsBeforeLastInvocation = total;
+    }
+
+    /**
+     * Record a write of node ranks.
+     *
+     * @param nodes number of nodes, whose rank was written.
+     */
+    void recordFlush(int nodes) {
+        flushes.increment();
+        ranksWritten.add(nodes);
+    }
+
+    /**
+     * Record a batch of ranks written by a {@link RankWriter} in a transaction of its own.
+     *
+     * @param written   number of ranks written.
+     * @param unchanged number of ranks not written because the nodes already had them.
+     * @param nanos     time it took to write and commit the batch.
+     */
+    void recordWriteBatch(int written, int unchanged, long nanos) {
+        writeBatches.increment();
+        ranksWritten.add(written);
+        ranksUnchanged.add(unchanged);
+        writeNanos.add(nanos);
+    }
+
+    /**
+     * Record a batch of ranks that could not be written.
+     */
+    void recordFailedWriteBatch() {
+        failedWriteBatches.increment();
+    }
+
+    @Override
+    public long getInvocations() {
+        return invocations.count();
+    }
+
+    @Override
+    public double getMeanInvocationMillis() {
+        return invocations.mean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99InvocationMillis() {
+        return invocations.percentile(0.99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public long getSteps() {
+        return steps.sum();
+    }
+
+    /**
+     * @return steps taken per second by all walkers during the last invocation.
+     */
+    @Override
+    public double getStepsPerSecond() {
+        return stepsPerSecond;
+    }
+
+    @Override
+    public long getHyperjumps() {
+        return hyperjumps.sum();
+    }
+
+    @Override
+    public double getHyperjumpRatio() {
+        return ratio(hyperjumps.sum(), steps.sum());
+    }
+
+    @Override
+    public long getDeadEnds() {
+        return deadEnds.sum();
+    }
+
+    @Override
+    public double getDeadEndRatio() {
+        return ratio(deadEnds.sum(), steps.sum());
+    }
+
+    @Override
+    public long getRandomNodeSelections() {
+        return selections.count();
+    }
+
+    @Override
+    public double getMeanSelectionNanos() {
+        return selections.mean();
+    }
+
+    @Override
+    public long getP99SelectionNanos() {
+        return selections.percentile(0.99);
+    }
+
+    @Override
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    @Override
+    public long getRanksWritten() {
+        return ranksWritten.sum();
+    }
+
+    @Override
+    public long getRanksUnchanged() {
+        return ranksUnchanged.sum();
+    }
+
+    @Override
+    public long getWriteBatches() {
+        return writeBatches.sum();
+    }
+
+    @Override
+    public long getFailedWriteBatches() {
+        return failedWriteBatches.sum();
+    }
+
+    /**
+     * @return ranks processed, i.e. written or found unchanged, per second spent writing batches.
+     */
+    @Override
+    public double getRanksWrittenPerSecond() {
+        long nanos = writeNanos.sum();
+        return nanos == 0 ? 0 : (ranksWritten.sum() + ranksUnchanged.sum()) * 1e9 / nanos;
+    }
+
+    /**
+     * @return fraction of top ranked nodes that remained top ranked between the last two flushes.
+     */
+    @Override
+    public double getTopNodesSimilarity() {
+        return convergence.getSimilarity();
+    }
+
+    @Override
+    public long getConvergenceBackoff() {
+        return convergence.getBackoff();
+    }
+
+    @Override
+    public long getSupernodeCacheHits() {
+        return supernodes == null ? 0 : supernodes.hits();
+    }
+
+    @Override
+    public long getSupernodeCacheMisses() {
+        return supernodes == null ? 0 : supernodes.misses();
+    }
+
+    @Override
+    public long getSupernodeCacheBypasses() {
+        return supernodes == null ? 0 : supernodes.bypasses();
+    }
+
+    @Override
+    public long getCompiledPolicyEvaluations() {
+        return compiledPolicyEvaluations.getAsLong();
+    }
+
+    /**
+     * @return evaluations of compiled inclusion policies per second since the module was created, i.e. expression
+     * evaluations saved per second.
+     */
+    @Override
+    public double getCompiledPolicyEvaluationsPerSecond() {
+        return compiledPolicyEvaluations.getAsLong() * 1e9 / Math.max(1, System.nanoTime() - createdAt);
+    }
+
+    /**
+     * @return all statistics by name, the values being either {@link Long}s or {@link Double}s.
+     */
+    public Map<String, Number> toMap() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("invocations", getInvocations());
+        result.put("meanInvocationMillis", getMeanInvocationMillis());
+        result.put("p99InvocationMillis", getP99InvocationMillis());
+        result.put("steps", getSteps());
+        result.put("stepsPerSecond", getStepsPerSecond());
+        result.put("hyperjumps", getHyperjumps());
+        result.put("hyperjumpRatio", getHyperjumpRatio());
+        result.put("deadEnds", getDeadEnds());
+        result.put("deadEndRatio", getDeadEndRatio());
+        result.put("randomNodeSelections", getRandomNodeSelections());
+        result.put("meanSelectionNanos", getMeanSelectionNanos());
+        result.put("p99SelectionNanos", getP99SelectionNanos());
+        result.put("flushes", getFlushes());
+        result.put("ranksWritten", getRanksWritten());
+        result.put("ranksUnchanged", getRanksUnchanged());
+        result.put("writeBatches", getWriteBatches());
+        result.put("failedWriteBatches", getFailedWriteBatches());
+        result.put("ranksWrittenPerSecond", getRanksWrittenPerSecond());
+        result.put("topNodesSimilarity", getTopNodesSimilarity());
+        result.put("convergenceBackoff", getConvergenceBackoff());
+        result.put("supernodeCacheHits", getSupernodeCacheHits());
+        result.put("supernodeCacheMisses", getSupernodeCacheMisses());
+        result.put("supernodeCacheBypasses", getSupernodeCacheBypasses());
+        result.put("compiledPolicyEvaluations", getCompiledPolicyEvaluations());
+        result.put("compiledPolicyEvaluationsPerSecond", getCompiledPolicyEvaluationsPerSecond());
+        return result;
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : (double) part / whole;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+/**
+ * JMX view of {@link NodeRankStatistics}, registered as
+ * <code>com.graphaware.module.noderank:type=NodeRankStatistics,name=&lt;module ID&gt;</code>.
+ */
+public interface NodeRankStatisticsMBean {
+
+    long getInvocations();
+
+    double getMeanInvocationMillis();
+
+    double getP99InvocationMillis();
+
+    long getSteps();
+
+    double getStepsPerSecond();
+
+    long getHyperjumps();
+
+    double getHyperjumpRatio();
+
+    long getDeadEnds();
+
+    double getDeadEndRatio();
+
+    long getRandomNodeSelections();
+
+    double getMeanSelectionNanos();
+
+    long getP99SelectionNanos();
+
+    long getFlushes();
+
+    long getRanksWritten();
+
+    long getRanksUnchanged();
+
+    long getWriteBatches();
+
+    long getFailedWriteBatches();
+
+    double getRanksWrittenPerSecond();
+
+    double getTopNodesSimilarity();
+
+    long getConvergenceBackoff();
+
+    long getSupernodeCacheHits();
+
+    long getSupernodeCacheMisses();
+
+    long getSupernodeCacheBypasses();
+
+    long getCompiledPolicyEvaluations();
+
+    double getCompiledPolicyEvaluationsPerSecond();
+}
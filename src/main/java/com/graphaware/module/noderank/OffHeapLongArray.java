@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable array of longs held outside of the Java heap in direct buffers, so that large graph projections neither
+ * burden the garbage collector nor are limited to 2^31 elements. Memory is allocated in chunks, growing the array
+ * never copies existing elements.
+ * <p/>
+ * Concurrent reads are safe, writes must be safely published to readers.
+ */
+final class OffHeapLongArray {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private LongBuffer[] chunks = new LongBuffer[0];
+
+    /**
+     * Create a new array.
+     *
+     * @param capacity initial capacity.
+     */
+    OffHeapLongArray(long capacity) {
+        ensureCapacity(capacity);
+    }
+
+    long get(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & CHUNK_MASK));
+    }
+
+    void set(long index, long value) {
+        chunks[(int) (index >>> CHUNK_SHIFT)].put((int) (index & CHUNK_MASK), value);
+    }
+
+    /**
+     * Make sure the array can hold at least the given number of elements.
+     *
+     * @param capacity required capacity.
+     */
+    void ensureCapacity(long capacity) {
+        int required = (int) ((capacity + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        if (required <= chunks.length) {
+            return;
+        }
+
+        int existing = chunks.length;
+        chunks = Arrays.copyOf(chunks, required);
+        for (int i = existing; i < required; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(CHUNK_SIZE * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    /**
+     * @return number of elements the array can hold.
+     */
+    long capacity() {
+        return (long) chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * @return number of bytes allocated outside of the heap.
+     */
+    long sizeInBytes() {
+        return capacity() * 8;
+    }
+
+    /**
+     * Drop all elements. The memory is freed once the buffers are garbage collected.
+     */
+    void release() {
+        chunks = new LongBuffer[0];
+    }
+}
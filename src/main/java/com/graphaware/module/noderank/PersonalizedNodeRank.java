@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.runtime.walk.RelationshipSelector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Personalized PageRank estimated by Monte-Carlo random walks.
+ * <p/>
+ * Every walk starts at a random seed node and at each step either follows a random relationship, or, with the
+ * probability 1 - damping factor, ends, which is equivalent to teleporting back to the seeds. Walks also end at dead
+ * ends and after {@link #MAX_WALK_LENGTH} steps. The rank of a node is the fraction of all visits that fell on it, so
+ * the work done is bounded by the number of walks rather than by the size of the graph. The number of walks is capped by
+ * {@link NodeRankModuleConfiguration#getMaxPersonalizedWalks()}, and at most as many top ranked nodes are returned as
+ * there are visited nodes, however high the limit.
+ * <p/>
+ * An instance must only be used by one thread at a time.
+ */
+public class PersonalizedNodeRank {
+
+    static final int MAX_WALK_LENGTH = 1_000;
+
+    private final NodeRankModuleConfiguration config;
+    private final SupernodeCache supernodes;
+    private final Random random = new Random();
+
+    /**
+     * Create a new instance.
+     *
+     * @param config holding the damping factor and inclusion policies to walk with.
+     */
+    public PersonalizedNodeRank(NodeRankModuleConfiguration config) {
+        this(config, null);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param config     holding the damping factor and inclusion policies to walk with.
+     * @param supernodes cache of supernode relationships, <code>null</code> if supernodes aren't treated specially.
+     */
+    PersonalizedNodeRank(NodeRankModuleConfiguration config, SupernodeCache supernodes) {
+        this.config = config;
+        this.supernodes = supernodes;
+    }
+
+    /**
+     * Rank nodes of a projection.
+     *
+     * @param graph   to walk.
+     * @param seedIds IDs of seed nodes. Seeds not in the projection are ignored.
+     * @param walks   number of walks to perform.
+     * @param limit   maximum number of top ranked nodes to return.
+     * @return top ranked nodes with their ranks.
+     * @throws IllegalArgumentException if walks isn't positive or exceeds the configured maximum, or limit is negative.
+     */
+    public TopRankedSnapshot compute(GraphProjection graph, long[] seedIds, int walks, int limit) {
+        validate(walks, limit);
+
+        int[] seeds = new int[seedIds.length];
+        int seedCount = 0;
+        for (long seedId : seedIds) {
+            int index = graph.indexOf(seedId);
+            if (index >= 0) {
+                seeds[seedCount++] = index;
+            }
+        }
+
+        if (seedCount == 0 || limit == 0) {
+            return TopRankedSnapshot.EMPTY;
+        }
+
+        VisitCounter visits = new VisitCounter();
+        long total = 0;
+
+        for (int walk = 0; walk < walks; walk++) {
+            int current = seeds[random.nextInt(seedCount)];
+
+            for (int step = 0; step < MAX_WALK_LENGTH; step++) {
+                visits.increment(graph.nodeId(current));
+                total++;
+
+                if (random.nextDouble() > config.getDampingFactor()) {
+                    break;
+                }
+
+                current = graph.randomNeighbour(current, random);
+                if (current < 0) {
+                    break;
+                }
+            }
+        }
+
+        return top(visits, total, null, limit);
+    }
+
+    /**
+     * Rank nodes of a database. Must be called within a transaction.
+     *
+     * @param database to walk.
+     * @param seedIds  IDs of seed nodes. Seeds that don't exist are ignored.
+     * @param walks    number of walks to perform.
+     * @param limit    maximum number of top ranked nodes to return.
+     * @return top ranked nodes with their ranks.
+     * @throws IllegalArgumentException if walks isn't positive or exceeds the configured maximum, or limit is negative.
+     */
+    public TopRankedSnapshot compute(GraphDatabaseService database, long[] seedIds, int walks, int limit) {
+        validate(walks, limit);
+
+        List<Node> seeds = new ArrayList<>(seedIds.length);
+        for (long seedId : seedIds) {
+            try {
+                seeds.add(database.getNodeById(seedId));
+            } catch (NotFoundException e) {
+                //ignore deleted seeds
+            }
+        }
+
+        if (seeds.isEmpty() || limit == 0) {
+            return TopRankedSnapshot.EMPTY;
+        }
+
+        RelationshipSelector relationshipSelector = DegreeAwareRelationshipSelector.forConfiguration(config, supernodes);
+        VisitCounter visits = new VisitCounter();
+        long total = 0;
+
+        for (int walk = 0; walk < walks; walk++) {
+            Node current = seeds.get(random.nextInt(seeds.size()));
+
+            for (int step = 0; step < MAX_WALK_LENGTH; step++) {
+                visits.increment(current.getId());
+                total++;
+
+                if (random.nextDouble() > config.getDampingFactor()) {
+                    break;
+                }
+
+                Relationship relationship = relationshipSelector.selectRelationship(current);
+                if (relationship == null) {
+                    break;
+                }
+                current = relationship.getOtherNode(current);
+            }
+        }
+
+        return top(visits, total, database, limit);
+    }
+
+    private TopRankedSnapshot top(VisitCounter visits, long total, GraphDatabaseService database, int limit) {
+        TopRankedNodes topNodes = new TopRankedNodes();
+        //never more than the visited nodes, so that a huge limit doesn't allocate a huge heap
+        topNodes.initializeIfNeeded(null, database, config.withMaxTopRankNodes(Math.min(limit, visits.size())));
+
+        double perVisit = 1.0 / total;
+        visits.forEach((nodeId, count) -> topNodes.addNode(nodeId, count * perVisit));
+
+        topNodes.publish();
+        return topNodes.getSnapshot();
+    }
+
+    private void validate(int walks, int limit) {
+        if (walks <= 0) {
+            throw new IllegalArgumentException("Number of walks must be positive");
+        }
+
+        if (walks > config.getMaxPersonalizedWalks()) {
+            throw new IllegalArgumentException("Number of walks must not exceed " + config.getMaxPersonalizedWalks());
+        }
+
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import java.util.Arrays;
+
+/**
+ * Damped PageRank computed by power iteration over a {@link GraphProjection}.
+ * <p/>
+ * The transitions are those of the {@link NodeRankModule}'s walker: from each node, rank flows to all its neighbours
+ * with the probability equal to the damping factor and to all nodes otherwise. Rank flows to the neighbours evenly, or
+ * in proportion to their weights if the projection is weighted. Nodes without neighbours distribute all their rank
+ * evenly to all nodes. The resulting scores sum up to 1.
+ */
+public class PowerIteration {
+
+    private static final Log LOG = LoggerFactory.getLogger(PowerIteration.class);
+
+    private final double dampingFactor;
+    private final double tolerance;
+    private final int maxIterations;
+
+    /**
+     * Create a new power iteration.
+     *
+     * @param dampingFactor probability of following a relationship rather than jumping to a random node.
+     * @param tolerance     the iteration stops once the sum of absolute differences between scores of two consecutive
+     *                      iterations drops below this value.
+     * @param maxIterations the iteration stops after this many iterations even if it hasn't converged.
+     */
+    public PowerIteration(double dampingFactor, double tolerance, int maxIterations) {
+        this.dampingFactor = dampingFactor;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Compute the scores of all nodes of a projection.
+     *
+     * @param graph projection.
+     * @return scores indexed by node index in the projection.
+     */
+    public double[] compute(GraphProjection graph) {
+        int nodeCount = graph.nodeCount();
+        if (nodeCount == 0) {
+            return new double[0];
+        }
+
+        double[] scores = new double[nodeCount];
+        double[] next = new double[nodeCount];
+        Arrays.fill(scores, 1.0 / nodeCount);
+
+        double difference = Double.MAX_VALUE;
+        int iteration = 0;
+
+        while (iteration < maxIterations && difference >= tolerance) {
+            Arrays.fill(next, 0);
+            double danglingScore = 0;
+
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = graph.degree(node);
+
+                if (degree == 0) {
+                    danglingScore += scores[node];
+                    continue;
+                }
+
+                if (!graph.isWeighted()) {
+                    double share = scores[node] / degree;
+                    for (int n = 0; n < degree; n++) {
+                        next[graph.neighbour(node, n)] += share;
+                    }
+                    continue;
+                }
+
+                double totalWeight = 0;
+                for (int n = 0; n < degree; n++) {
+                    totalWeight += graph.weight(node, n);
+                }
+
+                double share = scores[node] / totalWeight;
+                for (int n = 0; n < degree; n++) {
+                    next[graph.neighbour(node, n)] += share * graph.weight(node, n);
+                }
+            }
+
+            double base = (1 - dampingFactor + dampingFactor * danglingScore) / nodeCount;
+            difference = 0;
+
+            for (int node = 0; node < nodeCount; node++) {
+                next[node] = base + dampingFactor * next[node];
+                difference += Math.abs(next[node] - scores[node]);
+            }
+
+            double[] swap = scores;
+            scores = next;
+            next = swap;
+            iteration++;
+        }
+
+        if (difference >= tolerance) {
+            LOG.warn("Power iteration did not converge within %s iterations, last difference was %s", iteration, difference);
+        } else {
+            LOG.info("Power iteration converged after %s iterations", iteration);
+        }
+
+        return scores;
+    }
+}
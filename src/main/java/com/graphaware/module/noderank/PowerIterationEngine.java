@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Drives {@link NodeRankAlgorithm#POWER_ITERATION} on behalf of the {@link NodeRankModule}.
+ * <p/>
+ * The graph is projected and ranked in a background thread, so that the module's timer thread isn't blocked. The same
+ * thread then writes the scores to the {@link RankStore} using a {@link RankWriter}, in batches of the configured size,
+ * each in a transaction of its own. Once all scores are written, an invocation of
+ * {@link #doSomeWork(GraphDatabaseService)} updates the top ranked nodes, and the next computation starts after the
+ * configured recompute interval.
+ * <p/>
+ * With double buffering, all scores of a computation are published in a {@link RankBuffer} as soon as they are computed,
+ * replacing the scores of the previous computation at once, and the top ranked nodes are updated from the buffer by the
+ * next invocation. Readers of the buffer therefore never see a mix of old and new scores, which readers of the
+ * {@link RankStore} do while the scores are being written.
+ */
+class PowerIterationEngine {
+
+    private static final Log LOG = LoggerFactory.getLogger(PowerIterationEngine.class);
+
+    private final NodeRankModuleConfiguration config;
+    private final TopRankedNodes topNodes;
+    private final RankStore store;
+    private final NodeRankStatistics statistics;
+    private final ExecutorService executor;
+
+    private Future<Scores> computation;
+    private volatile RankBuffer published;
+    private RankBuffer offered;
+    private long nextComputationTime;
+
+    /**
+     * Create a new engine.
+     *
+     * @param moduleId ID of the module the engine belongs to, used for naming threads.
+     * @param config   module configuration.
+     * @param topNodes   top ranked nodes to update when scores are written.
+     * @param store      to write scores to.
+     * @param statistics to record written scores in.
+     */
+    PowerIterationEngine(String moduleId, NodeRankModuleConfiguration config, TopRankedNodes topNodes, RankStore store, NodeRankStatistics statistics) {
+        this.config = config;
+        this.topNodes = topNodes;
+        this.store = store;
+        this.statistics = statistics;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "NodeRank-" + moduleId + "-power-iteration");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start a computation if one is due, or update the top ranked nodes once computed scores have been written.
+     *
+     * @param database to rank.
+     */
+    void doSomeWork(GraphDatabaseService database) {
+        if (computation == null && System.currentTimeMillis() >= nextComputationTime) {
+            LOG.info("Starting power iteration");
+            computation = executor.submit(() -> compute(database));
+        }
+
+        RankBuffer buffer = published;
+        if (buffer != null && buffer != offered) {
+            offer(buffer);
+        }
+
+        if (computation != null && computation.isDone()) {
+            try {
+                Scores scores = computation.get();
+                if (scores != null) {
+                    updateTopNodes(scores);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOG.warn("Power iteration failed, will try again after the recompute interval", e.getCause());
+            } finally {
+                computation = null;
+            }
+
+            nextComputationTime = System.currentTimeMillis() + config.getRecomputeInterval();
+        }
+    }
+
+    /**
+     * @return <code>true</code> iff the engine has nothing to do until {@link #getNextComputationTime()}.
+     */
+    boolean isIdle() {
+        return computation == null;
+    }
+
+    /**
+     * @return time in ms since epoch, after which the next computation will start.
+     */
+    long getNextComputationTime() {
+        return nextComputationTime;
+    }
+
+    /**
+     * @return scores of the last complete computation, <code>null</code> if there is none yet or scores aren't double
+     * buffered. Can be called by any thread.
+     */
+    RankBuffer getPublished() {
+        return published;
+    }
+
+    /**
+     * Stop the background computation.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Scores compute(GraphDatabaseService database) {
+        GraphProjection graph;
+        try (Transaction tx = database.beginTx()) {
+            graph = GraphProjection.load(database, config.getNodeInclusionPolicy(), config.getRelationshipInclusionPolicy(), config.getWeightPropertyKey());
+            tx.success();
+        }
+
+        LOG.info("Projected %s nodes with %s neighbours for power iteration", graph.nodeCount(), graph.edgeCount());
+
+        double[] result;
+        try {
+            result = new PowerIteration(config.getDampingFactor(), config.getTolerance(), config.getMaxIterations()).compute(graph);
+        } catch (RuntimeException e) {
+            graph.release();
+            throw e;
+        }
+
+        if (config.isDoubleBuffered()) {
+            published = new RankBuffer(graph, result);
+            LOG.info("Published %s power iteration scores", result.length);
+        }
+
+        long start = System.currentTimeMillis();
+        RankWriter writer = new RankWriter(database, store, config.getWriteBatchSize(), statistics);
+        int written = writer.write(result.length, graph::nodeId, i -> result[i]);
+        LOG.info("Written %s of %s power iteration scores in %s ms", written, result.length, System.currentTimeMillis() - start);
+
+        //shutting down, nobody will collect the scores
+        if (Thread.currentThread().isInterrupted()) {
+            graph.release();
+            return null;
+        }
+
+        return new Scores(graph, result);
+    }
+
+    /**
+     * Replace the top ranked nodes with the top scored nodes, which only takes a moment as the scores are in memory.
+     * Every computation ranks all nodes from scratch, so nodes of earlier computations must not linger. Nodes deleted
+     * in the meantime are left out by readers of the top ranked nodes.
+     */
+    private void updateTopNodes(Scores scores) {
+        try {
+            //already offered when published
+            if (config.isDoubleBuffered()) {
+                return;
+            }
+
+            topNodes.clear();
+            for (int i = 0; i < scores.values.length; i++) {
+                topNodes.addNode(scores.graph.nodeId(i), scores.values[i]);
+            }
+            topNodes.publish();
+        } finally {
+            scores.graph.release();
+        }
+    }
+
+    /**
+     * Replace the top ranked nodes with the top nodes of a published buffer, so that they agree with the published
+     * ranks exactly.
+     */
+    private void offer(RankBuffer buffer) {
+        topNodes.clear();
+        for (int i = 0; i < buffer.size(); i++) {
+            topNodes.addNode(buffer.nodeId(i), buffer.rankAt(i));
+        }
+        topNodes.publish();
+        offered = buffer;
+    }
+
+    private static final class Scores {
+
+        private final GraphProjection graph;
+        private final double[] values;
+
+        private Scores(GraphProjection graph, double[] values) {
+            this.graph = graph;
+            this.values = values;
+        }
+    }
+}
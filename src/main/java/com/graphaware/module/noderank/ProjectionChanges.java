@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import java.util.Arrays;
+
+/**
+ * Changes made to the graph by a single transaction, expressed in terms of a {@link GraphProjection}: nodes that
+ * appeared or disappeared and neighbours that appeared or disappeared from a node's point of view, the former with the
+ * weight of the relationship leading to them. Changes are applied in the order in which they were recorded.
+ */
+public class ProjectionChanges {
+
+    static final int ADD_NODE = 0;
+    static final int REMOVE_NODE = 1;
+    static final int ADD_NEIGHBOUR = 2;
+    static final int REMOVE_NEIGHBOUR = 3;
+
+    /**
+     * Visitor of recorded changes.
+     */
+    interface Visitor {
+
+        /**
+         * Visit a single change.
+         *
+         * @param change one of {@link #ADD_NODE}, {@link #REMOVE_NODE}, {@link #ADD_NEIGHBOUR}, {@link #REMOVE_NEIGHBOUR}.
+         * @param nodeId ID of the node the change concerns.
+         * @param otherNodeId ID of the neighbour for neighbour changes, -1 for node changes.
+         * @param weight weight of the relationship to an added neighbour, 1 for other changes.
+         */
+        void visit(int change, long nodeId, long otherNodeId, double weight);
+    }
+
+    //quadruples of change, node ID, other node ID, weight bits
+    private long[] changes = new long[16];
+    private int size;
+
+    public void addNode(long nodeId) {
+        record(ADD_NODE, nodeId, -1, 1.0);
+    }
+
+    public void removeNode(long nodeId) {
+        record(REMOVE_NODE, nodeId, -1, 1.0);
+    }
+
+    public void addNeighbour(long nodeId, long neighbourId) {
+        addNeighbour(nodeId, neighbourId, 1.0);
+    }
+
+    public void addNeighbour(long nodeId, long neighbourId, double weight) {
+        record(ADD_NEIGHBOUR, nodeId, neighbourId, weight);
+    }
+
+    public void removeNeighbour(long nodeId, long neighbourId) {
+        record(REMOVE_NEIGHBOUR, nodeId, neighbourId, 1.0);
+    }
+
+    /**
+     * @return number of recorded changes.
+     */
+    public int size() {
+        return size / 4;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < size; i += 4) {
+            visitor.visit((int) changes[i], changes[i + 1], changes[i + 2], Double.longBitsToDouble(changes[i + 3]));
+        }
+    }
+
+    private void record(int change, long nodeId, long otherNodeId, double weight) {
+        if (size + 4 > changes.length) {
+            changes = Arrays.copyOf(changes, changes.length << 1);
+        }
+
+        changes[size++] = change;
+        changes[size++] = nodeId;
+        changes[size++] = otherNodeId;
+        changes[size++] = Double.doubleToRawLongBits(weight);
+    }
+}
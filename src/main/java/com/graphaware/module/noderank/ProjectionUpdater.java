@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * {@link TransactionEventHandler} that translates committed changes of nodes and relationships included by the
+ * inclusion policies into {@link ProjectionChanges} and hands them over to a consumer.
+ * <p/>
+ * Creation and deletion of nodes and relationships is tracked, as well as changes of relationship weights when walks
+ * are weighted. Label and property changes that make a node or a relationship (not) included by the policies are picked
+ * up when the projection is next reloaded.
+ */
+class ProjectionUpdater implements TransactionEventHandler<ProjectionChanges> {
+
+    private final NodeInclusionPolicy nodeInclusionPolicy;
+    private final RelationshipInclusionPolicy relationshipInclusionPolicy;
+    private final String weightPropertyKey;
+    private final Consumer<ProjectionChanges> consumer;
+
+    /**
+     * Create a new updater.
+     *
+     * @param config   module configuration holding inclusion policies.
+     * @param consumer of committed changes. Called by the committing thread, so it should return quickly.
+     */
+    ProjectionUpdater(NodeRankModuleConfiguration config, Consumer<ProjectionChanges> consumer) {
+        this.nodeInclusionPolicy = config.getNodeInclusionPolicy();
+        this.relationshipInclusionPolicy = config.getRelationshipInclusionPolicy();
+        this.weightPropertyKey = config.getWeightPropertyKey();
+        this.consumer = consumer;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProjectionChanges beforeCommit(TransactionData data) throws Exception {
+        ProjectionChanges changes = new ProjectionChanges();
+
+        for (Node node : data.createdNodes()) {
+            if (nodeInclusionPolicy.include(node)) {
+                changes.addNode(node.getId());
+            }
+        }
+
+        for (Relationship relationship : data.deletedRelationships()) {
+            long startId = relationship.getStartNode().getId();
+            long endId = relationship.getEndNode().getId();
+
+            if (wasIncluded(relationship, relationship.getStartNode())) {
+                changes.removeNeighbour(startId, endId);
+            }
+            if (startId != endId && wasIncluded(relationship, relationship.getEndNode())) {
+                changes.removeNeighbour(endId, startId);
+            }
+        }
+
+        Set<Long> created = new HashSet<>();
+        for (Relationship relationship : data.createdRelationships()) {
+            created.add(relationship.getId());
+            addNeighbours(relationship, changes);
+        }
+
+        if (weightPropertyKey != null) {
+            for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                if (weightPropertyKey.equals(entry.key()) && !created.contains(entry.entity().getId())) {
+                    reweigh(entry.entity(), changes);
+                }
+            }
+
+            for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                if (weightPropertyKey.equals(entry.key()) && !data.isDeleted(entry.entity())) {
+                    reweigh(entry.entity(), changes);
+                }
+            }
+        }
+
+        for (Node node : data.deletedNodes()) {
+            changes.removeNode(node.getId());
+        }
+
+        return changes.isEmpty() ? null : changes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterCommit(TransactionData data, ProjectionChanges changes) {
+        if (changes != null) {
+            consumer.accept(changes);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterRollback(TransactionData data, ProjectionChanges changes) {
+        //nothing was changed
+    }
+
+    private void addNeighbours(Relationship relationship, ProjectionChanges changes) {
+        double weight = weightPropertyKey == null ? 1.0 : WeightedRelationshipSelector.weight(relationship, weightPropertyKey);
+        if (weight <= 0) {
+            return;
+        }
+
+        Node start = relationship.getStartNode();
+        Node end = relationship.getEndNode();
+
+        if (relationshipInclusionPolicy.include(relationship, start)) {
+            changes.addNeighbour(start.getId(), end.getId(), weight);
+        }
+        if (start.getId() != end.getId() && relationshipInclusionPolicy.include(relationship, end)) {
+            changes.addNeighbour(end.getId(), start.getId(), weight);
+        }
+    }
+
+    /**
+     * Replace the neighbours a relationship stands for with ones of its current weight. With multiple relationships
+     * between the same nodes, the weight of any one of them may be replaced until the projection is reloaded.
+     */
+    private void reweigh(Relationship relationship, ProjectionChanges changes) {
+        long startId = relationship.getStartNode().getId();
+        long endId = relationship.getEndNode().getId();
+
+        if (relationshipInclusionPolicy.include(relationship, relationship.getStartNode())) {
+            changes.removeNeighbour(startId, endId);
+        }
+        if (startId != endId && relationshipInclusionPolicy.include(relationship, relationship.getEndNode())) {
+            changes.removeNeighbour(endId, startId);
+        }
+
+        addNeighbours(relationship, changes);
+    }
+
+    /**
+     * Policies that read properties cannot be evaluated on deleted relationships, in which case the relationship is
+     * assumed to have been included. Removing a neighbour that isn't in the projection has no effect.
+     */
+    private boolean wasIncluded(Relationship relationship, Node pointOfView) {
+        try {
+            return relationshipInclusionPolicy.include(relationship, pointOfView);
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+}
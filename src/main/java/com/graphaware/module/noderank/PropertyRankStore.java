@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * {@link RankStore} that stores ranks in a property of the ranked nodes, and the generation of decayed ranks in
+ * a companion property (see {@link RankDecay#generationPropertyKey(String)}). Visit counts are integers, which
+ * saturate rather than overflow.
+ * <p/>
+ * This is the default store. Ranks are visible to Cypher and replicated to all cluster members, at the cost of every
+ * written rank going through the transaction log.
+ */
+public class PropertyRankStore implements RankStore {
+
+    private final String rankPropertyKey;
+    private final String generationPropertyKey;
+
+    /**
+     * Create a new store.
+     *
+     * @param rankPropertyKey key of the property to store ranks in.
+     */
+    public PropertyRankStore(String rankPropertyKey) {
+        this.rankPropertyKey = rankPropertyKey;
+        this.generationPropertyKey = RankDecay.generationPropertyKey(rankPropertyKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getRank(Node node) {
+        return ((Number) node.getProperty(rankPropertyKey, 0)).doubleValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getGeneration(Node node, long defaultGeneration) {
+        return ((Number) node.getProperty(generationPropertyKey, defaultGeneration)).longValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRank(Node node, double rank) {
+        node.setProperty(rankPropertyKey, rank);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setRank(Node node, double rank, long generation) {
+        node.setProperty(rankPropertyKey, rank);
+        node.setProperty(generationPropertyKey, generation);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double addVisits(Node node, long visits) {
+        long sum = ((Number) node.getProperty(rankPropertyKey, 0)).longValue() + visits;
+        int rank = (int) Math.min(Integer.MAX_VALUE, sum);
+        node.setProperty(rankPropertyKey, rank);
+        return rank;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        //nothing to release
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.runtime.walk.NodeSelector;
+import com.graphaware.runtime.walk.RandomNodeSelector;
+import com.graphaware.runtime.walk.RelationshipSelector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.logging.Log;
+
+import java.util.Random;
+
+/**
+ * A single graph walker of the {@link NodeRankModule}. It remembers the node it stands on and at each step either
+ * follows a random relationship of that node, or jumps to a random node with the probability 1 - damping factor.
+ * <p/>
+ * When given a {@link GraphProjection}, the walker walks the projection instead of the database, which requires no
+ * transaction and no access to the database at all.
+ * <p/>
+ * When walking the database, random nodes are selected from {@link EligibleNodes} if given, otherwise by probing the
+ * database. The duration of every such selection is recorded, as well as the number of steps, hyperjumps and dead ends
+ * of every walk.
+ * <p/>
+ * Every walker has its own source of randomness and selectors. It must only be used by one thread at a time, within
+ * a transaction unless it walks a projection.
+ */
+class RandomWalker {
+
+    private static final Log LOG = LoggerFactory.getLogger(RandomWalker.class);
+
+    private static final long NO_NODE = -1;
+
+    private final NodeRankModuleConfiguration config;
+    private final NodeSelector nodeSelector;
+    private final RelationshipSelector relationshipSelector;
+    private final NodeRankStatistics statistics;
+    private final Random random = new Random();
+
+    private volatile GraphProjection projection;
+    private long currentNodeId = NO_NODE;
+    private long hyperjumps;
+    private long deadEnds;
+
+    /**
+     * Create a new walker.
+     *
+     * @param config     module configuration.
+     * @param supernodes    cache of supernode relationships shared by all walkers, <code>null</code> if supernodes
+     *                      aren't treated specially.
+     * @param eligibleNodes IDs of nodes included by the node inclusion policy shared by all walkers, <code>null</code>
+     *                      to select random nodes by probing the database.
+     * @param statistics    to record walks in, shared by all walkers.
+     */
+    RandomWalker(NodeRankModuleConfiguration config, SupernodeCache supernodes, EligibleNodes eligibleNodes, NodeRankStatistics statistics) {
+        this.config = config;
+        NodeSelector probing = new RandomNodeSelector(config.getNodeInclusionPolicy());
+        this.nodeSelector = eligibleNodes == null ? probing : new EligibleNodeSelector(eligibleNodes, config.getNodeInclusionPolicy(), probing);
+        this.relationshipSelector = DegreeAwareRelationshipSelector.forConfiguration(config, supernodes);
+        this.statistics = statistics;
+    }
+
+    /**
+     * Take a number of steps, counting the visited nodes.
+     *
+     * @param steps    maximum number of steps to take.
+     * @param database to walk.
+     * @param visits   to record the visited nodes in.
+     * @return number of steps actually taken, fewer than requested only if there are no nodes to walk.
+     */
+    int walk(int steps, GraphDatabaseService database, VisitCounter visits) {
+        GraphProjection graph = projection;
+        if (graph != null) {
+            return walk(steps, graph, visits);
+        }
+
+        Node current = currentNode(database);
+
+        int taken = 0;
+        while (taken < steps) {
+            Node next = nextNode(current, database);
+
+            if (next == null) {
+                break;
+            }
+
+            visits.increment(next.getId());
+            current = next;
+            taken++;
+        }
+
+        if (current != null) {
+            currentNodeId = current.getId();
+        }
+
+        record(taken);
+
+        return taken;
+    }
+
+    private int walk(int steps, GraphProjection graph, VisitCounter visits) {
+        int current = currentNodeId == NO_NODE ? -1 : graph.indexOf(currentNodeId);
+
+        int taken = 0;
+        while (taken < steps) {
+            int next = nextNode(current, graph);
+
+            //all nodes have been removed from the projection
+            if (next < 0) {
+                break;
+            }
+
+            visits.increment(graph.nodeId(next));
+            current = next;
+            taken++;
+        }
+
+        if (current >= 0) {
+            currentNodeId = graph.nodeId(current);
+        }
+
+        record(taken);
+
+        return taken;
+    }
+
+    /**
+     * Walk the given projection rather than the database from now on.
+     *
+     * @param projection to walk, <code>null</code> to walk the database.
+     */
+    void useProjection(GraphProjection projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Select a random node allowed by the configured node inclusion policy.
+     *
+     * @param database to select from.
+     * @return random node, <code>null</code> if there are no nodes to select.
+     */
+    Node randomNode(GraphDatabaseService database) {
+        long start = System.nanoTime();
+        Node result = nodeSelector.selectNode(database);
+        statistics.recordSelection(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Place the walker on a node.
+     *
+     * @param node to place the walker on, <code>null</code> to make the walker start from a random node.
+     */
+    void moveTo(Node node) {
+        moveTo(node == null ? NO_NODE : node.getId());
+    }
+
+    /**
+     * Place the walker on a node.
+     *
+     * @param nodeId ID of the node to place the walker on, -1 to make the walker start from a random node.
+     */
+    void moveTo(long nodeId) {
+        currentNodeId = nodeId;
+    }
+
+    /**
+     * @return ID of the node the walker stands on, -1 if it hasn't started walking.
+     */
+    long getCurrentNodeId() {
+        return currentNodeId;
+    }
+
+    private Node currentNode(GraphDatabaseService database) {
+        if (currentNodeId == NO_NODE) {
+            return null;
+        }
+
+        try {
+            return database.getNodeById(currentNodeId);
+        } catch (NotFoundException e) {
+            LOG.debug("Node with ID %s the walker stood on was deleted. Will continue from a random node.", currentNodeId);
+            return null;
+        }
+    }
+
+    private void record(int steps) {
+        statistics.recordWalk(steps, hyperjumps, deadEnds);
+        hyperjumps = 0;
+        deadEnds = 0;
+    }
+
+    private int nextNode(int current, GraphProjection graph) {
+        if (current < 0) {
+            return graph.randomNode(random);
+        }
+
+        if (random.nextDouble() > config.getDampingFactor()) {
+            hyperjumps++;
+            return graph.randomNode(random);
+        }
+
+        int next = graph.randomNeighbour(current, random);
+        if (next < 0) {
+            deadEnds++;
+            return graph.randomNode(random);
+        }
+
+        return next;
+    }
+
+    private Node nextNode(Node currentNode, GraphDatabaseService database) {
+        if (currentNode == null) {
+            return randomNode(database);
+        }
+
+        //hyperjump
+        if (random.nextDouble() > config.getDampingFactor()) {
+            LOG.debug("Performing hyperjump");
+            hyperjumps++;
+            return randomNode(database);
+        }
+
+        Relationship randomRelationship = relationshipSelector.selectRelationship(currentNode);
+        if (randomRelationship == null) {
+            LOG.debug("Dead end at %s, selecting a new random node", currentNode);
+            deadEnds++;
+            return randomNode(database);
+        }
+
+        Node result = randomRelationship.getOtherNode(currentNode);
+
+        if (LOG.isDebugEnabled() && !config.getNodeInclusionPolicy().include(result)) {
+            LOG.debug("Relationship Inclusion Policy allows for a relationship, which leads to a node that " +
+                    "is not included by the Node Inclusion Policy. This is likely a mis-configuration");
+        }
+
+        return result;
+    }
+}
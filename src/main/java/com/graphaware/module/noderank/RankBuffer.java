@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import java.util.Arrays;
+
+/**
+ * An immutable buffer of ranks of all nodes ranked by a single computation, published as a whole once the computation
+ * is complete. Readers that get their ranks from the last published buffer see all ranks of one computation, never
+ * a mix of old and new ones, without any locking against the writer of the next buffer.
+ * <p/>
+ * The buffer holds the IDs of the ranked nodes in ascending order and looks ranks up by binary search over them, so it
+ * takes no more than the IDs and the ranks themselves, 16 bytes per node, and outlives the projection it was created
+ * for, which is released once the ranks are written.
+ * <p/>
+ * A buffer is safe to read by any number of threads once published through a volatile reference.
+ */
+final class RankBuffer {
+
+    private final long[] nodeIds;
+    private final double[] ranks;
+
+    /**
+     * Create a new buffer.
+     *
+     * @param graph the ranks were computed for.
+     * @param ranks of the projected nodes, indexed like the projection.
+     */
+    RankBuffer(GraphProjection graph, double[] ranks) {
+        long[] ids = new long[graph.nodeCount()];
+        boolean sorted = true;
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.nodeId(i);
+            sorted &= i == 0 || ids[i - 1] < ids[i];
+        }
+
+        //a freshly loaded projection indexes its nodes in ascending order of IDs, only added nodes break the order
+        if (sorted) {
+            this.nodeIds = ids;
+            this.ranks = ranks;
+            return;
+        }
+
+        this.nodeIds = ids.clone();
+        Arrays.sort(nodeIds);
+        this.ranks = new double[ranks.length];
+        for (int i = 0; i < ids.length; i++) {
+            this.ranks[Arrays.binarySearch(nodeIds, ids[i])] = ranks[i];
+        }
+    }
+
+    /**
+     * @param nodeId ID of a node.
+     * @return <code>true</code> iff the buffer holds the rank of the node.
+     */
+    boolean contains(long nodeId) {
+        return Arrays.binarySearch(nodeIds, nodeId) >= 0;
+    }
+
+    /**
+     * @param nodeId ID of a node.
+     * @return rank of the node, 0 if the buffer doesn't hold it.
+     */
+    double rank(long nodeId) {
+        int position = Arrays.binarySearch(nodeIds, nodeId);
+        return position < 0 ? 0 : ranks[position];
+    }
+
+    /**
+     * @return number of ranks in the buffer.
+     */
+    int size() {
+        return nodeIds.length;
+    }
+
+    /**
+     * @param index between 0 and {@link #size()} - 1.
+     * @return ID of the node at the given index, in ascending order of IDs.
+     */
+    long nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * @param index between 0 and {@link #size()} - 1.
+     * @return rank of the node at the given index.
+     */
+    double rankAt(int index) {
+        return ranks[index];
+    }
+}
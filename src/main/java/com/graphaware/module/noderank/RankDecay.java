@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * Exponential decay of ranks computed by {@link NodeRankAlgorithm#RANDOM_WALK}, which makes a visit lose half of its
+ * weight every half-life, so that ranks reflect recent rather than all-time popularity.
+ * <p/>
+ * Decay is lazy. Instead of decaying the ranks of all nodes as time passes, every new visit is counted with a weight
+ * that doubles every half-life, i.e. a global multiplier. Ranks of all nodes therefore remain comparable with each other
+ * without ever being rewritten, and the decayed score of a node at a given time is its rank divided by the multiplier
+ * at that time.
+ * <p/>
+ * So that the multiplier cannot overflow, time is divided into generations of {@link #GENERATION_HALF_LIVES} half-lives,
+ * and the multiplier starts at 1 in every generation. The generation a rank is expressed in is stored next to the rank
+ * by the {@link RankStore}, e.g. in a companion property <code>nodeRankGeneration</code>. A rank written in an earlier generation is
+ * rebased to the current one, i.e. scaled down by 2^-{@link #GENERATION_HALF_LIVES} for each generation, when the node
+ * is next visited or read.
+ * <p/>
+ * Generations are counted from the epoch, so they don't depend on when the module was started.
+ */
+public final class RankDecay {
+
+    static final int GENERATION_HALF_LIVES = 64;
+
+    private final long halfLife;
+    private final long generationLength;
+    private final RankStore store;
+
+    /**
+     * Create a decay for the given configuration.
+     *
+     * @param config module configuration.
+     * @param store  the ranks are stored in.
+     * @return decay, <code>null</code> if ranks aren't decayed, i.e. no half-life is configured or the algorithm isn't
+     * {@link NodeRankAlgorithm#RANDOM_WALK}.
+     */
+    static RankDecay forConfiguration(NodeRankModuleConfiguration config, RankStore store) {
+        if (config.getRankHalfLife() <= 0 || config.getAlgorithm() != NodeRankAlgorithm.RANDOM_WALK) {
+            return null;
+        }
+
+        return new RankDecay(config.getRankHalfLife(), store);
+    }
+
+    /**
+     * Create a new decay of ranks stored in node properties.
+     *
+     * @param halfLife        half-life of a visit in ms. Must be > 0.
+     * @param rankPropertyKey key of the rank property.
+     */
+    public RankDecay(long halfLife, String rankPropertyKey) {
+        this(halfLife, new PropertyRankStore(rankPropertyKey));
+    }
+
+    /**
+     * Create a new decay.
+     *
+     * @param halfLife half-life of a visit in ms. Must be > 0.
+     * @param store    the ranks are stored in.
+     */
+    public RankDecay(long halfLife, RankStore store) {
+        if (halfLife <= 0) {
+            throw new IllegalArgumentException("Half-life must be > 0");
+        }
+
+        this.halfLife = halfLife;
+        this.generationLength = halfLife * GENERATION_HALF_LIVES;
+        this.store = store;
+    }
+
+    /**
+     * @param rankPropertyKey key of the rank property.
+     * @return key of the property holding the generation the rank is expressed in.
+     */
+    public static String generationPropertyKey(String rankPropertyKey) {
+        return rankPropertyKey + "Generation";
+    }
+
+    /**
+     * @param time in ms since epoch.
+     * @return generation at the given time.
+     */
+    public long generation(long time) {
+        return Math.floorDiv(time, generationLength);
+    }
+
+    /**
+     * @param time in ms since epoch.
+     * @return weight of a single visit at the given time, expressed in the generation at that time. Between 1 and
+     * 2^{@link #GENERATION_HALF_LIVES}.
+     */
+    public double weight(long time) {
+        return Math.pow(2, (double) Math.floorMod(time, generationLength) / halfLife);
+    }
+
+    /**
+     * Express a rank in a later generation.
+     *
+     * @param rank           to rebase.
+     * @param rankGeneration generation the rank is expressed in.
+     * @param generation     generation to express the rank in.
+     * @return rebased rank.
+     */
+    public static double rebase(double rank, long rankGeneration, long generation) {
+        long generations = generation - rankGeneration;
+        if (generations <= 0) {
+            return rank;
+        }
+
+        //beyond this, the rank is 0 for all practical purposes
+        if (generations > 32) {
+            return 0;
+        }
+
+        return Math.scalb(rank, (int) -generations * GENERATION_HALF_LIVES);
+    }
+
+    /**
+     * Read the rank of a node expressed in the given generation. Ranks without a generation, e.g. visit counts written
+     * before decay was configured, are taken to be expressed in the given generation.
+     *
+     * @param node       to read the rank of.
+     * @param generation to express the rank in.
+     * @return rank of the node, 0 if it has none.
+     */
+    public double rank(Node node, long generation) {
+        return rebase(store.getRank(node), store.getGeneration(node, generation), generation);
+    }
+
+    /**
+     * Write the rank of a node together with the generation it is expressed in.
+     *
+     * @param node       to write the rank to.
+     * @param rank       to write.
+     * @param generation the rank is expressed in.
+     */
+    void write(Node node, double rank, long generation) {
+        store.setRank(node, rank, generation);
+    }
+}
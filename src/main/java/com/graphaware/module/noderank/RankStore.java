@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * Storage of the ranks computed by a {@link NodeRankModule}, together with the generation decayed ranks are expressed
+ * in (see {@link RankDecay}).
+ * <p/>
+ * Ranks are written by a single thread at a time and can be read by any thread. Unless stated otherwise by the
+ * implementation, both must happen within a transaction.
+ *
+ * @see PropertyRankStore
+ * @see MappedFileRankStore
+ */
+public interface RankStore {
+
+    /**
+     * @param node to get the rank of.
+     * @return rank of the node, 0 if it has none.
+     */
+    double getRank(Node node);
+
+    /**
+     * @param node              to get the generation of.
+     * @param defaultGeneration to return if the node has no generation.
+     * @return generation the rank of the node is expressed in.
+     */
+    long getGeneration(Node node, long defaultGeneration);
+
+    /**
+     * Set the rank of a node, e.g. one computed by {@link NodeRankAlgorithm#POWER_ITERATION}.
+     *
+     * @param node to set the rank of.
+     * @param rank to set.
+     */
+    void setRank(Node node, double rank);
+
+    /**
+     * Set the decayed rank of a node.
+     *
+     * @param node       to set the rank of.
+     * @param rank       to set.
+     * @param generation the rank is expressed in.
+     */
+    void setRank(Node node, double rank, long generation);
+
+    /**
+     * Add visits to the rank of a node, which is a visit count.
+     *
+     * @param node   to add visits to.
+     * @param visits number of visits to add.
+     * @return new rank of the node.
+     */
+    double addVisits(Node node, long visits);
+
+    /**
+     * Clear the ranks of nodes deleted since the last call, for stores that outlive the nodes they rank. Called by the
+     * thread writing ranks, so that clearing a rank never races with writing it.
+     *
+     * @return sorted IDs of the deleted nodes, whose ranks must not be written until the next call.
+     */
+    default long[] clearDeleted() {
+        return new long[0];
+    }
+
+    /**
+     * Release resources held by the store. Ranks must not be read or written afterwards.
+     */
+    void close();
+}
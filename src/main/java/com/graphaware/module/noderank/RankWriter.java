@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Writes ranks computed in bulk to a {@link RankStore} in batches, each committed in a transaction of its own, so that
+ * millions of ranks written to node properties are written neither in one giant transaction nor in millions of tiny
+ * ones.
+ * <p/>
+ * Nodes that already have the rank aren't written at all, which makes recomputing ranks of a graph that hasn't changed
+ * much cheap. Nodes deleted in the meantime are skipped, and ranks of nodes deleted while they were being written are
+ * cleared once all batches are written, see {@link RankStore#clearDeleted()}. A batch that fails to commit, e.g. because of a concurrent
+ * deletion, is skipped rather than failing the whole write-back. Throughput is recorded in {@link NodeRankStatistics}.
+ * <p/>
+ * The writer begins its own transactions, so it must not be called within a transaction. It is meant to be called by
+ * a background thread, so that writing ranks doesn't stall the module's timer thread, and stops between batches when
+ * the thread is interrupted.
+ */
+class RankWriter {
+
+    private static final Log LOG = LoggerFactory.getLogger(RankWriter.class);
+
+    private final GraphDatabaseService database;
+    private final RankStore store;
+    private final int batchSize;
+    private final NodeRankStatistics statistics;
+
+    /**
+     * Create a new writer.
+     *
+     * @param database        to write to.
+     * @param store      to write ranks to.
+     * @param batchSize  maximum number of nodes written in a single transaction.
+     * @param statistics to record written batches in.
+     */
+    RankWriter(GraphDatabaseService database, RankStore store, int batchSize, NodeRankStatistics statistics) {
+        this.database = database;
+        this.store = store;
+        this.batchSize = batchSize;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Write ranks to nodes.
+     *
+     * @param count  number of ranks to write.
+     * @param nodeId ID of the node at the given position, 0 to count - 1.
+     * @param rank   rank of the node at the given position.
+     * @return number of ranks written or found unchanged, fewer than count if the thread was interrupted or some
+     * batches failed.
+     */
+    int write(int count, IntToLongFunction nodeId, IntToDoubleFunction rank) {
+        int result = 0;
+
+        for (int from = 0; from < count; from += batchSize) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.info("Interrupted after writing %s of %s ranks", result, count);
+                break;
+            }
+
+            int to = Math.min(count, from + batchSize);
+            try {
+                result += writeBatch(from, to, nodeId, rank);
+            } catch (RuntimeException e) {
+                statistics.recordFailedWriteBatch();
+                LOG.warn("Could not write a batch of " + (to - from) + " ranks, they will be written when next computed", e);
+            }
+        }
+
+        store.clearDeleted();
+        return result;
+    }
+
+    private int writeBatch(int from, int to, IntToLongFunction nodeId, IntToDoubleFunction rank) {
+        long start = System.nanoTime();
+        int written = 0;
+        int unchanged = 0;
+
+        try (Transaction tx = database.beginTx()) {
+            for (int i = from; i < to; i++) {
+                Node node;
+                try {
+                    node = database.getNodeById(nodeId.applyAsLong(i));
+                } catch (NotFoundException e) {
+                    LOG.debug("Node with ID %s was deleted before its rank could be written", nodeId.applyAsLong(i));
+                    continue;
+                }
+
+                double value = rank.applyAsDouble(i);
+                if (store.getRank(node) == value) {
+                    unchanged++;
+                    continue;
+                }
+
+                store.setRank(node, value);
+                written++;
+            }
+
+            tx.success();
+        }
+
+        statistics.recordWriteBatch(written, unchanged, System.nanoTime() - start);
+        return written + unchanged;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.logging.Log;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An additional named ranking computed by a {@link NodeRankModule} alongside its own, configured by
+ * {@link NodeRankModuleConfiguration#withRanking(String, NodeRankModuleConfiguration)}.
+ * <p/>
+ * A ranking has its own walker, visit counts and top ranked nodes, but is walked by the module's timer thread in the
+ * module's transaction. It walks the module's projection if it has the same inclusion policies and weight property,
+ * otherwise the database. Its top ranked nodes and the node its walker stands on are remembered in the module's
+ * context, see {@link #getContext()}, and restored from it when the module is started, like the module's own.
+ * <p/>
+ * This class is not thread-safe, it must only be used by the thread invoking the module.
+ */
+final class Ranking {
+
+    private static final Log LOG = LoggerFactory.getLogger(Ranking.class);
+
+    private final NodeRankModuleConfiguration config;
+    private final boolean sharesProjection;
+    private final RandomWalker walker;
+    private final SupernodeCache supernodes;
+    private final RankStore store;
+    private final RankDecay decay;
+    private final TopRankedNodes topNodes = new TopRankedNodes();
+    private final VisitCounter pendingVisits = new VisitCounter();
+
+    /**
+     * Create a new ranking.
+     *
+     * @param config       configuration of the ranking.
+     * @param moduleConfig configuration of the module computing the ranking.
+     * @param supernodes   module's cache of supernode relationships, used if the ranking selects the same
+     *                     relationships as the module. <code>null</code> if the module doesn't treat supernodes
+     *                     specially, in which case the ranking has a cache of its own if its configuration asks for it.
+     * @param store        to store ranks in, closed with the ranking.
+     * @param statistics   to record walks in.
+     */
+    Ranking(NodeRankModuleConfiguration config, NodeRankModuleConfiguration moduleConfig, SupernodeCache supernodes, RankStore store, NodeRankStatistics statistics) {
+        this.config = config;
+
+        boolean sharesRelationships = Objects.equals(config.getRelationshipInclusionPolicy(), moduleConfig.getRelationshipInclusionPolicy())
+                && Objects.equals(config.getWeightPropertyKey(), moduleConfig.getWeightPropertyKey());
+
+        this.sharesProjection = sharesRelationships && Objects.equals(config.getNodeInclusionPolicy(), moduleConfig.getNodeInclusionPolicy());
+        this.supernodes = sharesRelationships && supernodes != null || config.getEffectiveSupernodeThreshold() <= 0 ? null : new SupernodeCache(config.getSupernodeCacheSize());
+        this.walker = new RandomWalker(config, this.supernodes != null ? this.supernodes : sharesRelationships ? supernodes : null, null, statistics);
+        this.store = store;
+        this.decay = RankDecay.forConfiguration(config, store);
+    }
+
+    /**
+     * Walk the given projection rather than the database from now on, if it projects the nodes and relationships
+     * included by this ranking.
+     *
+     * @param projection of the module, <code>null</code> to walk the database.
+     */
+    void useProjection(GraphProjection projection) {
+        walker.useProjection(sharesProjection ? projection : null);
+    }
+
+    /**
+     * Take a number of steps, counting the visited nodes. Must be called within a transaction.
+     *
+     * @param steps       number of steps to take.
+     * @param database    to walk.
+     * @param lastContext of the ranking to restore its top ranked nodes and walker from, <code>null</code> if there is
+     *                    none or it has already been restored.
+     */
+    void walk(int steps, GraphDatabaseService database, NodeRankContext lastContext) {
+        if (lastContext != null) {
+            walker.moveTo(lastContext.getNodeId());
+        }
+
+        topNodes.initializeIfNeeded(lastContext, database, config, store);
+        walker.walk(steps, database, pendingVisits);
+    }
+
+    /**
+     * @return context of the ranking to be remembered in the module's context, i.e. the node its walker stands on and
+     * its top ranked nodes.
+     */
+    NodeRankContext getContext() {
+        return new NodeRankContext(walker.getCurrentNodeId(), topNodes.getTopNodeIds());
+    }
+
+    /**
+     * @return number of distinct nodes visited since the last flush.
+     */
+    int pendingNodes() {
+        return pendingVisits.size();
+    }
+
+    /**
+     * Write the visits counted since the last flush to the nodes. Must be called within a transaction.
+     *
+     * @param database to write to.
+     */
+    void flush(GraphDatabaseService database) {
+        if (pendingVisits.isEmpty()) {
+            return;
+        }
+
+        writeVisits(database, pendingVisits, store, decay, topNodes);
+        pendingVisits.clear();
+    }
+
+    /**
+     * Release the rank store.
+     */
+    void close() {
+        store.close();
+    }
+
+    /**
+     * Add counted visits to the ranks in the store, one write per node, and offer the nodes to the top ranked nodes.
+     * When ranks decay, the visits are weighted by the current multiplier of the {@link RankDecay}, otherwise they are
+     * added to the visit counts. Visits of nodes deleted since the last write are dropped, see
+     * {@link RankStore#clearDeleted()}. Must be called within a transaction.
+     *
+     * @param database to look up the visited nodes in.
+     * @param visits   to write.
+     * @param store    to write to.
+     * @param decay    of the ranks, <code>null</code> if they don't decay.
+     * @param topNodes to offer the written nodes to. Published once all nodes are written.
+     */
+    static void writeVisits(GraphDatabaseService database, VisitCounter visits, RankStore store, RankDecay decay, TopRankedNodes topNodes) {
+        long now = System.currentTimeMillis();
+        long generation = decay == null ? 0 : decay.generation(now);
+        double weight = decay == null ? 1 : decay.weight(now);
+        if (decay != null) {
+            topNodes.advanceGeneration(generation);
+        }
+
+        long[] deleted = store.clearDeleted();
+        visits.forEach((nodeId, count) -> {
+            if (Arrays.binarySearch(deleted, nodeId) >= 0) {
+                return;
+            }
+
+            Node node;
+            try {
+                node = database.getNodeById(nodeId);
+            } catch (NotFoundException e) {
+                LOG.debug("Node with ID %s was deleted before its rank could be written", nodeId);
+                return;
+            }
+
+            if (decay != null) {
+                double rankValue = decay.rank(node, generation) + count * weight;
+                decay.write(node, rankValue, generation);
+                topNodes.addNode(nodeId, rankValue);
+                return;
+            }
+
+            topNodes.addNode(nodeId, store.addVisits(node, count));
+        });
+
+        topNodes.publish();
+    }
+
+    TopRankedNodes getTopNodes() {
+        return topNodes;
+    }
+
+    /**
+     * @return cache of supernode relationships of the ranking's own, which must be invalidated by its
+     * {@link SupernodeCache#invalidator(String)}, <code>null</code> if it uses the module's or none.
+     */
+    SupernodeCache getOwnSupernodeCache() {
+        return supernodes;
+    }
+
+    NodeRankModuleConfiguration getConfiguration() {
+        return config;
+    }
+
+    RankStore getRankStore() {
+        return store;
+    }
+
+    /**
+     * @return decay of the ranks, <code>null</code> if they don't decay.
+     */
+    RankDecay getDecay() {
+        return decay;
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * A bounded cache of the relationships of supernodes, i.e. nodes with so many relationships that selecting one of them
+ * through the core API would stall a walker. Shared by all walkers of a module.
+ * <p/>
+ * The cache holds at most the configured total number of relationship IDs, and a single node at most a quarter of them,
+ * so that a handful of the largest supernodes don't keep evicting each other. Relationships of nodes with more are
+ * sampled when loaded, see {@link #maxEntryRelationships()}. When full, the least recently used nodes are evicted;
+ * recency is tracked approximately, so that hits never lock. Entries of nodes whose relationships change are
+ * invalidated by the {@link #invalidator(String)}, which must be registered with the database.
+ * <p/>
+ * The relationships of a node are loaded by one walker at a time, other walkers wait for them rather than loading them
+ * again.
+ */
+class SupernodeCache {
+
+    private static final int MAX_ENTRY_SHARE = 4;
+
+    private final int maxRelationships;
+    private final ConcurrentMap<Long, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Load> loading = new ConcurrentHashMap<>();
+    private final AtomicLong cachedRelationships = new AtomicLong();
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxRelationships maximum total number of relationship IDs to cache.
+     */
+    SupernodeCache(int maxRelationships) {
+        this.maxRelationships = maxRelationships;
+    }
+
+    /**
+     * @param nodeId ID of a supernode.
+     * @return cached relationships of the node, <code>null</code> if not cached.
+     */
+    Neighbourhood get(long nodeId) {
+        Neighbourhood result = cached(nodeId);
+
+        if (result == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the relationships of a supernode, loading and caching them if they aren't cached. While a walker loads the
+     * relationships of a node, other walkers asking for the same node wait for it. Relationships are not cached if the
+     * node was invalidated while they were being loaded, as they may be stale.
+     *
+     * @param nodeId ID of the supernode.
+     * @param loader of the relationships of the node, holding at most {@link #maxEntryRelationships()} of them.
+     * @return relationships of the node.
+     */
+    Neighbourhood get(long nodeId, LongFunction<Neighbourhood> loader) {
+        Neighbourhood result = cached(nodeId);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+
+        while (true) {
+            Load load = loading.computeIfAbsent(nodeId, id -> new Load());
+            synchronized (load) {
+                //finished by another walker in the meantime, look again
+                if (loading.get(nodeId) != load) {
+                    result = cached(nodeId);
+                    if (result != null) {
+                        hits.increment();
+                        return result;
+                    }
+                    continue;
+                }
+
+                try {
+                    result = cached(nodeId);
+                    if (result != null) {
+                        hits.increment();
+                        return result;
+                    }
+
+                    misses.increment();
+                    result = loader.apply(nodeId);
+
+                    Entry entry = store(nodeId, result);
+                    //invalidated while loading; if the invalidation missed the stored entry, remove it here
+                    if (entry != null && load.invalidated) {
+                        remove(nodeId, entry);
+                    }
+
+                    return result;
+                } finally {
+                    loading.remove(nodeId, load);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return maximum number of relationship IDs cached for a single node. Relationships of nodes with more must be
+     * sampled.
+     */
+    int maxEntryRelationships() {
+        return Math.max(1, maxRelationships / MAX_ENTRY_SHARE);
+    }
+
+    /**
+     * Cache the relationships of a supernode, evicting least recently used nodes if needed. Neighbourhoods larger
+     * than the whole cache are not cached.
+     *
+     * @param nodeId        ID of the supernode.
+     * @param neighbourhood its relationships.
+     */
+    void put(long nodeId, Neighbourhood neighbourhood) {
+        store(nodeId, neighbourhood);
+    }
+
+    private Neighbourhood cached(long nodeId) {
+        Entry entry = cache.get(nodeId);
+        if (entry == null) {
+            return null;
+        }
+
+        entry.lastAccess = System.nanoTime();
+        return entry.neighbourhood;
+    }
+
+    /**
+     * @return the stored entry, <code>null</code> if the neighbourhood is too large to be cached.
+     */
+    private Entry store(long nodeId, Neighbourhood neighbourhood) {
+        if (neighbourhood.size() > maxRelationships) {
+            return null;
+        }
+
+        Entry entry = new Entry(neighbourhood);
+        synchronized (evictionLock) {
+            Entry previous = cache.put(nodeId, entry);
+            if (previous != null) {
+                cachedRelationships.addAndGet(-previous.neighbourhood.size());
+            }
+            cachedRelationships.addAndGet(neighbourhood.size());
+
+            while (cachedRelationships.get() > maxRelationships) {
+                evictLeastRecentlyUsed(nodeId);
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Evict the entry that hasn't been used for the longest time. Stores are rare compared to hits, and every entry
+     * holds many relationships, so scanning the entries is cheap compared to loading them. Must be called holding the
+     * eviction lock.
+     *
+     * @param keep ID of the node just stored, not to be evicted.
+     */
+    private void evictLeastRecentlyUsed(long keep) {
+        Long eldest = null;
+        Entry eldestEntry = null;
+        for (Map.Entry<Long, Entry> candidate : cache.entrySet()) {
+            if (candidate.getKey() != keep && (eldestEntry == null || candidate.getValue().lastAccess < eldestEntry.lastAccess)) {
+                eldest = candidate.getKey();
+                eldestEntry = candidate.getValue();
+            }
+        }
+
+        if (eldest == null) {
+            return;
+        }
+
+        remove(eldest, eldestEntry);
+    }
+
+    private void remove(long nodeId, Entry entry) {
+        if (cache.remove(nodeId, entry)) {
+            cachedRelationships.addAndGet(-entry.neighbourhood.size());
+        }
+    }
+
+    /**
+     * Forget the relationships of a node, including relationships just being loaded. Other nodes are not affected.
+     *
+     * @param nodeId ID of the node.
+     */
+    void invalidate(long nodeId) {
+        Load load = loading.get(nodeId);
+        if (load != null) {
+            load.invalidated = true;
+        }
+
+        Entry removed = cache.get(nodeId);
+        if (removed != null) {
+            remove(nodeId, removed);
+        }
+    }
+
+    /**
+     * Record a selection that didn't go through the cache, because the node's degree was below the threshold.
+     */
+    void recordBypass() {
+        bypasses.increment();
+    }
+
+    /**
+     * @return number of selections served from the cache.
+     */
+    long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of selections on supernodes that had to load the node's relationships first.
+     */
+    long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of selections on nodes below the degree threshold.
+     */
+    long bypasses() {
+        return bypasses.sum();
+    }
+
+    /**
+     * @return number of nodes cached.
+     */
+    int size() {
+        return cache.size();
+    }
+
+    /**
+     * @param weightPropertyKey key of the relationship weight property, <code>null</code> for unweighted walks.
+     * @return handler that invalidates nodes whose relationships are created, deleted, or re-weighted.
+     */
+    TransactionEventHandler<long[]> invalidator(String weightPropertyKey) {
+        return new TransactionEventHandler.Adapter<long[]>() {
+            @Override
+            public long[] beforeCommit(TransactionData data) throws Exception {
+                Set<Long> changed = new HashSet<>();
+
+                for (Relationship relationship : data.createdRelationships()) {
+                    changed.add(relationship.getStartNode().getId());
+                    changed.add(relationship.getEndNode().getId());
+                }
+                for (Relationship relationship : data.deletedRelationships()) {
+                    changed.add(relationship.getStartNode().getId());
+                    changed.add(relationship.getEndNode().getId());
+                }
+
+                if (weightPropertyKey != null) {
+                    for (PropertyEntry<Relationship> entry : data.assignedRelationshipProperties()) {
+                        if (weightPropertyKey.equals(entry.key())) {
+                            changed.add(entry.entity().getStartNode().getId());
+                            changed.add(entry.entity().getEndNode().getId());
+                        }
+                    }
+                    for (PropertyEntry<Relationship> entry : data.removedRelationshipProperties()) {
+                        if (weightPropertyKey.equals(entry.key()) && !data.isDeleted(entry.entity())) {
+                            changed.add(entry.entity().getStartNode().getId());
+                            changed.add(entry.entity().getEndNode().getId());
+                        }
+                    }
+                }
+
+                if (changed.isEmpty()) {
+                    return null;
+                }
+
+                return changed.stream().mapToLong(Long::longValue).toArray();
+            }
+
+            @Override
+            public void afterCommit(TransactionData data, long[] nodeIds) {
+                if (nodeIds != null) {
+                    for (long nodeId : nodeIds) {
+                        invalidate(nodeId);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Cached relationships of a node with the time they were last used.
+     */
+    private static final class Entry {
+
+        private final Neighbourhood neighbourhood;
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(Neighbourhood neighbourhood) {
+            this.neighbourhood = neighbourhood;
+        }
+    }
+
+    /**
+     * Relationships of a node being loaded by a walker, which other walkers wait for.
+     */
+    private static final class Load {
+
+        private volatile boolean invalidated;
+    }
+
+    /**
+     * Relationships of a supernode a walker can follow, with an alias table (Vose's alias method) if walks are
+     * weighted, like the ones of a {@link GraphProjection}.
+     */
+    static final class Neighbourhood {
+
+        private final long[] relationshipIds;
+        private final float[] aliasProbabilities;
+        private final int[] aliases;
+
+        /**
+         * @param relationshipIds IDs of the relationships.
+         * @param weights         positive weights of the relationships in the same order, <code>null</code> for
+         *                        unweighted walks.
+         */
+        Neighbourhood(long[] relationshipIds, double[] weights) {
+            this.relationshipIds = relationshipIds;
+
+            if (weights == null || relationshipIds.length == 0) {
+                this.aliasProbabilities = null;
+                this.aliases = null;
+                return;
+            }
+
+            int degree = relationshipIds.length;
+            this.aliasProbabilities = new float[degree];
+            this.aliases = new int[degree];
+
+            double total = 0;
+            for (double weight : weights) {
+                total += weight;
+            }
+
+            double[] scaled = new double[degree];
+            int[] small = new int[degree];
+            int[] large = new int[degree];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int n = 0; n < degree; n++) {
+                scaled[n] = weights[n] * degree / total;
+                if (scaled[n] < 1.0) {
+                    small[smallCount++] = n;
+                } else {
+                    large[largeCount++] = n;
+                }
+            }
+
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+
+                aliasProbabilities[less] = (float) scaled[less];
+                aliases[less] = more;
+
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+
+            //what remains has the probability of 1, up to rounding errors
+            while (largeCount > 0) {
+                int n = large[--largeCount];
+                aliasProbabilities[n] = 1.0f;
+                aliases[n] = n;
+            }
+            while (smallCount > 0) {
+                int n = small[--smallCount];
+                aliasProbabilities[n] = 1.0f;
+                aliases[n] = n;
+            }
+        }
+
+        int size() {
+            return relationshipIds.length;
+        }
+
+        /**
+         * Select a relationship in constant time, uniformly or in proportion to its weight.
+         *
+         * @param random source of randomness.
+         * @return ID of the relationship, -1 if there are none.
+         */
+        long randomRelationshipId(Random random) {
+            if (relationshipIds.length == 0) {
+                return -1;
+            }
+
+            int position = random.nextInt(relationshipIds.length);
+            if (aliases == null || random.nextFloat() < aliasProbabilities[position]) {
+                return relationshipIds[position];
+            }
+
+            return relationshipIds[aliases[position]];
+        }
+    }
+}
@@ -17,46 +17,206 @@
 package com.graphaware.module.noderank;
 
 import com.graphaware.common.log.LoggerFactory;
-import com.graphaware.common.util.BoundedSortedList;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * A container for top ranked nodes.
+ * <p/>
+ * Node IDs and ranks are kept in a primitive min-heap of bounded size, with the lowest ranked node at the root, and a
+ * primitive index of node IDs to heap slots. Adding a node or updating its rank takes O(log k) time, where k is
+ * the maximum number of top ranked nodes, and neither allocates nor boxes.
+ * <p/>
+ * Nodes must be added by a single thread. Readers on other threads see the immutable {@link TopRankedSnapshot} made
+ * by the last {@link #publish()}, without locking and without contending with the writer.
  */
 public class TopRankedNodes {
 
     private static final Log LOG = LoggerFactory.getLogger(TopRankedNodes.class);
 
-    private BoundedSortedList<Node, Integer> topNodes;
+    private GraphDatabaseService database;
 
+    //min-heap
+    private long[] ids;
+    private double[] ranks;
+    private int size;
+
+    //nodes added as nodes rather than IDs, null elsewhere
+    private Node[] nodes;
+
+    //node ID -> heap slot
+    private NodePositions slots;
+
+    //generation the ranks are expressed in when they decay
+    private long generation;
+
+    private boolean changed;
+    private volatile TopRankedSnapshot snapshot = TopRankedSnapshot.EMPTY;
+
+    /**
+     * Get the top ranked nodes as of the last {@link #publish()}. Can be called by any thread, with or without a
+     * transaction. Nodes added by ID are looked up in a transaction of their own, nodes added as nodes are returned as
+     * they were added.
+     *
+     * @return nodes sorted by rank, highest first. Nodes added by ID that have been deleted in the meantime are left out.
+     */
     public List<Node> getTopNodes() {
-        if (topNodes == null) {
+        TopRankedSnapshot current = snapshot;
+        if (current.isEmpty()) {
             return Collections.emptyList();
         }
 
-        return topNodes.getItems();
+        List<Node> result = new ArrayList<>(current.size());
+        Transaction tx = null;
+        try {
+            for (int i = 0; i < current.size(); i++) {
+                Node node = current.node(i);
+                if (node == null) {
+                    if (tx == null) {
+                        tx = database.beginTx();
+                    }
+                    try {
+                        node = database.getNodeById(current.nodeId(i));
+                    } catch (NotFoundException e) {
+                        LOG.debug("Top ranked node with ID %s was deleted", current.nodeId(i));
+                        continue;
+                    }
+                }
+                result.add(node);
+            }
+
+            if (tx != null) {
+                tx.success();
+            }
+        } finally {
+            if (tx != null) {
+                tx.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Offer a node with its current rank and publish the result, so that it is visible through {@link #getTopNodes()}
+     * and {@link #getTopNodeIds()} straight away. Writers offering many nodes should use {@link #addNode(long, double)}
+     * and {@link #publish()} once per batch instead.
+     *
+     * @param node to offer.
+     * @param rank current rank of the node.
+     */
+    public void addNode(Node node, double rank) {
+        add(node.getId(), node, rank);
+        publish();
+    }
+
+    /**
+     * Offer a node with its current rank. If the node is already among the top ranked nodes, its rank is updated.
+     *
+     * @param nodeId ID of the node.
+     * @param rank   current rank of the node.
+     */
+    public void addNode(long nodeId, double rank) {
+        add(nodeId, null, rank);
+    }
+
+    private void add(long nodeId, Node node, double rank) {
+        if (ids == null) {
+            throw new IllegalStateException("Please initialize top ranked nodes first");
+        }
+
+        int slot = slots.get(nodeId);
+        if (slot >= 0) {
+            double previous = ranks[slot];
+            ranks[slot] = rank;
+            if (node != null) {
+                nodes[slot] = node;
+            }
+            if (rank < previous) {
+                siftUp(slot);
+            } else if (rank > previous) {
+                siftDown(slot);
+            }
+            changed = true;
+            return;
+        }
+
+        if (size < ids.length) {
+            ids[size] = nodeId;
+            ranks[size] = rank;
+            nodes[size] = node;
+            slots.put(nodeId, size);
+            siftUp(size++);
+            changed = true;
+            return;
+        }
+
+        if (size > 0 && rank > ranks[0]) {
+            slots.remove(ids[0]);
+            ids[0] = nodeId;
+            ranks[0] = rank;
+            nodes[0] = node;
+            slots.put(nodeId, 0);
+            siftDown(0);
+            changed = true;
+        }
     }
 
-    public void addNode(Node node, int rank) {
-        if (topNodes == null) {
+    /**
+     * Forget all nodes added so far, e.g. before adding the nodes of a new computation that ranks all nodes from
+     * scratch. Readers keep seeing the last published snapshot until the next {@link #publish()}. Must be called by
+     * the thread that adds nodes.
+     */
+    public void clear() {
+        if (ids == null) {
             throw new IllegalStateException("Please initialize top ranked nodes first");
         }
 
-        topNodes.add(node, rank);
+        size = 0;
+        Arrays.fill(nodes, null);
+        slots = new NodePositions(ids.length);
+        changed = true;
     }
 
     public void initializeIfNeeded(NodeRankContext context, GraphDatabaseService database, NodeRankModuleConfiguration config) {
-        if (topNodes != null) {
+        initializeIfNeeded(context, database, config, new PropertyRankStore(config.getRankPropertyKey()));
+    }
+
+    /**
+     * Initialize the top ranked nodes, unless already initialized, with the nodes remembered in the context and their
+     * ranks read from the given store.
+     *
+     * @param context  last context of the module, <code>null</code> if there is none.
+     * @param database to read ranks from.
+     * @param config   module configuration.
+     * @param store    the ranks are stored in.
+     */
+    public void initializeIfNeeded(NodeRankContext context, GraphDatabaseService database, NodeRankModuleConfiguration config, RankStore store) {
+        if (ids != null) {
             return;
         }
 
-        topNodes = new BoundedSortedList<>(config.getMaxTopRankNodes(), Collections.<Integer>reverseOrder());
+        this.database = database;
+
+        int capacity = config.getMaxTopRankNodes();
+        ids = new long[capacity];
+        ranks = new double[capacity];
+        nodes = new Node[capacity];
+
+        slots = new NodePositions(capacity);
+
+        RankDecay decay = RankDecay.forConfiguration(config, store);
+        if (decay != null) {
+            generation = decay.generation(System.currentTimeMillis());
+        }
 
         if (context == null) {
             return;
@@ -64,20 +224,137 @@ public class TopRankedNodes {
 
         for (long nodeId : context.getTopNodes()) {
             try {
-                topNodes.add(database.getNodeById(nodeId), (int) database.getNodeById(nodeId).getProperty(config.getRankPropertyKey(), 0));
+                Node node = database.getNodeById(nodeId);
+                double rank = decay == null ? store.getRank(node) : decay.rank(node, generation);
+                add(nodeId, node, rank);
             } catch (Exception e) {
                 LOG.warn("Exception while adding ranked node " + nodeId + " to the collection of top ranked nodes. Will ignore...", e);
             }
         }
+
+        publish();
     }
 
-    public Long[] getTopNodeIds() {
-        List<Long> result = new LinkedList<>();
+    /**
+     * Express the ranks of the top ranked nodes in a later generation of decayed ranks. Must be called by the thread
+     * that adds nodes, before adding nodes with ranks expressed in that generation.
+     *
+     * @param generation to express the ranks in.
+     * @see RankDecay
+     */
+    public void advanceGeneration(long generation) {
+        if (generation <= this.generation) {
+            return;
+        }
 
-        for (Node node : getTopNodes()) {
-            result.add(node.getId());
+        //scaling all ranks by the same factor keeps the heap ordered
+        for (int i = 0; i < size; i++) {
+            ranks[i] = RankDecay.rebase(ranks[i], this.generation, generation);
         }
 
-        return result.toArray(new Long[result.size()]);
+        this.generation = generation;
+        changed |= size > 0;
+    }
+
+    /**
+     * Make the nodes added so far visible to readers of {@link #getSnapshot()} and {@link #getTopNodes()}. Must be
+     * called by the thread that adds nodes, typically once per batch of added nodes.
+     */
+    public void publish() {
+        if (changed) {
+            snapshot = sort();
+            changed = false;
+        }
+    }
+
+    /**
+     * @return the top ranked nodes as of the last {@link #publish()}. Can be called by any thread.
+     */
+    public TopRankedSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get the IDs of the top ranked nodes as of the last {@link #publish()}, without sorting or copying them. Can be
+     * called by any thread.
+     *
+     * @return IDs of the top ranked nodes sorted by rank, highest first. The returned array is shared and must not be
+     * modified.
+     */
+    public long[] getTopNodeIds() {
+        return snapshot.nodeIds();
+    }
+
+    /**
+     * Heap-sort copies of the heap arrays, which already form a min-heap, so that the highest ranks end up first.
+     */
+    private TopRankedSnapshot sort() {
+        long[] sorted = Arrays.copyOf(ids, size);
+        double[] sortedRanks = Arrays.copyOf(ranks, size);
+        Node[] sortedNodes = Arrays.copyOf(nodes, size);
+
+        for (int end = size - 1; end > 0; end--) {
+            swap(sorted, sortedRanks, sortedNodes, 0, end);
+
+            int parent = 0;
+            int child;
+            while ((child = 2 * parent + 1) < end) {
+                if (child + 1 < end && sortedRanks[child + 1] < sortedRanks[child]) {
+                    child++;
+                }
+                if (sortedRanks[child] >= sortedRanks[parent]) {
+                    break;
+                }
+                swap(sorted, sortedRanks, sortedNodes, parent, child);
+                parent = child;
+            }
+        }
+
+        return new TopRankedSnapshot(sorted, sortedRanks, sortedNodes);
+    }
+
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (ranks[parent] <= ranks[slot]) {
+                break;
+            }
+            swapSlots(slot, parent);
+            slot = parent;
+        }
+    }
+
+    private void siftDown(int slot) {
+        int child;
+        while ((child = 2 * slot + 1) < size) {
+            if (child + 1 < size && ranks[child + 1] < ranks[child]) {
+                child++;
+            }
+            if (ranks[child] >= ranks[slot]) {
+                break;
+            }
+            swapSlots(slot, child);
+            slot = child;
+        }
+    }
+
+    private void swapSlots(int first, int second) {
+        swap(ids, ranks, nodes, first, second);
+        slots.put(ids[first], first);
+        slots.put(ids[second], second);
+    }
+
+    private static void swap(long[] ids, double[] ranks, Node[] nodes, int first, int second) {
+        long id = ids[first];
+        ids[first] = ids[second];
+        ids[second] = id;
+
+        Node node = nodes[first];
+        nodes[first] = nodes[second];
+        nodes[second] = node;
+
+        double rank = ranks[first];
+        ranks[first] = ranks[second];
+        ranks[second] = rank;
     }
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * An immutable view of {@link TopRankedNodes} at a point in time: IDs of the top ranked nodes and their ranks, sorted
+ * by rank, highest first. Safe to read from any thread without a transaction.
+ */
+public final class TopRankedSnapshot {
+
+    static final TopRankedSnapshot EMPTY = new TopRankedSnapshot(new long[0], new double[0]);
+
+    private final long[] nodeIds;
+    private final double[] ranks;
+    private final Node[] nodes;
+
+    /**
+     * Create a new snapshot. The arrays are not copied and must not be modified afterwards.
+     *
+     * @param nodeIds IDs of top ranked nodes, highest ranked first.
+     * @param ranks   ranks of the nodes, at the same positions.
+     */
+    TopRankedSnapshot(long[] nodeIds, double[] ranks) {
+        this(nodeIds, ranks, null);
+    }
+
+    /**
+     * Create a new snapshot. The arrays are not copied and must not be modified afterwards.
+     *
+     * @param nodeIds IDs of top ranked nodes, highest ranked first.
+     * @param ranks   ranks of the nodes, at the same positions.
+     * @param nodes   the nodes at the same positions, where they were added as nodes rather than IDs, otherwise
+     *                <code>null</code>. May be <code>null</code> altogether.
+     */
+    TopRankedSnapshot(long[] nodeIds, double[] ranks, Node[] nodes) {
+        if (nodeIds.length != ranks.length || (nodes != null && nodes.length != nodeIds.length)) {
+            throw new IllegalArgumentException("There must be exactly one rank per node");
+        }
+
+        this.nodeIds = nodeIds;
+        this.ranks = ranks;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return number of nodes in the snapshot.
+     */
+    public int size() {
+        return nodeIds.length;
+    }
+
+    public boolean isEmpty() {
+        return nodeIds.length == 0;
+    }
+
+    /**
+     * @param position of the node, 0 being the highest ranked.
+     * @return ID of the node.
+     */
+    public long nodeId(int position) {
+        return nodeIds[position];
+    }
+
+    /**
+     * @param position of the node, 0 being the highest ranked.
+     * @return rank of the node.
+     */
+    public double rank(int position) {
+        return ranks[position];
+    }
+
+    /**
+     * @param position of the node, 0 being the highest ranked.
+     * @return the node if it was added as a node, <code>null</code> if it was added by ID.
+     */
+    Node node(int position) {
+        return nodes == null ? null : nodes[position];
+    }
+
+    /**
+     * @return IDs of the nodes, highest ranked first. The array is shared and must not be modified.
+     */
+    long[] nodeIds() {
+        return nodeIds;
+    }
+}
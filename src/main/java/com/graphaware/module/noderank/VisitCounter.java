@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import java.util.Arrays;
+
+/**
+ * A map of node IDs to visit counts backed by primitive arrays with open addressing, so that counting a visit never
+ * allocates or boxes. Node IDs must not be negative.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class VisitCounter {
+
+    private static final long FREE = -1L;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Visitor of the counts held by a {@link VisitCounter}.
+     */
+    public interface Visitor {
+
+        /**
+         * Visit a single count.
+         *
+         * @param nodeId ID of the node.
+         * @param count  number of visits of the node.
+         */
+        void visit(long nodeId, long count);
+    }
+
+    public VisitCounter() {
+        this(16);
+    }
+
+    /**
+     * Create a new counter.
+     *
+     * @param expectedSize number of distinct nodes the counter is expected to hold before it has to grow.
+     */
+    public VisitCounter(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Record a single visit of a node.
+     *
+     * @param nodeId ID of the visited node.
+     */
+    public void increment(long nodeId) {
+        add(nodeId, 1);
+    }
+
+    /**
+     * Add to the count of a node.
+     *
+     * @param nodeId ID of the node.
+     * @param delta  to add.
+     */
+    public void add(long nodeId, long delta) {
+        if (nodeId < 0) {
+            throw new IllegalArgumentException("Node ID must not be negative");
+        }
+
+        int slot = slot(nodeId);
+        if (keys[slot] == nodeId) {
+            values[slot] += delta;
+            return;
+        }
+
+        keys[slot] = nodeId;
+        values[slot] = delta;
+
+        if (++size >= resizeAt) {
+            allocateAndRehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Get the count of a node.
+     *
+     * @param nodeId ID of the node.
+     * @return count, 0 if the node has not been counted.
+     */
+    public long get(long nodeId) {
+        int slot = slot(nodeId);
+        return keys[slot] == nodeId ? values[slot] : 0;
+    }
+
+    /**
+     * @return number of distinct nodes counted.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visit all counts in no particular order.
+     *
+     * @param visitor to call for every counted node.
+     */
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Forget all counts, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    private int slot(long nodeId) {
+        int slot = mix(nodeId) & mask;
+        while (keys[slot] != FREE && keys[slot] != nodeId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocateAndRehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of {@link RandomWalker}s that walk the graph independently of each other, each in its own thread and
+ * transaction. Every walker counts visits in its own {@link VisitCounter}, so walkers never contend with each other;
+ * the counts are merged by the caller's thread once all walkers are done.
+ */
+class WalkerPool {
+
+    private static final Log LOG = LoggerFactory.getLogger(WalkerPool.class);
+
+    private final RandomWalker[] walkers;
+    private final VisitCounter[] visits;
+    private final Future<?>[] running;
+    private final ExecutorService executor;
+
+    /**
+     * Create a new pool.
+     *
+     * @param moduleId      ID of the module the pool belongs to, used for naming threads.
+     * @param size          number of walkers.
+     * @param config        module configuration.
+     * @param supernodes    cache of supernode relationships, <code>null</code> if supernodes aren't treated specially.
+     * @param eligibleNodes IDs of nodes eligible for hyperjumps, <code>null</code> to select them by probing.
+     * @param statistics    to record walks in.
+     */
+    WalkerPool(String moduleId, int size, NodeRankModuleConfiguration config, SupernodeCache supernodes, EligibleNodes eligibleNodes, NodeRankStatistics statistics) {
+        this.walkers = new RandomWalker[size];
+        this.visits = new VisitCounter[size];
+        this.running = new Future<?>[size];
+
+        for (int i = 0; i < size; i++) {
+            walkers[i] = new RandomWalker(config, supernodes, eligibleNodes, statistics);
+            visits[i] = new VisitCounter();
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(size, runnable -> {
+            Thread thread = new Thread(runnable, "NodeRank-" + moduleId + "-walker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Let all walkers take a number of steps. Returns immediately, call {@link #awaitAndMerge(VisitCounter)} to wait
+     * for the walkers to finish.
+     *
+     * @param steps    number of steps each walker should take.
+     * @param database to walk.
+     */
+    void startWalking(int steps, GraphDatabaseService database) {
+        for (int i = 0; i < walkers.length; i++) {
+            RandomWalker walker = walkers[i];
+            VisitCounter counter = visits[i];
+
+            running[i] = executor.submit(() -> {
+                try (Transaction tx = database.beginTx()) {
+                    walker.walk(steps, database, counter);
+                    tx.success();
+                }
+            });
+        }
+    }
+
+    /**
+     * Wait for all walkers started by {@link #startWalking(int, GraphDatabaseService)} and add the visits they counted
+     * to the given counter.
+     *
+     * @param target to add visits to.
+     */
+    void awaitAndMerge(VisitCounter target) {
+        for (int i = 0; i < walkers.length; i++) {
+            if (running[i] == null) {
+                continue;
+            }
+
+            try {
+                running[i].get();
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for NodeRank walkers, visits of unfinished walkers will be ignored");
+                discardUnfinished(i);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOG.warn("NodeRank walker failed, its visits will be ignored", e.getCause());
+                visits[i].clear();
+            }
+
+            running[i] = null;
+
+            visits[i].forEach(target::add);
+            visits[i].clear();
+        }
+    }
+
+    /**
+     * Wait for walkers that may still be walking, so that none of them counts visits or moves once the next walk
+     * starts, and forget their visits. Walks are bounded, so this takes at most as long as a walk. Walkers that never
+     * started because the pool was shut down aren't waited for.
+     *
+     * @param from index of the first walker that may still be walking.
+     */
+    private void discardUnfinished(int from) {
+        for (int i = from; i < walkers.length; i++) {
+            if (running[i] == null) {
+                continue;
+            }
+
+            boolean finished = false;
+            while (!finished) {
+                try {
+                    running[i].get(100, TimeUnit.MILLISECONDS);
+                    finished = true;
+                } catch (InterruptedException e) {
+                    //keep waiting, the caller restores the interrupt
+                } catch (TimeoutException e) {
+                    finished = executor.isTerminated();
+                } catch (ExecutionException | CancellationException e) {
+                    finished = true;
+                }
+            }
+
+            running[i] = null;
+            visits[i].clear();
+        }
+    }
+
+    /**
+     * Let all walkers walk the given projection rather than the database.
+     *
+     * @param projection to walk, <code>null</code> to walk the database.
+     */
+    void useProjection(GraphProjection projection) {
+        for (RandomWalker walker : walkers) {
+            walker.useProjection(projection);
+        }
+    }
+
+    /**
+     * Place the walkers on nodes. Must not be called while the walkers are walking.
+     *
+     * @param nodeIds IDs of the nodes to place the walkers on, in the order returned by {@link #getCurrentNodeIds()}.
+     *                Walkers without a node start from a random one.
+     */
+    void moveTo(long[] nodeIds) {
+        for (int i = 0; i < walkers.length && i < nodeIds.length; i++) {
+            walkers[i].moveTo(nodeIds[i]);
+        }
+    }
+
+    /**
+     * @return IDs of the nodes the walkers stand on. Must not be called while the walkers are walking.
+     */
+    long[] getCurrentNodeIds() {
+        long[] result = new long[walkers.length];
+        for (int i = 0; i < walkers.length; i++) {
+            result[i] = walkers[i].getCurrentNodeId();
+        }
+        return result;
+    }
+
+    /**
+     * Stop all walker threads.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import com.graphaware.runtime.walk.RandomRelationshipSelector;
+import com.graphaware.runtime.walk.RelationshipSelector;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.Random;
+
+/**
+ * {@link RelationshipSelector} that selects a relationship included by a {@link RelationshipInclusionPolicy} with the
+ * probability proportional to the relationship's weight, read from a property.
+ * <p/>
+ * The selection is a single pass of weighted reservoir sampling over the node's relationships, i.e. it takes time
+ * linear in the node's degree. It is therefore only used for nodes below the supernode threshold, which defaults to
+ * {@link NodeRankModuleConfiguration#WEIGHTED_SUPERNODE_THRESHOLD} for weighted walks; relationships of nodes with more
+ * are selected in constant time from alias tables cached in the {@link SupernodeCache}, see
+ * {@link DegreeAwareRelationshipSelector}.
+ */
+class WeightedRelationshipSelector implements RelationshipSelector {
+
+    private final RelationshipInclusionPolicy relationshipInclusionPolicy;
+    private final String weightPropertyKey;
+    private final Random random = new Random();
+
+    WeightedRelationshipSelector(RelationshipInclusionPolicy relationshipInclusionPolicy, String weightPropertyKey) {
+        this.relationshipInclusionPolicy = relationshipInclusionPolicy;
+        this.weightPropertyKey = weightPropertyKey;
+    }
+
+    /**
+     * Create a selector appropriate for the configuration.
+     *
+     * @param config module configuration.
+     * @return weighted selector if a weight property key is configured, uniform selector otherwise.
+     */
+    static RelationshipSelector forConfiguration(NodeRankModuleConfiguration config) {
+        if (config.getWeightPropertyKey() == null) {
+            return new RandomRelationshipSelector(config.getRelationshipInclusionPolicy());
+        }
+
+        return new WeightedRelationshipSelector(config.getRelationshipInclusionPolicy(), config.getWeightPropertyKey());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Relationship selectRelationship(Node node) {
+        Relationship result = null;
+        double totalWeight = 0;
+
+        for (Relationship relationship : node.getRelationships()) {
+            if (!relationshipInclusionPolicy.include(relationship, node)) {
+                continue;
+            }
+
+            double weight = weight(relationship, weightPropertyKey);
+            if (weight <= 0) {
+                continue;
+            }
+
+            totalWeight += weight;
+            if (random.nextDouble() * totalWeight < weight) {
+                result = relationship;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Read the weight of a relationship.
+     *
+     * @param relationship      to read the weight of.
+     * @param weightPropertyKey key of the weight property.
+     * @return weight, 1 if the relationship has no numeric weight property, 0 if the weight is negative or not a number.
+     */
+    static double weight(Relationship relationship, String weightPropertyKey) {
+        Object value = relationship.getProperty(weightPropertyKey, null);
+        if (!(value instanceof Number)) {
+            return 1.0;
+        }
+
+        double weight = ((Number) value).doubleValue();
+        return weight > 0 ? weight : 0;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Random;
+
+/**
+ * Generator of graphs for benchmarks. Every node has the label {@link #NODE}, a fraction of them also {@link #RANKED}.
+ * Every node has the given number of outgoing relationships, whose end nodes are either chosen uniformly at random,
+ * or such that the in-degree distribution is heavy-tailed, with a few nodes attracting most relationships.
+ */
+final class BenchmarkGraphs {
+
+    static final Label NODE = Label.label("Node");
+    static final Label RANKED = Label.label("Ranked");
+    static final RelationshipType LINK = RelationshipType.withName("LINK");
+
+    static final String UNIFORM = "uniform";
+    static final String POWER_LAW = "powerlaw";
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private BenchmarkGraphs() {
+    }
+
+    /**
+     * Create an impermanent database with a generated graph.
+     *
+     * @param nodes          number of nodes.
+     * @param degree         number of outgoing relationships of every node.
+     * @param distribution   {@link #UNIFORM} or {@link #POWER_LAW} distribution of in-degrees.
+     * @param rankedFraction fraction of nodes labelled {@link #RANKED}.
+     * @return database, to be shut down by the caller.
+     */
+    static GraphDatabaseService create(int nodes, int degree, String distribution, double rankedFraction) {
+        if (!UNIFORM.equals(distribution) && !POWER_LAW.equals(distribution)) {
+            throw new IllegalArgumentException("Unknown distribution " + distribution);
+        }
+
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        Random random = new Random(42);
+        long[] ids = new long[nodes];
+
+        for (int batch = 0; batch < nodes; batch += BATCH_SIZE) {
+            try (Transaction tx = database.beginTx()) {
+                for (int i = batch; i < Math.min(nodes, batch + BATCH_SIZE); i++) {
+                    Node node = database.createNode(NODE);
+                    if (random.nextDouble() < rankedFraction) {
+                        node.addLabel(RANKED);
+                    }
+                    ids[i] = node.getId();
+                }
+                tx.success();
+            }
+        }
+
+        for (int batch = 0; batch < nodes; batch += BATCH_SIZE / Math.max(1, degree)) {
+            try (Transaction tx = database.beginTx()) {
+                for (int i = batch; i < Math.min(nodes, batch + BATCH_SIZE / Math.max(1, degree)); i++) {
+                    Node start = database.getNodeById(ids[i]);
+                    for (int j = 0; j < degree; j++) {
+                        start.createRelationshipTo(database.getNodeById(ids[target(random, nodes, distribution)]), LINK);
+                    }
+                }
+                tx.success();
+            }
+        }
+
+        return database;
+    }
+
+    private static int target(Random random, int nodes, String distribution) {
+        if (UNIFORM.equals(distribution)) {
+            return random.nextInt(nodes);
+        }
+
+        //the cube of a uniform variable makes low indices much more likely
+        double u = random.nextDouble();
+        return (int) (nodes * u * u * u);
+    }
+}
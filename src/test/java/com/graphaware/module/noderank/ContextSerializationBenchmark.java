@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.serialize.Serializer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the serialization of {@link NodeRankContext}, which the runtime performs after every invocation of the
+ * module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ContextSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int topNodes;
+
+    @Param({"0", "8"})
+    private int walkers;
+
+    private NodeRankContext context;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+
+        long[] topNodeIds = new long[topNodes];
+        for (int i = 0; i < topNodes; i++) {
+            topNodeIds[i] = random.nextInt(100_000_000);
+        }
+
+        long[] walkerNodeIds = new long[walkers];
+        for (int i = 0; i < walkers; i++) {
+            walkerNodeIds[i] = random.nextInt(100_000_000);
+        }
+
+        context = new NodeRankContext(1L, topNodeIds, walkerNodeIds);
+        serialized = Serializer.toByteArray(context);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return Serializer.toByteArray(new NodeRankContext(context.getNodeId(), context.getTopNodes(), context.getWalkerNodeIds()));
+    }
+
+    @Benchmark
+    public long[] deserialize() {
+        NodeRankContext result = Serializer.fromByteArray(serialized);
+        return result.getTopNodes();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link ConvergenceTracker}.
+ */
+public class ConvergenceTrackerTest extends EmbeddedDatabaseIntegrationTest {
+
+    private static final TopRankedSnapshot FIRST = new TopRankedSnapshot(new long[]{1, 2, 3, 4}, new double[]{40, 30, 20, 10});
+    private static final TopRankedSnapshot REORDERED = new TopRankedSnapshot(new long[]{2, 1, 4, 3}, new double[]{41, 40, 21, 20});
+    private static final TopRankedSnapshot CHANGED = new TopRankedSnapshot(new long[]{2, 1, 5, 6}, new double[]{42, 41, 30, 25});
+
+    @Test
+    public void similarityShouldIgnoreOrder() {
+        assertEquals(1.0, ConvergenceTracker.similarity(FIRST.nodeIds(), REORDERED.nodeIds()), 0);
+        assertEquals(0.5, ConvergenceTracker.similarity(REORDERED.nodeIds(), CHANGED.nodeIds()), 0);
+        assertEquals(0.5, ConvergenceTracker.similarity(new long[]{1, 2}, new long[]{1, 2, 3, 4}), 0);
+        assertEquals(1.0, ConvergenceTracker.similarity(new long[0], new long[0]), 0);
+    }
+
+    @Test
+    public void backoffShouldGrowWhileStableAndResetOnChange() {
+        ConvergenceTracker tracker = new ConvergenceTracker(0.9, 5000, 10);
+
+        assertEquals(0, tracker.check(FIRST));
+        assertEquals(0, tracker.check(REORDERED));
+        assertEquals(0, tracker.check(FIRST));
+        assertFalse(tracker.isConverged());
+
+        assertEquals(1000, tracker.check(REORDERED));
+        assertTrue(tracker.isConverged());
+        assertEquals(2000, tracker.check(REORDERED));
+        assertEquals(4000, tracker.check(REORDERED));
+        assertEquals(5000, tracker.check(REORDERED));
+        assertEquals(1.0, tracker.getSimilarity(), 0);
+
+        assertEquals(0, tracker.check(CHANGED));
+        assertEquals(0.5, tracker.getSimilarity(), 0);
+        assertFalse(tracker.isConverged());
+    }
+
+    @Test
+    public void backoffShouldResetAfterGraphChanges() {
+        ConvergenceTracker tracker = new ConvergenceTracker(0.9, 5000, 10);
+        TransactionEventHandler<Void> counter = tracker.changeCounter();
+        getDatabase().registerTransactionEventHandler(counter);
+
+        for (int i = 0; i < 4; i++) {
+            tracker.check(FIRST);
+        }
+        assertEquals(1000, tracker.getBackoff());
+
+        getDatabase().execute("UNWIND range(1, 5) AS i CREATE (:Node)-[:R]->(:Node)");
+        assertEquals(0, tracker.check(FIRST));
+
+        getDatabase().execute("CREATE (:Node)");
+        assertEquals(0, tracker.check(FIRST));
+        assertEquals(0, tracker.check(FIRST));
+        assertEquals(1000, tracker.check(FIRST));
+
+        getDatabase().unregisterTransactionEventHandler(counter);
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.runtime.walk.RelationshipSelector;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link DegreeAwareRelationshipSelector} and {@link SupernodeCache}.
+ */
+public class DegreeAwareRelationshipSelectorTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void supernodeRelationshipsShouldBeSelectedFromCache() {
+        getDatabase().execute("CREATE (hub:Hub) WITH hub UNWIND range(1, 100) AS i CREATE (hub)-[:R]->(:Leaf)-[:R]->(:Leaf)");
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration().withSupernodeThreshold(50);
+        SupernodeCache cache = new SupernodeCache(config.getSupernodeCacheSize());
+        RelationshipSelector selector = DegreeAwareRelationshipSelector.forConfiguration(config, cache);
+
+        TransactionEventHandler<long[]> invalidator = cache.invalidator(null);
+        getDatabase().registerTransactionEventHandler(invalidator);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node hub = getDatabase().findNodes(Label.label("Hub")).next();
+            Set<Long> selected = new HashSet<>();
+
+            for (int i = 0; i < 2000; i++) {
+                Relationship relationship = selector.selectRelationship(hub);
+                assertEquals(hub, relationship.getStartNode());
+                selected.add(relationship.getId());
+            }
+
+            assertEquals(100, selected.size());
+            assertEquals(1, cache.misses());
+            assertEquals(1999, cache.hits());
+
+            Node leaf = hub.getRelationships().iterator().next().getEndNode();
+            assertNotNull(selector.selectRelationship(leaf));
+            assertEquals(1, cache.bypasses());
+
+            tx.success();
+        }
+
+        getDatabase().execute("MATCH (hub:Hub)-[r]->() WITH r LIMIT 1 DELETE r");
+        assertEquals(0, cache.size());
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node hub = getDatabase().findNodes(Label.label("Hub")).next();
+            selector.selectRelationship(hub);
+            assertEquals(2, cache.misses());
+            tx.success();
+        }
+
+        getDatabase().unregisterTransactionEventHandler(invalidator);
+    }
+
+    @Test
+    public void supernodesLargerThanCacheShouldBeSampled() {
+        getDatabase().execute("CREATE (hub:Hub) WITH hub UNWIND range(1, 100) AS i CREATE (hub)-[:R {weight: i}]->(:Leaf)");
+
+        for (String weightPropertyKey : new String[]{null, "weight"}) {
+            NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration()
+                    .withSupernodeThreshold(50)
+                    .withSupernodeCacheSize(40)
+                    .withWeightPropertyKey(weightPropertyKey);
+            SupernodeCache cache = new SupernodeCache(config.getSupernodeCacheSize());
+            RelationshipSelector selector = DegreeAwareRelationshipSelector.forConfiguration(config, cache);
+
+            try (Transaction tx = getDatabase().beginTx()) {
+                Node hub = getDatabase().findNodes(Label.label("Hub")).next();
+                Set<Long> selected = new HashSet<>();
+
+                for (int i = 0; i < 1000; i++) {
+                    Relationship relationship = selector.selectRelationship(hub);
+                    assertEquals(hub, relationship.getStartNode());
+                    selected.add(relationship.getId());
+                }
+
+                assertEquals(10, cache.maxEntryRelationships());
+                assertTrue(selected.size() <= 10);
+                assertEquals(1, cache.misses());
+                assertEquals(999, cache.hits());
+                assertEquals(1, cache.size());
+
+                tx.success();
+            }
+        }
+    }
+
+    @Test
+    public void cacheShouldEvictLeastRecentlyUsedNodes() {
+        SupernodeCache cache = new SupernodeCache(10);
+
+        cache.put(1, new SupernodeCache.Neighbourhood(new long[4], null));
+        cache.put(2, new SupernodeCache.Neighbourhood(new long[4], null));
+        assertNotNull(cache.get(1));
+        cache.put(3, new SupernodeCache.Neighbourhood(new long[4], null));
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+
+        cache.put(4, new SupernodeCache.Neighbourhood(new long[11], null));
+        assertNull(cache.get(4));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void weightedWalksShouldSelectFromCachedAliasTablesByDefault() {
+        getDatabase().execute("CREATE (hub:Hub)-[:R {weight: 9900}]->(:Heavy) WITH hub UNWIND range(1, 99) AS i CREATE (hub)-[:R {weight: 1}]->(:Leaf)");
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration().withWeightPropertyKey("weight");
+        assertEquals(NodeRankModuleConfiguration.WEIGHTED_SUPERNODE_THRESHOLD, config.getEffectiveSupernodeThreshold());
+
+        SupernodeCache cache = new SupernodeCache(config.getSupernodeCacheSize());
+        RelationshipSelector selector = DegreeAwareRelationshipSelector.forConfiguration(config, cache);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node hub = getDatabase().findNodes(Label.label("Hub")).next();
+
+            int heavy = 0;
+            for (int i = 0; i < 2000; i++) {
+                if (selector.selectRelationship(hub).getEndNode().hasLabel(Label.label("Heavy"))) {
+                    heavy++;
+                }
+            }
+
+            assertEquals(1, cache.misses());
+            assertEquals(1999, cache.hits());
+            assertTrue(heavy > 800 && heavy < 1200);
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void onlyInvalidationOfTheLoadedNodeShouldPreventCaching() {
+        SupernodeCache cache = new SupernodeCache(10);
+
+        cache.get(1, nodeId -> {
+            cache.invalidate(2);
+            return new SupernodeCache.Neighbourhood(new long[4], null);
+        });
+        assertNotNull(cache.get(1));
+
+        cache.get(3, nodeId -> {
+            cache.invalidate(3);
+            return new SupernodeCache.Neighbourhood(new long[4], null);
+        });
+        assertNull(cache.get(3));
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.runtime.config.function.StringToNodeInclusionPolicy;
+import com.graphaware.runtime.walk.RandomNodeSelector;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link EligibleNodes}, {@link EligibleNodeSelector} and {@link EligibleNodesUpdater}.
+ */
+public class EligibleNodeSelectorTest extends EmbeddedDatabaseIntegrationTest {
+
+    private static final Label PERSON = Label.label("Person");
+
+    @Test
+    public void onlyEligibleNodesShouldBeSelected() {
+        getDatabase().execute("UNWIND range(1, 1000) AS i CREATE (n:Thing {id:i}) WITH n WHERE n.id % 100 = 0 SET n:Person");
+
+        NodeInclusionPolicy policy = StringToNodeInclusionPolicy.getInstance().apply("hasLabel('Person')");
+        EligibleNodes eligibleNodes = new EligibleNodes();
+        EligibleNodeSelector selector = new EligibleNodeSelector(eligibleNodes, policy, new RandomNodeSelector(policy));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            eligibleNodes.load(getDatabase(), policy);
+            assertEquals(10, eligibleNodes.size());
+
+            Set<Long> selected = new HashSet<>();
+            for (int i = 0; i < 1000; i++) {
+                Node node = selector.selectNode(getDatabase());
+                assertTrue(node.hasLabel(PERSON));
+                selected.add(node.getId());
+            }
+            assertEquals(10, selected.size());
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void changesShouldBeMergedIntoSortedIds() {
+        EligibleNodes eligibleNodes = new EligibleNodes();
+
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            ids.add(i * 3);
+        }
+        Collections.shuffle(ids, new Random(42));
+
+        for (long id : ids) {
+            eligibleNodes.add(id);
+        }
+        for (long id : ids) {
+            if (id % 2 == 0) {
+                eligibleNodes.remove(id);
+            }
+        }
+        eligibleNodes.add(3);
+        eligibleNodes.add(1);
+
+        assertEquals(501, eligibleNodes.size());
+        for (long i = 0; i < 3000; i++) {
+            assertEquals(i == 1 || (i % 3 == 0 && i % 2 == 1), eligibleNodes.contains(i));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(eligibleNodes.contains(eligibleNodes.randomNodeId(random)));
+        }
+
+        assertTrue(eligibleNodes.sizeInBytes() > 0);
+        eligibleNodes.release();
+        assertEquals(0, eligibleNodes.size());
+        assertEquals(-1, eligibleNodes.randomNodeId(random));
+    }
+
+    @Test
+    public void committedChangesShouldBeApplied() {
+        getDatabase().execute("CREATE (:Person {name:'a'}), (:Person {name:'b'}), (:Thing {name:'c'})");
+
+        NodeInclusionPolicy policy = StringToNodeInclusionPolicy.getInstance().apply("hasLabel('Person')");
+        EligibleNodes eligibleNodes = new EligibleNodes();
+        EligibleNodesUpdater updater = new EligibleNodesUpdater(policy, Collections.emptySet(), eligibleNodes::apply);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            eligibleNodes.load(getDatabase(), policy);
+            tx.success();
+        }
+        assertEquals(2, eligibleNodes.size());
+
+        getDatabase().registerTransactionEventHandler(updater);
+        getDatabase().execute("MATCH (c {name:'c'}) SET c:Person");
+        getDatabase().execute("MATCH (a {name:'a'}) REMOVE a:Person");
+        getDatabase().execute("MATCH (b {name:'b'}) DETACH DELETE b");
+        getDatabase().execute("CREATE (:Person {name:'d'}), (:Thing {name:'e'})");
+        getDatabase().unregisterTransactionEventHandler(updater);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Set<String> names = new HashSet<>();
+            for (int i = 0; i < 100; i++) {
+                names.add((String) getDatabase().getNodeById(eligibleNodes.randomNodeId(new Random(i))).getProperty("name"));
+            }
+            assertEquals(2, eligibleNodes.size());
+            assertEquals(new HashSet<>(Arrays.asList("c", "d")), names);
+            tx.success();
+        }
+    }
+
+    @Test
+    public void changesOfWrittenPropertiesShouldBeIgnored() {
+        getDatabase().execute("CREATE (:Person {name:'a'}), (:Person {name:'b'})");
+
+        NodeInclusionPolicy policy = StringToNodeInclusionPolicy.getInstance().apply("hasLabel('Person')");
+        List<ProjectionChanges> committed = new ArrayList<>();
+        EligibleNodesUpdater updater = new EligibleNodesUpdater(policy, new HashSet<>(Arrays.asList("nodeRank", "nodeRankGeneration")), committed::add);
+
+        getDatabase().registerTransactionEventHandler(updater);
+        getDatabase().execute("MATCH (p:Person) SET p.nodeRank = 5, p.nodeRankGeneration = 0");
+        getDatabase().execute("MATCH (p:Person) REMOVE p.nodeRank");
+        assertTrue(committed.isEmpty());
+
+        getDatabase().execute("MATCH (p:Person {name:'a'}) SET p.age = 30");
+        getDatabase().unregisterTransactionEventHandler(updater);
+
+        assertEquals(1, committed.size());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.fluent.IncludeNodes;
+import com.graphaware.runtime.policy.all.IncludeAllBusinessNodes;
+import com.graphaware.runtime.policy.all.IncludeAllBusinessRelationships;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class GraphProjectionTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void projectionShouldHonourInclusionPolicies() {
+        getDatabase().execute("CREATE (p:Person {name:'Michal'})-[:FRIEND_OF]->(:Person {name:'Daniela'}), (p)-[:OWNS]->(:Car)");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            GraphProjection graph = GraphProjection.load(getDatabase(), IncludeNodes.all().with("Person"), IncludeAllBusinessRelationships.getInstance());
+
+            assertEquals(2, graph.nodeCount());
+            assertEquals(2, graph.edgeCount());
+
+            Node michal = getDatabase().findNode(Label.label("Person"), "name", "Michal");
+            int index = graph.indexOf(michal.getId());
+            assertEquals(1, graph.degree(index));
+            assertEquals("Daniela", getDatabase().getNodeById(graph.nodeId(graph.neighbour(index, 0))).getProperty("name"));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldSampleOnlyNeighbours() {
+        //0 -> 1, 2; 1 -> 0; 2 has no neighbours
+        GraphProjection graph = new GraphProjection(new long[]{3, 7, 10}, new int[]{0, 2, 3, 3}, new int[]{1, 2, 0});
+        Random random = new Random();
+
+        boolean[] seen = new boolean[3];
+        for (int i = 0; i < 100; i++) {
+            seen[graph.randomNeighbour(0, random)] = true;
+            assertEquals(0, graph.randomNeighbour(1, random));
+            assertEquals(-1, graph.randomNeighbour(2, random));
+        }
+
+        assertFalse(seen[0]);
+        assertTrue(seen[1]);
+        assertTrue(seen[2]);
+    }
+
+    @Test
+    public void shouldFindIndicesOfNodeIds() {
+        GraphProjection graph = new GraphProjection(new long[]{3, 7, 10}, new int[]{0, 0, 0, 0}, new int[0]);
+
+        assertEquals(0, graph.indexOf(3));
+        assertEquals(1, graph.indexOf(7));
+        assertEquals(2, graph.indexOf(10));
+        assertTrue(graph.indexOf(5) < 0);
+        assertTrue(graph.indexOf(11) < 0);
+        assertEquals(10, graph.nodeId(2));
+    }
+
+    @Test
+    public void shouldSampleNeighboursProportionallyToWeights() {
+        //0 -> 1 (weight 1), 2 (weight 3), 3 (weight 0.5); 1 -> 0 (weight 2)
+        GraphProjection graph = new GraphProjection(new long[]{3, 7, 10, 12}, new int[]{0, 3, 4, 4, 4}, new int[]{1, 2, 3, 0}, new double[]{1, 3, 0.5, 2});
+        Random random = new Random();
+
+        int[] counts = new int[4];
+        int samples = 450_000;
+        for (int i = 0; i < samples; i++) {
+            counts[graph.randomNeighbour(0, random)]++;
+            assertEquals(0, graph.randomNeighbour(1, random));
+        }
+
+        assertEquals(0, counts[0]);
+        assertEquals(1 / 4.5, counts[1] / (double) samples, 0.01);
+        assertEquals(3 / 4.5, counts[2] / (double) samples, 0.01);
+        assertEquals(0.5 / 4.5, counts[3] / (double) samples, 0.01);
+        assertEquals(3.0, graph.weight(0, 1), 0);
+    }
+
+    @Test
+    public void weightedProjectionShouldLeaveOutRelationshipsWithoutPositiveWeight() {
+        getDatabase().execute("CREATE (p:Person {name:'Michal'})-[:FRIEND_OF {weight:2}]->(:Person {name:'Daniela'}), " +
+                "(p)-[:FRIEND_OF {weight:0}]->(:Person {name:'Vojta'}), (p)-[:FRIEND_OF]->(:Person {name:'Adam'})");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            GraphProjection graph = GraphProjection.load(getDatabase(), IncludeAllBusinessNodes.getInstance(), IncludeAllBusinessRelationships.getInstance(), "weight");
+
+            int michal = graph.indexOf(getDatabase().findNode(Label.label("Person"), "name", "Michal").getId());
+            assertTrue(graph.isWeighted());
+            assertEquals(2, graph.degree(michal));
+
+            double total = graph.weight(michal, 0) + graph.weight(michal, 1);
+            assertEquals(3.0, total, 0);
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldApplyCommittedChanges() {
+        getDatabase().execute("CREATE (:Person {name:'Michal'})-[:FRIEND_OF]->(:Person {name:'Daniela'}), (:Person {name:'Adam'})");
+
+        GraphProjection graph;
+        try (Transaction tx = getDatabase().beginTx()) {
+            graph = GraphProjection.load(getDatabase(), IncludeAllBusinessNodes.getInstance(), IncludeAllBusinessRelationships.getInstance());
+            tx.success();
+        }
+
+        List<ProjectionChanges> committed = new ArrayList<>();
+        ProjectionUpdater updater = new ProjectionUpdater(NodeRankModuleConfiguration.defaultConfiguration(), committed::add);
+        getDatabase().registerTransactionEventHandler(updater);
+
+        getDatabase().execute("MATCH (m:Person {name:'Michal'}) CREATE (m)-[:FRIEND_OF]->(:Person {name:'Vojta'})");
+        getDatabase().execute("MATCH (:Person {name:'Michal'})-[r:FRIEND_OF]->(:Person {name:'Daniela'}) DELETE r");
+        getDatabase().execute("MATCH (a:Person {name:'Adam'}) DELETE a");
+
+        getDatabase().unregisterTransactionEventHandler(updater);
+        committed.forEach(graph::apply);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            int michal = graph.indexOf(getDatabase().findNode(Label.label("Person"), "name", "Michal").getId());
+            int daniela = graph.indexOf(getDatabase().findNode(Label.label("Person"), "name", "Daniela").getId());
+            int vojta = graph.indexOf(getDatabase().findNode(Label.label("Person"), "name", "Vojta").getId());
+
+            assertTrue(vojta >= 0);
+            assertEquals(4, graph.nodeCount());
+            assertEquals(1, graph.degree(michal));
+            assertEquals(vojta, graph.neighbour(michal, 0));
+            assertEquals(1, graph.degree(vojta));
+            assertEquals(michal, graph.neighbour(vojta, 0));
+            assertEquals(0, graph.degree(daniela));
+
+            Random random = new Random();
+            for (int i = 0; i < 100; i++) {
+                int node = graph.randomNode(random);
+                assertTrue(node == michal || node == daniela || node == vojta);
+            }
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void walkerShouldStopOnceAllProjectedNodesAreRemoved() {
+        getDatabase().execute("CREATE (:Person {name:'Michal'})-[:FRIEND_OF]->(:Person {name:'Daniela'})");
+
+        GraphProjection graph;
+        try (Transaction tx = getDatabase().beginTx()) {
+            graph = GraphProjection.load(getDatabase(), IncludeAllBusinessNodes.getInstance(), IncludeAllBusinessRelationships.getInstance());
+            tx.success();
+        }
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration();
+        RandomWalker walker = new RandomWalker(config, null, null, new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 0));
+        walker.useProjection(graph);
+
+        VisitCounter visits = new VisitCounter();
+        assertEquals(10, walker.walk(10, getDatabase(), visits));
+
+        List<ProjectionChanges> committed = new ArrayList<>();
+        ProjectionUpdater updater = new ProjectionUpdater(config, committed::add);
+        getDatabase().registerTransactionEventHandler(updater);
+        getDatabase().execute("MATCH (p:Person) DETACH DELETE p");
+        getDatabase().unregisterTransactionEventHandler(updater);
+        committed.forEach(graph::apply);
+
+        assertEquals(2, graph.nodeCount());
+        assertEquals(-1, graph.randomNode(new Random()));
+
+        visits.clear();
+        assertEquals(0, walker.walk(10, getDatabase(), visits));
+        assertTrue(visits.isEmpty());
+    }
+
+    @Test
+    public void offHeapArraysShouldGrowWithoutLosingElements() {
+        OffHeapLongArray array = new OffHeapLongArray(10);
+
+        array.set(5, 42);
+        array.ensureCapacity(1_000_000);
+        array.set(999_999, 43);
+
+        assertEquals(42, array.get(5));
+        assertEquals(43, array.get(999_999));
+        assertTrue(array.capacity() >= 1_000_000);
+    }
+}
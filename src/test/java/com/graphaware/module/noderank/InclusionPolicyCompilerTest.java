@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.common.policy.inclusion.RelationshipInclusionPolicy;
+import com.graphaware.runtime.config.function.StringToNodeInclusionPolicy;
+import com.graphaware.runtime.config.function.StringToRelationshipInclusionPolicy;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link InclusionPolicyCompiler}.
+ */
+public class InclusionPolicyCompilerTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void compiledPoliciesShouldBehaveLikeExpressions() {
+        getDatabase().execute("CREATE " +
+                "(a:Person {name:'Michal', age:30})-[:FRIEND_OF {since:2010}]->(b:Person {name:'Vince', age:31.5})," +
+                "(b)-[:WORKS_FOR]->(c:Company {name:'GraphAware', public:false})," +
+                "(a)-[:WORKS_FOR {role:'CEO'}]->(c)," +
+                "(d:Person:Company {name:'O''Neil'})-[:FRIEND_OF]->(a)");
+
+        String[] nodeExpressions = {
+                "hasLabel('Person') && !hasLabel('Company')",
+                "(hasLabel('Person') || hasLabel('Company')) && hasProperty('age')",
+                "getProperty('name', '') == 'Michal' || getProperty('age', 0) == 31.5",
+                "getProperty('age', 0) == 30",
+                "getProperty('name', '') == 'O''Neil'",
+                "getProperty('public', true) != false",
+        };
+
+        String[] relationshipExpressions = {
+                "isType('FRIEND_OF')",
+                "isType('FRIEND_OF') && isOutgoing()",
+                "isType('WORKS_FOR') || isIncoming()",
+                "!(isType('WORKS_FOR') && hasProperty('role'))",
+                "getProperty('since', 0) == 2010",
+        };
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (String expression : nodeExpressions) {
+                NodeInclusionPolicy compiled = InclusionPolicyCompiler.compileNodePolicy(expression);
+                NodeInclusionPolicy interpreted = StringToNodeInclusionPolicy.getInstance().apply(expression);
+                assertNotNull(expression, compiled);
+
+                for (Node node : getDatabase().getAllNodes()) {
+                    assertEquals(expression + " on " + node.getAllProperties(), interpreted.include(node), compiled.include(node));
+                }
+            }
+
+            for (String expression : relationshipExpressions) {
+                RelationshipInclusionPolicy compiled = InclusionPolicyCompiler.compileRelationshipPolicy(expression);
+                RelationshipInclusionPolicy interpreted = StringToRelationshipInclusionPolicy.getInstance().apply(expression);
+                assertNotNull(expression, compiled);
+
+                for (Relationship relationship : getDatabase().getAllRelationships()) {
+                    for (Node pointOfView : relationship.getNodes()) {
+                        assertEquals(expression, interpreted.include(relationship, pointOfView), compiled.include(relationship, pointOfView));
+                    }
+                }
+            }
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void unsupportedExpressionsShouldNotBeCompiled() {
+        assertNull(InclusionPolicyCompiler.compileNodePolicy("getDegree() > 1"));
+        assertNull(InclusionPolicyCompiler.compileNodePolicy("hasLabel('Person') && getDegree('FRIEND_OF') > 1"));
+        assertNull(InclusionPolicyCompiler.compileNodePolicy("getProperty('name')"));
+        assertNull(InclusionPolicyCompiler.compileNodePolicy("isType('FRIEND_OF')"));
+        assertNull(InclusionPolicyCompiler.compileNodePolicy("hasLabel('Person'"));
+        assertNull(InclusionPolicyCompiler.compileRelationshipPolicy("otherNode.hasLabel('Person')"));
+        assertNull(InclusionPolicyCompiler.compileRelationshipPolicy("hasLabel('Person')"));
+        assertNull(InclusionPolicyCompiler.compileRelationshipPolicy("getProperty('since', 0) > 2010"));
+    }
+
+    @Test
+    public void evaluationsShouldBeCounted() {
+        getDatabase().execute("CREATE (:Person)-[:FRIEND_OF]->(:Person)");
+
+        CompiledNodeInclusionPolicy policy = (CompiledNodeInclusionPolicy) InclusionPolicyCompiler.compileNodePolicy("hasLabel('Person') && !hasProperty('name')");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (Node node : getDatabase().getAllNodes()) {
+                assertTrue(policy.include(node));
+            }
+            tx.success();
+        }
+
+        assertEquals(2, policy.getEvaluations());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link LabelNodeInclusionPolicy}.
+ */
+public class LabelNodeInclusionPolicyTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void labelOnlyExpressionsShouldBeRecognised() {
+        assertEquals(new LabelNodeInclusionPolicy("Person"), LabelNodeInclusionPolicy.fromExpression("hasLabel('Person')"));
+        assertEquals(new LabelNodeInclusionPolicy("Person", "Company"), LabelNodeInclusionPolicy.fromExpression(" hasLabel( 'Person' ) || hasLabel('Company')"));
+
+        assertNull(LabelNodeInclusionPolicy.fromExpression("hasLabel('Person') && hasLabel('Company')"));
+        assertNull(LabelNodeInclusionPolicy.fromExpression("!hasLabel('Person')"));
+        assertNull(LabelNodeInclusionPolicy.fromExpression("hasLabel('Person') || getDegree() > 1"));
+        assertNull(LabelNodeInclusionPolicy.fromExpression("hasLabel('Person') ||"));
+        assertNull(LabelNodeInclusionPolicy.fromExpression("hasProperty('name')"));
+    }
+
+    @Test
+    public void nodesShouldBeFoundByLabelWithoutDuplicates() {
+        getDatabase().execute("CREATE (:Person {name:'a'}), (:Company {name:'b'}), (:Person:Company {name:'c'}), (:Thing {name:'d'})");
+
+        LabelNodeInclusionPolicy policy = new LabelNodeInclusionPolicy("Person", "Company");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Set<String> names = new HashSet<>();
+            int count = 0;
+            for (Node node : policy.getAll(getDatabase())) {
+                assertTrue(policy.include(node));
+                names.add((String) node.getProperty("name"));
+                count++;
+            }
+
+            assertEquals(3, count);
+            assertEquals(3, names.size());
+            assertFalse(names.contains("d"));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void labelPolicyShouldEnableEligibleNodes() {
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration();
+
+        assertNull(new NodeRankModule("NR", config).getEligibleNodes());
+        assertNotNull(new NodeRankModule("NR", config.with(new LabelNodeInclusionPolicy("Person"))).getEligibleNodes());
+        assertNull(new NodeRankModule("NR", config.with(new LabelNodeInclusionPolicy("Person")).withProjection(true)).getEligibleNodes());
+    }
+}
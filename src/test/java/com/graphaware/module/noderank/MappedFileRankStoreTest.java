@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link MappedFileRankStore}.
+ */
+public class MappedFileRankStoreTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void ranksShouldSurviveReopening() throws Exception {
+        File file = new File(folder.getRoot(), "nodeRank.ranks");
+        Node node;
+        Node other;
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            node = getDatabase().createNode();
+            other = getDatabase().createNode();
+            tx.success();
+        }
+
+        MappedFileRankStore store = new MappedFileRankStore(file);
+        assertEquals(0, store.getRank(node), 0);
+        assertEquals(7, store.getGeneration(node, 7));
+
+        assertEquals(3, store.addVisits(node, 3), 0);
+        assertEquals(5, store.addVisits(node, 2), 0);
+        store.setRank(other, 1.5, 42);
+        store.close();
+
+        store = new MappedFileRankStore(file);
+        assertEquals(5, store.getRank(node), 0);
+        assertEquals(5, store.getRank(node.getId()), 0);
+        assertEquals(1.5, store.getRank(other), 0);
+        assertEquals(42, store.getGeneration(other, 7));
+        assertEquals(0, store.getRank(MappedFileRankStore.SEGMENT_ENTRIES * 3L), 0);
+        assertEquals(MappedFileRankStore.SEGMENT_ENTRIES * (long) MappedFileRankStore.ENTRY_BYTES, store.sizeInBytes());
+        store.close();
+    }
+
+    @Test
+    public void ranksOfDeletedNodesShouldBeCleared() {
+        MappedFileRankStore store = new MappedFileRankStore(new File(folder.getRoot(), "nodeRank.ranks"));
+        getDatabase().registerTransactionEventHandler(store.cleaner());
+
+        Node node;
+        try (Transaction tx = getDatabase().beginTx()) {
+            node = getDatabase().createNode();
+            store.addVisits(node, 10);
+            tx.success();
+        }
+
+        long nodeId = node.getId();
+        assertEquals(10, store.getRank(nodeId), 0);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().getNodeById(nodeId).delete();
+            tx.success();
+        }
+
+        assertEquals(10, store.getRank(nodeId), 0);
+        assertArrayEquals(new long[]{nodeId}, store.clearDeleted());
+        assertEquals(0, store.getRank(nodeId), 0);
+        assertArrayEquals(new long[0], store.clearDeleted());
+        store.close();
+    }
+
+    @Test
+    public void ranksOfNodesDeletedWhileClosedShouldBeCleared() {
+        File file = new File(folder.getRoot(), "nodeRank.ranks");
+        Node deleted;
+        Node kept;
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            deleted = getDatabase().createNode();
+            kept = getDatabase().createNode();
+            tx.success();
+        }
+
+        MappedFileRankStore store = new MappedFileRankStore(file);
+        store.addVisits(deleted, 10);
+        store.addVisits(kept, 5);
+        store.close();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().getNodeById(deleted.getId()).delete();
+            tx.success();
+        }
+
+        store = new MappedFileRankStore(file);
+        assertEquals(1, store.clearMissing(getDatabase()));
+        assertEquals(0, store.getRank(deleted.getId()), 0);
+        assertEquals(5, store.getRank(kept.getId()), 0);
+        store.close();
+    }
+
+    @Test
+    public void visitsWrittenAfterDeletionShouldBeCleared() {
+        MappedFileRankStore store = new MappedFileRankStore(new File(folder.getRoot(), "nodeRank.ranks"));
+        getDatabase().registerTransactionEventHandler(store.cleaner());
+
+        Node node;
+        try (Transaction tx = getDatabase().beginTx()) {
+            node = getDatabase().createNode();
+            tx.success();
+        }
+
+        store.addVisits(node, 10);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            getDatabase().getNodeById(node.getId()).delete();
+            tx.success();
+        }
+
+        //visits counted before the deletion and written after it
+        store.addVisits(node, 5);
+        assertEquals(15, store.getRank(node.getId()), 0);
+
+        store.clearDeleted();
+        assertEquals(0, store.getRank(node.getId()), 0);
+        store.close();
+    }
+
+    @Test
+    public void moduleShouldNotWriteRankProperties() {
+        NodeRankModule module = new NodeRankModule("FILE", NodeRankModuleConfiguration.defaultConfiguration()
+                .withRankDirectory(folder.getRoot().getAbsolutePath())
+                .withStepsPerInvocation(100));
+
+        getDatabase().execute("CREATE (a:Person)-[:KNOWS]->(b:Person)-[:KNOWS]->(a)");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+
+            double total = 0;
+            for (Node node : getDatabase().getAllNodes()) {
+                assertFalse(node.hasProperty("nodeRank"));
+                total += module.getRankStore(null).getRank(node);
+            }
+
+            assertEquals(100, total, 0);
+            assertEquals(2, module.getTopNodes().getSnapshot().size());
+
+            tx.success();
+        } finally {
+            module.shutdown();
+        }
+
+        assertTrue(new File(folder.getRoot(), "nodeRank.ranks").exists());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.runtime.GraphAwareRuntime;
+import com.graphaware.runtime.GraphAwareRuntimeFactory;
+import com.graphaware.runtime.config.FluentRuntimeConfiguration;
+import com.graphaware.runtime.schedule.FixedDelayTimingStrategy;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of reading top ranked nodes through {@link NodeRankApi}, by several threads at once. The module is driven
+ * by the benchmark rather than the runtime's timer, so that reads don't compete with walkers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class NodeRankApiBenchmark {
+
+    @Param({"10000"})
+    private int nodes;
+
+    @Param({"10"})
+    private int degree;
+
+    @Param({"10", "100"})
+    private int limit;
+
+    private GraphDatabaseService database;
+    private NodeRankApi api;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkGraphs.create(nodes, degree, BenchmarkGraphs.POWER_LAW, 1.0);
+
+        GraphAwareRuntime runtime = GraphAwareRuntimeFactory.createRuntime(database,
+                FluentRuntimeConfiguration.defaultConfiguration(database)
+                        .withTimingStrategy(FixedDelayTimingStrategy.getInstance().withInitialDelay(24 * 60 * 60 * 1000)));
+        NodeRankModule module = new NodeRankModule("NR", NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(limit));
+        runtime.registerModule(module);
+        runtime.start();
+        runtime.waitUntilStarted();
+
+        NodeRankContext context = module.createInitialContext(database);
+        for (int i = 0; i < 100; i++) {
+            try (Transaction tx = database.beginTx()) {
+                context = module.doSomeWork(context, database);
+                tx.success();
+            }
+        }
+
+        api = new NodeRankApi(database);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Benchmark
+    public TopRankedSnapshot getTopRanked() {
+        return api.getTopRanked("NR");
+    }
+
+    @Benchmark
+    public List<Node> getTopRankedNodes() {
+        return api.getTopRankedNodes("NR", limit);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.runtime.GraphAwareRuntime;
+import com.graphaware.runtime.GraphAwareRuntimeFactory;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link NodeRankApi}.
+ */
+public class NodeRankApiTest {
+
+    @Test
+    public void shutDownModulesShouldNotBeCached() {
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        NodeRankModule module = start(database);
+
+        try {
+            NodeRankApi api = new NodeRankApi(database);
+            api.getTopRanked("NR");
+            assertTrue(NodeRankApi.isCached(database, "NR"));
+
+            module.shutdown();
+            assertFalse(NodeRankApi.isCached(database, "NR"));
+
+            api.getTopRanked("NR");
+            assertFalse(NodeRankApi.isCached(database, "NR"));
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    @Test
+    public void modulesShouldBeEvictedWhenDatabaseShutsDown() {
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        start(database);
+
+        new NodeRankApi(database).getTopRanked("NR");
+        assertTrue(NodeRankApi.isCached(database, "NR"));
+
+        database.shutdown();
+        assertFalse(NodeRankApi.isCached(database));
+    }
+
+    private NodeRankModule start(GraphDatabaseService database) {
+        GraphAwareRuntime runtime = GraphAwareRuntimeFactory.createRuntime(database);
+        NodeRankModule module = new NodeRankModule("NR");
+        runtime.registerModule(module);
+        runtime.start();
+        runtime.waitUntilStarted();
+        return module;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.serialize.Serializer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link NodeRankContext} and {@link NodeRankContextCodec}.
+ */
+public class NodeRankContextTest {
+
+    @Test
+    public void contextShouldSurviveSerialization() {
+        long[] topNodes = {5L, 1_000_000_000_000L, 3L, 0L, 4L};
+        long[] walkers = {7L, -1L};
+
+        NodeRankContext context = Serializer.fromByteArray(Serializer.toByteArray(new NodeRankContext(12L, topNodes, walkers)));
+
+        assertEquals(12L, context.getNodeId());
+        assertArrayEquals(new long[]{0L, 3L, 4L, 5L, 1_000_000_000_000L}, context.getTopNodes());
+        assertArrayEquals(walkers, context.getWalkerNodeIds());
+    }
+
+    @Test
+    public void walkerStateShouldBeOptional() {
+        NodeRankContext context = new NodeRankContext(1L, new long[]{2L, 3L});
+
+        assertArrayEquals(new long[]{2L, 3L}, context.getTopNodes());
+        assertArrayEquals(new long[0], context.getWalkerNodeIds());
+    }
+
+    @Test
+    public void rankingsShouldSurviveSerialization() {
+        Map<String, NodeRankContext> rankings = new LinkedHashMap<>();
+        rankings.put("people", new NodeRankContext(3L, new long[]{9L, 2L}));
+        rankings.put("\u017Eivot", new NodeRankContext(-1L, new long[0]));
+
+        NodeRankContext context = Serializer.fromByteArray(Serializer.toByteArray(new NodeRankContext(12L, 100L, new long[]{5L}, new long[]{7L}, rankings)));
+
+        assertArrayEquals(new long[]{5L}, context.getTopNodes());
+        assertArrayEquals(new long[]{7L}, context.getWalkerNodeIds());
+        assertEquals(Arrays.asList("people", "\u017Eivot"), Arrays.asList(context.getRankings().keySet().toArray()));
+        assertEquals(3L, context.getRankings().get("people").getNodeId());
+        assertArrayEquals(new long[]{2L, 9L}, context.getRankings().get("people").getTopNodes());
+        assertEquals(-1L, context.getRankings().get("\u017Eivot").getNodeId());
+        assertArrayEquals(new long[0], context.getRankings().get("\u017Eivot").getTopNodes());
+    }
+
+    @Test
+    public void stateWithoutRankingsShouldStillBeDecoded() {
+        byte[] encoded = NodeRankContextCodec.encode(new long[]{1L, 2L}, new long[]{3L}, Collections.emptyMap());
+        //version 1 state had no rankings section, i.e. the trailing count of zero rankings
+        byte[] version1 = Arrays.copyOf(encoded, encoded.length - 1);
+        version1[0] = 1;
+
+        assertArrayEquals(new long[]{1L, 2L}, NodeRankContextCodec.decodeTopNodes(version1));
+        assertArrayEquals(new long[]{3L}, NodeRankContextCodec.decodeWalkerNodeIds(version1));
+        assertTrue(NodeRankContextCodec.decodeRankings(version1).isEmpty());
+    }
+
+    @Test
+    public void closeIdsShouldBeEncodedCompactly() {
+        long[] topNodes = new long[10_000];
+        for (int i = 0; i < topNodes.length; i++) {
+            topNodes[i] = 1_000_000L + (i ^ 1);
+        }
+
+        byte[] encoded = NodeRankContextCodec.encode(topNodes, null);
+
+        assertTrue(encoded.length < 2 * topNodes.length);
+        Arrays.sort(topNodes);
+        assertArrayEquals(topNodes, NodeRankContextCodec.decodeTopNodes(encoded));
+    }
+
+    @Test
+    public void sparseIdsInRankOrderShouldBeEncodedCompactly() {
+        //IDs of a large store, in no particular order, like top ranked nodes in rank order
+        Random random = new Random(42);
+        long[] topNodes = new long[10_000];
+        for (int i = 0; i < topNodes.length; i++) {
+            topNodes[i] = (long) (random.nextDouble() * (1L << 34));
+        }
+
+        byte[] encoded = NodeRankContextCodec.encode(topNodes, null);
+
+        assertTrue(encoded.length <= 4 * topNodes.length);
+        Arrays.sort(topNodes);
+        assertArrayEquals(topNodes, NodeRankContextCodec.decodeTopNodes(encoded));
+    }
+
+    @Test
+    public void unknownVersionShouldBeIgnored() {
+        byte[] encoded = NodeRankContextCodec.encode(new long[]{1L}, new long[]{2L});
+        encoded[0] = NodeRankContextCodec.VERSION + 1;
+
+        assertArrayEquals(new long[0], NodeRankContextCodec.decodeTopNodes(encoded));
+        assertArrayEquals(new long[0], NodeRankContextCodec.decodeWalkerNodeIds(encoded));
+    }
+}
@@ -61,7 +61,7 @@ public class NodeRankModuleTest extends EmbeddedDatabaseIntegrationTest {
 
         try (Transaction tx = getDatabase().beginTx()) {
             Node startNode = (Node) insertionResults.get("p");
-            NodeRankContext lastContext = new NodeRankContext(startNode, new Long[0]);
+            NodeRankContext lastContext = new NodeRankContext(startNode, new long[0]);
 
             Node expectedNextNode = (Node) insertionResults.get("q");
 
@@ -74,6 +74,75 @@ public class NodeRankModuleTest extends EmbeddedDatabaseIntegrationTest {
         }
     }
 
+    @Test
+    public void shouldPerformConfiguredNumberOfStepsInSingleInvocation() {
+        module = new NodeRankModule("TEST4", NodeRankModuleConfiguration.defaultConfiguration().withStepsPerInvocation(100));
+
+        getDatabase().execute("CREATE (p:Person{name:'Gary'})-[:KNOWS]->(q:Person{name:'Sheila'})");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            NodeRankContext newContext = module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+            assertNotNull("The new context shouldn't be null", newContext);
+
+            assertEquals("Every step should have incremented a rank", 100, totalRank());
+        }
+    }
+
+    @Test
+    public void shouldWriteRanksOnlyOnceFlushIntervalHasElapsed() {
+        module = new NodeRankModule("TEST5", NodeRankModuleConfiguration.defaultConfiguration().withStepsPerInvocation(10).withFlushInterval(3));
+
+        getDatabase().execute("CREATE (p:Person{name:'Gary'})-[:KNOWS]->(q:Person{name:'Sheila'})");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            NodeRankContext context = module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+            context = module.doSomeWork(context, getDatabase());
+            assertEquals("Ranks should not have been written yet", 0, totalRank());
+
+            module.doSomeWork(context, getDatabase());
+            assertEquals("Ranks of all three invocations should have been written", 30, totalRank());
+        }
+    }
+
+    @Test
+    public void shouldCountStepsOfAllWalkers() {
+        module = new NodeRankModule("TEST6", NodeRankModuleConfiguration.defaultConfiguration().withStepsPerInvocation(50).withWalkers(4));
+
+        getDatabase().execute("CREATE (p:Person{name:'Gary'})-[:KNOWS]->(q:Person{name:'Sheila'})");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+            assertEquals("Every step of every walker should have incremented a rank", 200, totalRank());
+        } finally {
+            module.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldWalkProjectionWhenEnabled() {
+        module = new NodeRankModule("TEST7", NodeRankModuleConfiguration.defaultConfiguration().withStepsPerInvocation(100).withProjection(true));
+
+        getDatabase().execute("CREATE (p:Person{name:'Gary'})-[:KNOWS]->(q:Person{name:'Sheila'})");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            NodeRankContext newContext = module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+            assertNotNull("The new context shouldn't be null", newContext);
+            assertNotNull("The projection should have been loaded", module.getProjection());
+            assertEquals(2, module.getProjection().nodeCount());
+            assertEquals("Every step should have incremented a rank", 100, totalRank());
+        } finally {
+            module.shutdown();
+        }
+    }
+
+    private int totalRank() {
+        int totalRank = 0;
+        for (Node node : getDatabase().getAllNodes()) {
+            totalRank += (int) node.getProperty("nodeRank", 0);
+        }
+        return totalRank;
+    }
+
     @Test
     public void shouldHonourInclusionStrategiesForNodesAndRelationships() {
 
@@ -107,7 +176,7 @@ public class NodeRankModuleTest extends EmbeddedDatabaseIntegrationTest {
         try (Transaction tx = getDatabase().beginTx()) {
             Node person = (Node) insertionResults.get("p");
 
-            NodeRankContext newContext = module.doSomeWork(new NodeRankContext(person, new Long[0]), getDatabase());
+            NodeRankContext newContext = module.doSomeWork(new NodeRankContext(person, new long[0]), getDatabase());
             assertNotNull("The new context shouldn't be null", newContext);
             Node nextNode = newContext.find(getDatabase());
             assertNotNull("The next node in the new context shouldn't be null", nextNode);
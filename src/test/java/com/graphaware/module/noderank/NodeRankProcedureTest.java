@@ -54,5 +54,92 @@ public class NodeRankProcedureTest extends GraphAwareIntegrationTest {
             assertEquals("Michal", ranked.get(0).getProperty("name"));
             tx.success();
         }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.noderank.getTopRanked('noderank', 10) YIELD nodeId, score, normalized RETURN nodeId, score, normalized");
+            Map<String, Object> top = result.next();
+            assertEquals(0L, top.get("nodeId"));
+            assertTrue((double) top.get("score") > 0);
+            assertEquals(1.0, (double) top.get("normalized"), 0);
+
+            Map<String, Object> second = result.next();
+            assertTrue((double) second.get("normalized") <= 1.0);
+
+            result = getDatabase().execute("CALL ga.noderank.getTopRanked('noderank', 1, 1) YIELD nodeId RETURN nodeId");
+            assertEquals(second.get("nodeId"), result.next().get("nodeId"));
+            assertFalse(result.hasNext());
+
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.noderank.ranks('noderank', [1, 0, 1000]) YIELD nodeId, score, normalized, percentile RETURN nodeId, score, normalized, percentile");
+
+            Map<String, Object> daniela = result.next();
+            assertEquals(1L, daniela.get("nodeId"));
+            assertTrue((double) daniela.get("score") > 0);
+            assertEquals(25.0, (double) daniela.get("percentile"), 0);
+
+            Map<String, Object> michal = result.next();
+            assertEquals(0L, michal.get("nodeId"));
+            assertTrue((double) michal.get("normalized") > 0);
+            assertEquals(75.0, (double) michal.get("percentile"), 0);
+
+            assertFalse(result.hasNext());
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void percentilesShouldCountEqualScoresAsHalfLower() {
+        double[] percentiles = NodeRankProcedure.percentiles(new double[]{3, 1, Double.NaN, 3, 2});
+
+        assertEquals(75.0, percentiles[0], 0);
+        assertEquals(12.5, percentiles[1], 0);
+        assertTrue(Double.isNaN(percentiles[2]));
+        assertEquals(75.0, percentiles[3], 0);
+        assertEquals(37.5, percentiles[4], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeLimitShouldBeRejected() {
+        NodeRankProcedure.checkNotNegative(0, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeSkipShouldBeRejected() {
+        NodeRankProcedure.checkNotNegative(Long.MIN_VALUE, 10);
+    }
+
+    @Test
+    public void deletedNodesShouldBeLeftOutBeforeSkipAndLimit() {
+        long[] ids = new long[5];
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = getDatabase().createNode().getId();
+            }
+            getDatabase().getNodeById(ids[1]).delete();
+            tx.success();
+        }
+
+        TopRankedSnapshot snapshot = new TopRankedSnapshot(ids, new double[]{50, 40, 30, 20, 10});
+        NodeRankProcedure procedure = new NodeRankProcedure();
+        procedure.database = getDatabase();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            long[] page = procedure.results(snapshot).skip(1).limit(2).mapToLong(result -> result.nodeId).toArray();
+            assertArrayEquals(new long[]{ids[2], ids[3]}, page);
+
+            assertEquals(4, procedure.results(snapshot).skip(0).limit(Long.MAX_VALUE).count());
+            assertEquals(0, procedure.results(snapshot).skip(Long.MAX_VALUE).limit(Long.MAX_VALUE).count());
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void hugeSkipAndLimitShouldBeAccepted() {
+        NodeRankProcedure.checkNotNegative(Long.MAX_VALUE, Long.MAX_VALUE);
     }
 }
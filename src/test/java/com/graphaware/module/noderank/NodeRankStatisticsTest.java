@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link NodeRankStatistics} and {@link LatencyHistogram}.
+ */
+public class NodeRankStatisticsTest {
+
+    @Test
+    public void histogramShouldEstimatePercentilesWithinFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        assertEquals(0, histogram.mean(), 0);
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        assertEquals(101, histogram.count());
+        assertEquals(5050.0 / 101, histogram.mean(), 0.0001);
+        assertEquals(63, histogram.percentile(0.5));
+        assertEquals(127, histogram.percentile(0.99));
+        assertEquals(0, histogram.percentile(0));
+    }
+
+    @Test
+    public void ratiosShouldBeRelativeToSteps() {
+        NodeRankStatistics statistics = new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 7);
+        assertEquals(0, statistics.getHyperjumpRatio(), 0);
+
+        statistics.recordWalk(100, 15, 5);
+        statistics.recordWalk(100, 15, 0);
+        statistics.recordInvocation(1_000_000);
+        statistics.recordFlush(50);
+
+        assertEquals(200, statistics.getSteps());
+        assertEquals(0.15, statistics.getHyperjumpRatio(), 0.0001);
+        assertEquals(0.025, statistics.getDeadEndRatio(), 0.0001);
+        assertEquals(200_000, statistics.getStepsPerSecond(), 0.0001);
+        assertEquals(1, statistics.getInvocations());
+        assertEquals(50, statistics.getRanksWritten());
+
+        statistics.recordInvocation(1_000_000);
+        assertEquals(0, statistics.getStepsPerSecond(), 0);
+
+        Map<String, Number> map = statistics.toMap();
+        assertEquals(200L, map.get("steps"));
+        assertEquals(7L, map.get("compiledPolicyEvaluations"));
+        assertEquals(0L, map.get("supernodeCacheHits"));
+    }
+}
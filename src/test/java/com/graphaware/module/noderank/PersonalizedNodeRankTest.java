@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.runtime.policy.all.IncludeAllBusinessNodes;
+import com.graphaware.runtime.policy.all.IncludeAllBusinessRelationships;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link PersonalizedNodeRank}.
+ */
+public class PersonalizedNodeRankTest extends EmbeddedDatabaseIntegrationTest {
+
+    private static final double DELTA = 0.000001;
+
+    @Test
+    public void seedsShouldAttractRankWhenWalkingDatabase() {
+        createTwoClusters();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            TopRankedSnapshot result = new PersonalizedNodeRank(NodeRankModuleConfiguration.defaultConfiguration())
+                    .compute(getDatabase(), new long[]{seed()}, 10_000, 10);
+
+            assertRankConcentratedAroundSeed(result);
+            tx.success();
+        }
+    }
+
+    @Test
+    public void seedsShouldAttractRankWhenWalkingProjection() {
+        createTwoClusters();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            GraphProjection graph = GraphProjection.load(getDatabase(), IncludeAllBusinessNodes.getInstance(), IncludeAllBusinessRelationships.getInstance());
+            TopRankedSnapshot result = new PersonalizedNodeRank(NodeRankModuleConfiguration.defaultConfiguration())
+                    .compute(graph, new long[]{seed()}, 10_000, 10);
+
+            assertRankConcentratedAroundSeed(result);
+            tx.success();
+        }
+    }
+
+    @Test
+    public void unknownSeedsShouldProduceNoResult() {
+        createTwoClusters();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertTrue(new PersonalizedNodeRank(NodeRankModuleConfiguration.defaultConfiguration())
+                    .compute(getDatabase(), new long[]{1000L}, 100, 10).isEmpty());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void hugeLimitShouldReturnAllVisitedNodes() {
+        createTwoClusters();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            TopRankedSnapshot result = new PersonalizedNodeRank(NodeRankModuleConfiguration.defaultConfiguration())
+                    .compute(getDatabase(), new long[]{seed()}, 1_000, Integer.MAX_VALUE);
+
+            assertEquals(6, result.size());
+            tx.success();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void walksAboveMaximumShouldBeRejected() {
+        createTwoClusters();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            new PersonalizedNodeRank(NodeRankModuleConfiguration.defaultConfiguration().withMaxPersonalizedWalks(100))
+                    .compute(getDatabase(), new long[]{seed()}, 101, 10);
+            tx.success();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nodePositionsShouldRejectSizesTheyCantHold() {
+        new NodePositions(Integer.MAX_VALUE);
+    }
+
+    private void createTwoClusters() {
+        getDatabase().execute("CREATE " +
+                "(a1:A {name:'a1'})-[:R]->(a2:A {name:'a2'})-[:R]->(a3:A {name:'a3'})-[:R]->(a1), " +
+                "(b1:B {name:'b1'})-[:R]->(b2:B {name:'b2'})-[:R]->(b3:B {name:'b3'})-[:R]->(b1), " +
+                "(a1)-[:R]->(b1)");
+    }
+
+    private long seed() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            long id = getDatabase().findNode(Label.label("A"), "name", "a2").getId();
+            tx.success();
+            return id;
+        }
+    }
+
+    private void assertRankConcentratedAroundSeed(TopRankedSnapshot result) {
+        assertEquals(6, result.size());
+
+        double total = 0;
+        double clusterA = 0;
+        for (int i = 0; i < result.size(); i++) {
+            total += result.rank(i);
+            if (getDatabase().getNodeById(result.nodeId(i)).hasLabel(Label.label("A"))) {
+                clusterA += result.rank(i);
+            }
+        }
+
+        assertEquals(1.0, total, DELTA);
+        assertTrue(clusterA > 0.5);
+    }
+}
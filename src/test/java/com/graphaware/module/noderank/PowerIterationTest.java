@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+public class PowerIterationTest extends EmbeddedDatabaseIntegrationTest {
+
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void cycleShouldHaveEqualScores() {
+        GraphProjection cycle = new GraphProjection(new long[]{0, 1, 2}, new int[]{0, 2, 4, 6}, new int[]{1, 2, 0, 2, 0, 1});
+
+        double[] scores = new PowerIteration(0.85, 1e-9, 100).compute(cycle);
+
+        assertEquals(3, scores.length);
+        for (double score : scores) {
+            assertEquals(1.0 / 3, score, DELTA);
+        }
+    }
+
+    @Test
+    public void hubShouldHaveHighestScore() {
+        //hub 0 connected to 1, 2, 3, 4, node 5 has no neighbours
+        GraphProjection star = new GraphProjection(new long[]{0, 1, 2, 3, 4, 5}, new int[]{0, 4, 5, 6, 7, 8, 8}, new int[]{1, 2, 3, 4, 0, 0, 0, 0});
+
+        double[] scores = new PowerIteration(0.85, 1e-9, 100).compute(star);
+
+        double total = 0;
+        for (int i = 0; i < scores.length; i++) {
+            total += scores[i];
+            if (i > 0) {
+                assertTrue(scores[0] > scores[i]);
+            }
+        }
+
+        assertEquals(1.0, total, DELTA);
+        assertEquals(scores[1], scores[4], DELTA);
+        assertTrue(scores[5] < scores[1]);
+    }
+
+    @Test
+    public void moduleShouldWriteScoresInBatches() {
+        getDatabase().execute("CREATE (p:Person {name:'Michal'})-[:FRIEND_OF]->(:Person {name:'Daniela'}), (p)-[:FRIEND_OF]->(:Person {name:'Vojta'})");
+
+        NodeRankModule module = new NodeRankModule("TEST", NodeRankModuleConfiguration.defaultConfiguration()
+                .withAlgorithm(NodeRankAlgorithm.POWER_ITERATION)
+                .withWriteBatchSize(1));
+
+        try {
+            NodeRankContext context = module.createInitialContext(getDatabase());
+            for (int i = 0; i < 100; i++) {
+                try (Transaction tx = getDatabase().beginTx()) {
+                    context = module.doSomeWork(context, getDatabase());
+                    tx.success();
+                }
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            module.shutdown();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            double total = 0;
+            for (Node node : getDatabase().getAllNodes()) {
+                total += (double) node.getProperty("nodeRank");
+            }
+            assertEquals(1.0, total, DELTA);
+
+            assertEquals("Michal", module.getTopNodes().getTopNodes().get(0).getProperty("name"));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void topNodesShouldOnlyHoldNodesOfLastComputation() {
+        getDatabase().execute("CREATE (h:Hub {name:'Michal'})-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person)");
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration()
+                .withAlgorithm(NodeRankAlgorithm.POWER_ITERATION)
+                .withRecomputeInterval(0)
+                .withMaxTopRankNodes(1);
+
+        TopRankedNodes topNodes = new TopRankedNodes();
+        topNodes.initializeIfNeeded(null, getDatabase(), config);
+        PowerIterationEngine engine = new PowerIterationEngine("TEST", config, topNodes, new PropertyRankStore(config.getRankPropertyKey()),
+                new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 0));
+
+        try {
+            compute(engine);
+            assertTopNode(topNodes, "Michal");
+
+            //the new hub scores lower than the old one did, which must not linger once deleted
+            getDatabase().execute("MATCH (h:Hub {name:'Michal'}) DETACH DELETE h");
+            getDatabase().execute("CREATE (h:Hub {name:'Daniela'})-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person)");
+
+            compute(engine);
+            assertTopNode(topNodes, "Daniela");
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void moduleShouldPublishDoubleBufferedScores() {
+        getDatabase().execute("CREATE (p:Person {name:'Michal'})-[:FRIEND_OF]->(:Person {name:'Daniela'}), (p)-[:FRIEND_OF]->(:Person {name:'Vojta'})");
+
+        NodeRankModule module = new NodeRankModule("TEST", NodeRankModuleConfiguration.defaultConfiguration()
+                .withAlgorithm(NodeRankAlgorithm.POWER_ITERATION)
+                .withDoubleBuffering(true));
+
+        try {
+            NodeRankContext context = module.createInitialContext(getDatabase());
+            for (int i = 0; i < 100; i++) {
+                try (Transaction tx = getDatabase().beginTx()) {
+                    context = module.doSomeWork(context, getDatabase());
+                    tx.success();
+                }
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            module.shutdown();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            double total = 0;
+            for (Node node : getDatabase().getAllNodes()) {
+                double rank = module.getRank(null, node);
+                assertEquals((double) node.getProperty("nodeRank"), rank, DELTA);
+                total += rank;
+            }
+            assertEquals(1.0, total, DELTA);
+
+            assertEquals("Michal", module.getTopNodes().getTopNodes().get(0).getProperty("name"));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void topNodesShouldMatchPublishedBuffer() {
+        getDatabase().execute("CREATE (h:Hub {name:'Michal'})-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person)");
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration()
+                .withAlgorithm(NodeRankAlgorithm.POWER_ITERATION)
+                .withRecomputeInterval(0)
+                .withDoubleBuffering(true);
+
+        TopRankedNodes topNodes = new TopRankedNodes();
+        topNodes.initializeIfNeeded(null, getDatabase(), config);
+        PowerIterationEngine engine = new PowerIterationEngine("TEST", config, topNodes, new PropertyRankStore(config.getRankPropertyKey()),
+                new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 0));
+
+        try {
+            compute(engine);
+
+            getDatabase().execute("MATCH (h:Hub {name:'Michal'}) DETACH DELETE h");
+            getDatabase().execute("CREATE (h:Hub {name:'Daniela'})-[:FRIEND_OF]->(:Person), (h)-[:FRIEND_OF]->(:Person)");
+
+            compute(engine);
+
+            RankBuffer buffer = engine.getPublished();
+            TopRankedSnapshot snapshot = topNodes.getSnapshot();
+
+            assertEquals(buffer.size(), snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                assertTrue(buffer.contains(snapshot.nodeId(i)));
+                assertEquals(buffer.rank(snapshot.nodeId(i)), snapshot.rank(i), 0);
+                if (i > 0) {
+                    assertTrue(snapshot.rank(i - 1) >= snapshot.rank(i));
+                }
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void bufferShouldHoldRanksOfProjectedNodes() {
+        GraphProjection cycle = new GraphProjection(new long[]{3, 5, 8}, new int[]{0, 2, 4, 6}, new int[]{1, 2, 0, 2, 0, 1});
+
+        RankBuffer buffer = new RankBuffer(cycle, new double[]{0.1, 0.3, 0.6});
+
+        assertEquals(3, buffer.size());
+        assertTrue(buffer.contains(5));
+        assertFalse(buffer.contains(4));
+        assertEquals(0.6, buffer.rank(8), DELTA);
+        assertEquals(0.0, buffer.rank(4), DELTA);
+        assertEquals(3, buffer.nodeId(0));
+        assertEquals(0.3, buffer.rankAt(1), DELTA);
+    }
+
+    @Test
+    public void bufferShouldHoldRanksOfNodesAddedToProjection() {
+        GraphProjection cycle = new GraphProjection(new long[]{3, 5, 8}, new int[]{0, 2, 4, 6}, new int[]{1, 2, 0, 2, 0, 1});
+        ProjectionChanges changes = new ProjectionChanges();
+        changes.addNode(4);
+        cycle.apply(changes);
+
+        RankBuffer buffer = new RankBuffer(cycle, new double[]{0.1, 0.3, 0.6, 0.2});
+
+        assertEquals(4, buffer.size());
+        assertEquals(0.2, buffer.rank(4), DELTA);
+        assertEquals(0.3, buffer.rank(5), DELTA);
+        assertEquals(0.6, buffer.rank(8), DELTA);
+        assertEquals(4, buffer.nodeId(1));
+        assertEquals(0.2, buffer.rankAt(1), DELTA);
+    }
+
+    private void compute(PowerIterationEngine engine) {
+        try {
+            do {
+                engine.doSomeWork(getDatabase());
+                Thread.sleep(10);
+            } while (!engine.isIdle());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void assertTopNode(TopRankedNodes topNodes, String name) {
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertEquals(1, topNodes.getTopNodes().size());
+            assertEquals(name, topNodes.getTopNodes().get(0).getProperty("name"));
+            tx.success();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link RankDecay}.
+ */
+public class RankDecayTest extends EmbeddedDatabaseIntegrationTest {
+
+    private static final long HALF_LIFE = 1000;
+
+    @Test
+    public void visitsShouldWeighTwiceAsMuchEveryHalfLife() {
+        RankDecay decay = new RankDecay(HALF_LIFE, "nodeRank");
+        long generationLength = HALF_LIFE * RankDecay.GENERATION_HALF_LIVES;
+
+        assertEquals(0, decay.generation(0));
+        assertEquals(1.0, decay.weight(0), 0);
+        assertEquals(2.0, decay.weight(HALF_LIFE), 1e-9);
+        assertEquals(8.0, decay.weight(3 * HALF_LIFE), 1e-9);
+
+        assertEquals(0, decay.generation(generationLength - 1));
+        assertEquals(1, decay.generation(generationLength));
+        assertEquals(1.0, decay.weight(generationLength), 0);
+    }
+
+    @Test
+    public void ranksShouldBeRebasedToLaterGenerations() {
+        assertEquals(10.0, RankDecay.rebase(10, 3, 3), 0);
+        assertEquals(10.0 / Math.pow(2, 64), RankDecay.rebase(10, 3, 4), 0);
+        assertEquals(0.0, RankDecay.rebase(10, 3, 100), 0);
+    }
+
+    @Test
+    public void scoreShouldHalveEveryHalfLife() {
+        RankDecay decay = new RankDecay(HALF_LIFE, "nodeRank");
+        long generationLength = HALF_LIFE * RankDecay.GENERATION_HALF_LIVES;
+        long visited = generationLength - 2 * HALF_LIFE;
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Node node = getDatabase().createNode();
+            decay.write(node, 4 * decay.weight(visited), decay.generation(visited));
+
+            assertEquals(4.0, score(decay, node, visited), 1e-9);
+            assertEquals(2.0, score(decay, node, visited + HALF_LIFE), 1e-9);
+            assertEquals(1.0, score(decay, node, visited + 2 * HALF_LIFE), 1e-9);
+            assertEquals(0.5, score(decay, node, visited + 3 * HALF_LIFE), 1e-9);
+            assertEquals(0L, node.getProperty("nodeRankGeneration"));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void moduleShouldWriteDecayedRanks() {
+        NodeRankModule module = new NodeRankModule("DECAY", NodeRankModuleConfiguration.defaultConfiguration()
+                .withRankHalfLife(3_600_000)
+                .withStepsPerInvocation(100));
+
+        getDatabase().execute("CREATE (a:Person)-[:KNOWS]->(b:Person)-[:KNOWS]->(a)");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            module.doSomeWork(module.createInitialContext(getDatabase()), getDatabase());
+
+            for (Node node : getDatabase().getAllNodes()) {
+                assertTrue(node.getProperty("nodeRank") instanceof Double);
+                assertTrue(node.hasProperty("nodeRankGeneration"));
+            }
+
+            assertEquals(2, module.getTopNodes().getSnapshot().size());
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void moduleShouldReadRanksAcrossGenerations() {
+        NodeRankModule module = new NodeRankModule("DECAY", NodeRankModuleConfiguration.defaultConfiguration()
+                .withRankHalfLife(3_600_000));
+        RankDecay decay = new RankDecay(3_600_000, "nodeRank");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            long generation = decay.generation(System.currentTimeMillis());
+
+            Node old = getDatabase().createNode();
+            decay.write(old, 8, generation - 1);
+            Node recent = getDatabase().createNode();
+            decay.write(recent, 1, generation);
+
+            assertEquals(RankDecay.rebase(8, generation - 1, generation), module.getRank(null, old), 0);
+            assertEquals(1.0, module.getRank(null, recent), 0);
+            assertTrue(module.getRank(null, old) < module.getRank(null, recent));
+
+            double[] ranks = module.getRanks(null, getDatabase(), new long[]{old.getId(), recent.getId()});
+            assertEquals(module.getRank(null, old), ranks[0], 0);
+            assertEquals(1.0, ranks[1], 0);
+
+            tx.success();
+        }
+    }
+
+    /**
+     * Decayed score of a node at the given time, i.e. its rank in the generation at that time divided by the weight.
+     */
+    private static double score(RankDecay decay, Node node, long time) {
+        return decay.rank(node, decay.generation(time)) / decay.weight(time);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link RankWriter}.
+ */
+public class RankWriterTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void shouldWriteInBatchesAndSkipUnchangedRanks() {
+        getDatabase().execute("UNWIND range(1, 25) AS i CREATE (:Node {i: i})");
+
+        long[] ids = new long[26];
+        try (Transaction tx = getDatabase().beginTx()) {
+            int i = 0;
+            for (Node node : getDatabase().getAllNodes()) {
+                ids[i++] = node.getId();
+            }
+            tx.success();
+        }
+        ids[25] = 1_000_000; //doesn't exist
+
+        NodeRankStatistics statistics = new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 0);
+        RankWriter writer = new RankWriter(getDatabase(), "nodeRank", 10, statistics);
+
+        assertEquals(25, writer.write(ids.length, i -> ids[i], i -> i));
+        assertEquals(3, statistics.getWriteBatches());
+        assertEquals(25, statistics.getRanksWritten());
+        assertEquals(0, statistics.getRanksUnchanged());
+
+        assertEquals(25, writer.write(ids.length, i -> ids[i], i -> i < 5 ? i + 1 : i));
+        assertEquals(6, statistics.getWriteBatches());
+        assertEquals(30, statistics.getRanksWritten());
+        assertEquals(20, statistics.getRanksUnchanged());
+        assertTrue(statistics.getRanksWrittenPerSecond() > 0);
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertEquals(1.0, getDatabase().getNodeById(ids[0]).getProperty("nodeRank"));
+            assertEquals(24.0, getDatabase().getNodeById(ids[24]).getProperty("nodeRank"));
+            tx.success();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.fluent.IncludeNodes;
+import com.graphaware.common.serialize.Serializer;
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for additional rankings computed by a single {@link NodeRankModule}, see {@link Ranking}.
+ */
+public class RankingTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void allRankingsShouldBeComputedInOnePass() {
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration()
+                .withStepsPerInvocation(1000)
+                .withProjection(true);
+
+        config = config
+                .withRanking("lazy", config.withDampingFactor(0.5).withRankPropertyKey("lazyRank"))
+                .withRanking("people", config.withRankPropertyKey("personRank").with(IncludeNodes.all().with("Person"))
+                        .with(InclusionPolicyCompiler.compileRelationshipPolicy("isType('KNOWS')")));
+
+        NodeRankModule module = new NodeRankModule("RANKINGS", config);
+
+        getDatabase().execute("CREATE (p:Person)-[:KNOWS]->(q:Person)-[:KNOWS]->(p), (p)-[:LIKES]->(:Thing)-[:IS]->(p)");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            NodeRankContext context = module.createInitialContext(getDatabase());
+            for (int i = 0; i < 3; i++) {
+                context = module.doSomeWork(context, getDatabase());
+            }
+
+            for (Node node : getDatabase().getAllNodes()) {
+                assertTrue(node.hasProperty("nodeRank"));
+                assertTrue(node.hasProperty("lazyRank"));
+                assertEquals(node.hasLabel(Label.label("Person")), node.hasProperty("personRank"));
+            }
+
+            assertEquals(3, module.getTopNodes("lazy").getSnapshot().size());
+            assertEquals(2, module.getTopNodes("people").getSnapshot().size());
+            assertSame(module.getTopNodes(), module.getTopNodes(""));
+
+            tx.success();
+        }
+    }
+
+    @Test
+    public void rankingsShouldBeRestoredFromContext() {
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration()
+                .withStepsPerInvocation(1000)
+                .withFlushInterval(1);
+
+        config = config.withRanking("people", config.withRankPropertyKey("personRank").with(IncludeNodes.all().with("Person"))
+                .with(InclusionPolicyCompiler.compileRelationshipPolicy("isType('KNOWS')")));
+
+        getDatabase().execute("CREATE (p:Person)-[:KNOWS]->(q:Person)-[:KNOWS]->(p), (p)-[:LIKES]->(:Thing)-[:IS]->(p)");
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            NodeRankModule module = new NodeRankModule("RANKINGS", config);
+            NodeRankContext context = module.createInitialContext(getDatabase());
+            for (int i = 0; i < 3; i++) {
+                context = module.doSomeWork(context, getDatabase());
+            }
+
+            context = Serializer.fromByteArray(Serializer.toByteArray(context));
+            NodeRankContext people = context.getRankings().get("people");
+            long[] personIds = getDatabase().findNodes(Label.label("Person")).stream().mapToLong(Node::getId).sorted().toArray();
+
+            assertEquals(1, context.getRankings().size());
+            assertArrayEquals(personIds, people.getTopNodes());
+            assertTrue(Arrays.binarySearch(personIds, people.getNodeId()) >= 0);
+
+            //no flush, so the restarted ranking only knows its top ranked nodes from the context
+            NodeRankModule restarted = new NodeRankModule("RANKINGS", config.withFlushInterval(1000));
+            restarted.doSomeWork(context, getDatabase());
+
+            assertEquals(2, restarted.getTopNodes("people").getSnapshot().size());
+
+            tx.success();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownRankingShouldFail() {
+        new NodeRankModule("RANKINGS").getTopNodes("unknown");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rankingsShouldNotShareRankProperty() {
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration();
+        new NodeRankModule("RANKINGS", config.withRanking("other", config.withDampingFactor(0.5)));
+    }
+
+    @Test
+    public void rankingsShouldBeBootstrapped() {
+        Map<String, String> config = new HashMap<>();
+        config.put("ranking.people.dampingFactor", "0.7");
+        config.put("ranking.people.node", "hasLabel('Person')");
+        config.put("ranking.things.propertyKey", "thingRank");
+
+        NodeRankModule module = new NodeRankModuleBootstrapper().bootstrapModule("RANKINGS", config, getDatabase());
+        Map<String, NodeRankModuleConfiguration> rankings = ((NodeRankModuleConfiguration) module.getConfiguration()).getRankings();
+
+        assertEquals(2, rankings.size());
+        assertEquals(0.7, rankings.get("people").getDampingFactor(), 0);
+        assertEquals("peopleRank", rankings.get("people").getRankPropertyKey());
+        assertTrue(rankings.get("people").getNodeInclusionPolicy() instanceof LabelNodeInclusionPolicy);
+        assertEquals("thingRank", rankings.get("things").getRankPropertyKey());
+        assertEquals(0.85, rankings.get("things").getDampingFactor(), 0);
+    }
+}
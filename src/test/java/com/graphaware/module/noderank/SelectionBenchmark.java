@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.noderank;
+
+import com.graphaware.common.policy.inclusion.NodeInclusionPolicy;
+import com.graphaware.runtime.walk.NodeSelector;
+import com.graphaware.runtime.walk.RandomNodeSelector;
+import com.graphaware.runtime.walk.RelationshipSelector;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of random node selection, by probing the database and from {@link EligibleNodes}, for policies including
+ * a varying fraction of nodes, and of random relationship selection, with and without the {@link SupernodeCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SelectionBenchmark {
+
+    @Param({"100000"})
+    private int nodes;
+
+    @Param({"10"})
+    private int degree;
+
+    @Param({BenchmarkGraphs.UNIFORM, BenchmarkGraphs.POWER_LAW})
+    private String distribution;
+
+    @Param({"0.01", "1.0"})
+    private double rankedFraction;
+
+    private GraphDatabaseService database;
+    private NodeSelector probingSelector;
+    private NodeSelector eligibleNodeSelector;
+    private RelationshipSelector relationshipSelector;
+    private RelationshipSelector supernodeSelector;
+    private long[] nodeIds;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkGraphs.create(nodes, degree, distribution, rankedFraction);
+
+        NodeInclusionPolicy policy = new LabelNodeInclusionPolicy(BenchmarkGraphs.RANKED.name());
+        EligibleNodes eligibleNodes = new EligibleNodes();
+        try (Transaction tx = database.beginTx()) {
+            eligibleNodes.load(database, policy);
+            tx.success();
+        }
+
+        probingSelector = new RandomNodeSelector(policy);
+        eligibleNodeSelector = new EligibleNodeSelector(eligibleNodes, policy, probingSelector);
+
+        NodeRankModuleConfiguration config = NodeRankModuleConfiguration.defaultConfiguration();
+        relationshipSelector = DegreeAwareRelationshipSelector.forConfiguration(config, null);
+        supernodeSelector = DegreeAwareRelationshipSelector.forConfiguration(config.withSupernodeThreshold(2 * degree),
+                new SupernodeCache(config.getSupernodeCacheSize()));
+
+        nodeIds = new long[nodes];
+        try (Transaction tx = database.beginTx()) {
+            int i = 0;
+            for (Node node : database.getAllNodes()) {
+                nodeIds[i++] = node.getId();
+            }
+            tx.success();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private final Random random = new Random();
+        private Transaction tx;
+
+        @Setup(Level.Iteration)
+        public void beginTx(SelectionBenchmark benchmark) {
+            tx = benchmark.database.beginTx();
+        }
+
+        @TearDown(Level.Iteration)
+        public void closeTx() {
+            tx.success();
+            tx.close();
+        }
+    }
+
+    @Benchmark
+    public Node probingNodeSelection(ThreadState state) {
+        return probingSelector.selectNode(database);
+    }
+
+    @Benchmark
+    public Node eligibleNodeSelection(ThreadState state) {
+        return eligibleNodeSelector.selectNode(database);
+    }
+
+    @Benchmark
+    public Relationship relationshipSelection(ThreadState state) {
+        return relationshipSelector.selectRelationship(randomNode(state));
+    }
+
+    @Benchmark
+    public Relationship supernodeRelationshipSelection(ThreadState state) {
+        return supernodeSelector.selectRelationship(randomNode(state));
+    }
+
+    private Node randomNode(ThreadState state) {
+        return database.getNodeById(nodeIds[state.random.nextInt(nodeIds.length)]);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link TopRankedNodes#addNode(long, double)} with ranks growing over time, like those written by the
+ * random walk, and of publishing a snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TopRankedNodesBenchmark {
+
+    private static final int NODES = 1 << 20;
+
+    @Param({"10", "1000", "100000"})
+    private int capacity;
+
+    private TopRankedNodes topNodes;
+    private int[] ranks;
+    private final Random random = new Random(42);
+
+    @Setup
+    public void setUp() {
+        topNodes = new TopRankedNodes();
+        topNodes.initializeIfNeeded(null, null, NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(capacity));
+        ranks = new int[NODES];
+    }
+
+    @Benchmark
+    public void addNode() {
+        int nodeId = random.nextInt(NODES);
+        //low node IDs get visited more often, so that the top nodes change slowly, as they do in reality
+        nodeId = (int) ((long) nodeId * nodeId / NODES);
+        topNodes.addNode(nodeId, ++ranks[nodeId]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public TopRankedSnapshot addNodesAndPublish() {
+        for (int i = 0; i < 1000; i++) {
+            addNode();
+        }
+        topNodes.publish();
+        return topNodes.getSnapshot();
+    }
+}
@@ -16,13 +16,14 @@
 
 package com.graphaware.module.noderank;
 
-import com.graphaware.test.integration.DatabaseIntegrationTest;
 import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
 import org.junit.Test;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -67,7 +68,7 @@ public class TopRankedNodesTest extends EmbeddedDatabaseIntegrationTest {
         assertEquals(1L, result.get(0).getId());
         assertEquals(4L, result.get(1).getId());
         assertEquals(3L, result.get(2).getId());
-        assertArrayEquals(new Long[]{1L, 4L, 3L}, topNodes.getTopNodeIds());
+        assertArrayEquals(new long[]{1L, 4L, 3L}, topNodes.getTopNodeIds());
 
         topNodes.addNode(node5, 1);
         topNodes.addNode(node2, 3);
@@ -81,7 +82,61 @@ public class TopRankedNodesTest extends EmbeddedDatabaseIntegrationTest {
         assertEquals(1L, result.get(0).getId());
         assertEquals(2L, result.get(1).getId());
         assertEquals(3L, result.get(2).getId());
-        assertArrayEquals(new Long[]{1L, 2L, 3L}, topNodes.getTopNodeIds());
+        assertArrayEquals(new long[]{1L, 2L, 3L}, topNodes.getTopNodeIds());
+
+        topNodes.addNode(node1, 0);
+
+        assertArrayEquals(new long[]{2L, 3L, 1L}, topNodes.getTopNodeIds());
+    }
+
+    @Test
+    public void topNodesShouldMatchFullSort() {
+        int k = 50;
+        TopRankedNodes topNodes = new TopRankedNodes();
+        topNodes.initializeIfNeeded(null, getDatabase(), NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(k));
+
+        Random random = new Random(42);
+        double[] ranks = new double[1000];
+        for (int i = 0; i < 100_000; i++) {
+            int nodeId = random.nextInt(ranks.length);
+            ranks[nodeId] += random.nextInt(10);
+            topNodes.addNode(nodeId, ranks[nodeId]);
+        }
+
+        topNodes.publish();
+        long[] result = topNodes.getTopNodeIds();
+        assertEquals(k, result.length);
+
+        double[] sorted = ranks.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < k; i++) {
+            assertEquals(sorted[sorted.length - 1 - i], ranks[(int) result[i]], 0);
+        }
+    }
+
+    @Test
+    public void snapshotShouldOnlyChangeWhenPublished() {
+        TopRankedNodes topNodes = new TopRankedNodes();
+        topNodes.initializeIfNeeded(null, getDatabase(), NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(2));
+
+        topNodes.addNode(1, 5);
+        topNodes.addNode(2, 3);
+        assertTrue(topNodes.getSnapshot().isEmpty());
+
+        topNodes.publish();
+        TopRankedSnapshot snapshot = topNodes.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(1L, snapshot.nodeId(0));
+        assertEquals(5.0, snapshot.rank(0), 0);
+        assertEquals(2L, snapshot.nodeId(1));
+
+        topNodes.addNode(3, 10);
+        topNodes.publish();
+
+        assertEquals(1L, snapshot.nodeId(0));
+        assertEquals(2L, snapshot.nodeId(1));
+        assertEquals(3L, topNodes.getSnapshot().nodeId(0));
+        assertEquals(1L, topNodes.getSnapshot().nodeId(1));
     }
 
     @Test
@@ -100,7 +155,7 @@ public class TopRankedNodesTest extends EmbeddedDatabaseIntegrationTest {
         TopRankedNodes topNodes = new TopRankedNodes();
         try (Transaction tx = getDatabase().beginTx()) {
             //10L doesn't exist and should be ignored:
-            topNodes.initializeIfNeeded(new NodeRankContext(0L, new Long[]{0L, 10L, 1L, 2L}), getDatabase(), NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(3));
+            topNodes.initializeIfNeeded(new NodeRankContext(0L, new long[]{0L, 10L, 1L, 2L}), getDatabase(), NodeRankModuleConfiguration.defaultConfiguration().withMaxTopRankNodes(3));
             tx.success();
         }
 
@@ -114,7 +169,7 @@ public class TopRankedNodesTest extends EmbeddedDatabaseIntegrationTest {
             assertEquals(5, result.get(1).getProperty("nodeRank"));
             assertEquals(2L, result.get(2).getId());
             assertEquals(3, result.get(2).getProperty("nodeRank"));
-            assertArrayEquals(new Long[]{0L, 1L, 2L}, topNodes.getTopNodeIds());
+            assertArrayEquals(new long[]{0L, 1L, 2L}, topNodes.getTopNodeIds());
             tx.success();
         }
     }
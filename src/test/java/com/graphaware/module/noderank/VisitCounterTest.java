@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class VisitCounterTest {
+
+    @Test
+    public void shouldCountVisits() {
+        VisitCounter counter = new VisitCounter();
+
+        counter.increment(0);
+        counter.increment(5);
+        counter.increment(5);
+        counter.add(7, 10);
+
+        assertEquals(3, counter.size());
+        assertEquals(1, counter.get(0));
+        assertEquals(2, counter.get(5));
+        assertEquals(10, counter.get(7));
+        assertEquals(0, counter.get(6));
+    }
+
+    @Test
+    public void shouldGrowAndVisitAllCounts() {
+        VisitCounter counter = new VisitCounter(2);
+
+        for (long i = 0; i < 10_000; i++) {
+            counter.add(i * 31, i);
+        }
+
+        assertEquals(10_000, counter.size());
+
+        Map<Long, Long> visited = new HashMap<>();
+        counter.forEach(visited::put);
+
+        assertEquals(10_000, visited.size());
+        for (long i = 0; i < 10_000; i++) {
+            assertEquals(Long.valueOf(i), visited.get(i * 31));
+        }
+    }
+
+    @Test
+    public void shouldClearCounts() {
+        VisitCounter counter = new VisitCounter();
+        counter.increment(1);
+        counter.increment(2);
+
+        counter.clear();
+
+        assertTrue(counter.isEmpty());
+        assertEquals(0, counter.get(1));
+
+        counter.increment(1);
+        assertEquals(1, counter.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAcceptNegativeIds() {
+        new VisitCounter().increment(-1);
+    }
+}
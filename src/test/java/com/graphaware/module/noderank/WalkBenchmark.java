@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.noderank;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the number of steps per second taken by {@link NodeRankModule#doSomeWork(NodeRankContext, GraphDatabaseService)},
+ * including the periodic flushes of visits to the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WalkBenchmark {
+
+    private static final int STEPS = 1000;
+
+    @Param({"100000"})
+    private int nodes;
+
+    @Param({"10"})
+    private int degree;
+
+    @Param({BenchmarkGraphs.UNIFORM, BenchmarkGraphs.POWER_LAW})
+    private String distribution;
+
+    @Param({"false", "true"})
+    private boolean projection;
+
+    @Param({"1"})
+    private int walkers;
+
+    private GraphDatabaseService database;
+    private NodeRankModule module;
+    private NodeRankContext context;
+
+    @Setup
+    public void setUp() {
+        database = BenchmarkGraphs.create(nodes, degree, distribution, 1.0);
+
+        module = new NodeRankModule("NR", NodeRankModuleConfiguration.defaultConfiguration()
+                .withStepsPerInvocation(STEPS)
+                .withProjection(projection)
+                .withWalkers(walkers));
+        module.start(database);
+        context = module.createInitialContext(database);
+    }
+
+    @TearDown
+    public void tearDown() {
+        module.shutdown();
+        database.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public NodeRankContext doSomeWork() {
+        try (Transaction tx = database.beginTx()) {
+            context = module.doSomeWork(context, database);
+            tx.success();
+        }
+        return context;
+    }
+}
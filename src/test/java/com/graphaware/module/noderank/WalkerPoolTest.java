@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.graphaware.module.noderank;
+
+import com.graphaware.test.integration.EmbeddedDatabaseIntegrationTest;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for {@link WalkerPool}.
+ */
+public class WalkerPoolTest extends EmbeddedDatabaseIntegrationTest {
+
+    @Test
+    public void interruptedWalkShouldNotLeakIntoNextWalk() {
+        getDatabase().execute("CREATE (a)-[:R]->(b)-[:R]->(c)-[:R]->(a)");
+
+        WalkerPool pool = new WalkerPool("TEST", 2, NodeRankModuleConfiguration.defaultConfiguration(), null, null,
+                new NodeRankStatistics(null, new ConvergenceTracker(0.99, 0, 1000), () -> 0));
+
+        try {
+            VisitCounter interrupted = new VisitCounter();
+            pool.startWalking(100_000, getDatabase());
+            Thread.currentThread().interrupt();
+            pool.awaitAndMerge(interrupted);
+            assertTrue(Thread.interrupted());
+
+            VisitCounter next = new VisitCounter();
+            pool.startWalking(10, getDatabase());
+            pool.awaitAndMerge(next);
+
+            long[] total = {0};
+            next.forEach((nodeId, count) -> total[0] += count);
+            assertEquals(20, total[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}